@@ -0,0 +1,143 @@
+package com.example.newsapp;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves the body text of the top news stories of the saved preferences for offline reading,
+ * see {@link ArticlePrefetcher}, once the user opted in.
+ * <p>
+ * The job is scheduled after the news stories are loaded and only runs on an unmetered
+ * network. JobScheduler batches it with other background work rather than running it in
+ * the middle of the load, and scheduling it again while it is pending replaces it, so
+ * several loads in a row save the bodies once.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class ArticlePrefetchJobService extends JobService {
+
+    private static final String LOG_TAG = ArticlePrefetchJobService.class.getSimpleName();
+
+    /**
+     * Job ID of the prefetch, next to the sync jobs of {@link NewsSyncJobService}.
+     */
+    private static final int PREFETCH_JOB_ID = 1003;
+
+    /**
+     * Delay before the first retry of a failed prefetch, doubled on every further failure.
+     */
+    private static final long INITIAL_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Key of the prefetch on the {@link FetchExecutor}.
+     */
+    private static final String PREFETCH_FETCH_KEY = "article-prefetch";
+
+    /**
+     * The prefetch this job is waiting for.
+     */
+    private FetchExecutor.Call<Boolean> mPrefetchCall;
+
+    /**
+     * Return true if the user opted in to saving news stories for offline reading.
+     */
+    public static boolean isEnabled(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getBoolean(
+                context.getString(R.string.settings_offline_reading_key),
+                context.getResources().getBoolean(R.bool.settings_offline_reading_default));
+    }
+
+    /**
+     * Schedule saving the news stories of the saved preferences, if the user opted in and it
+     * isn't already scheduled.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP || !isEnabled(context)) {
+            return;
+        }
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (jobScheduler == null) {
+            return;
+        }
+        for (JobInfo job : jobScheduler.getAllPendingJobs()) {
+            if (job.getId() == PREFETCH_JOB_ID) {
+                return;
+            }
+        }
+        jobScheduler.schedule(new JobInfo.Builder(PREFETCH_JOB_ID,
+                new ComponentName(context, ArticlePrefetchJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setBackoffCriteria(INITIAL_BACKOFF_MILLIS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        // Prefetch in the background, behind the loads the user is waiting for.
+        final Context context = getApplicationContext();
+        mPrefetchCall = FetchExecutor.getInstance().execute(PREFETCH_FETCH_KEY,
+                FetchExecutor.Priority.BACKGROUND, new FetchExecutor.Task<Boolean>() {
+                    @Override
+                    public Boolean run() {
+                        return prefetch(context);
+                    }
+                }, new FetchExecutor.Callback<Boolean>() {
+                    @Override
+                    public void onResult(Boolean prefetched) {
+                        // Ask for a retry with backoff if the prefetch failed.
+                        jobFinished(params, !Boolean.TRUE.equals(prefetched));
+                    }
+                });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The network is no longer unmetered, stop and retry later.
+        if (mPrefetchCall != null) {
+            mPrefetchCall.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * Save the bodies of the top cached news stories of the saved preferences, on a
+     * background thread.
+     *
+     * @return false if the prefetch failed and should be retried.
+     */
+    static boolean prefetch(Context context) {
+        if (!isEnabled(context)) {
+            return true;
+        }
+        NewsCache.Entry cached =
+                NewsCache.getInstance(context).get(QueryUtils.buildRequestUrl(context));
+        if (cached == null) {
+            return true;
+        }
+
+        ArticlePrefetcher prefetcher = new ArticlePrefetcher(ArticleStore.getInstance(context),
+                new NewsFetchEngine.Fetcher() {
+                    @Override
+                    public List<News> fetch(String requestUrl) throws FetchException {
+                        return QueryUtils.fetchNewsStories(requestUrl);
+                    }
+                }, ArticlePrefetcher.MAX_STORIES, ArticlePrefetcher.MAX_BYTES);
+        if (prefetcher.prefetch(cached.getNewsStories()) < 0) {
+            Log.e(LOG_TAG, "Problem saving the news stories for offline reading");
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.newsapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saves the body text of the top news stories of a list to an {@link ArticleStore}, so they
+ * can be read without a connection.
+ * <p>
+ * The bodies of the stories not stored yet are loaded with a request for their IDs. Each run
+ * is budgeted: only the top stories up to a count are considered, and storing stops once the
+ * stored bodies add up to a number of bytes. Each request only asks for as many bodies as the
+ * rest of the byte budget should hold, going by the size of the bodies stored so far, so the
+ * budget bounds the bytes downloaded too, and a large budget still takes a single request.
+ */
+class ArticlePrefetcher {
+
+    /**
+     * Default number of top news stories saved.
+     */
+    static final int MAX_STORIES = 20;
+
+    /**
+     * Default number of compressed bytes stored by a run.
+     */
+    static final long MAX_BYTES = 1024 * 1024;
+
+    /**
+     * Compressed size of a body assumed before any is stored, which sizes the first request.
+     */
+    static final int ESTIMATED_BODY_BYTES = 8 * 1024;
+
+    /**
+     * Number of article bodies stored.
+     */
+    private static final Metrics.Counter PREFETCHED = Metrics.counter("prefetch.articles");
+
+    /**
+     * Compressed bytes stored by a run.
+     */
+    private static final Metrics.Histogram PREFETCH_BYTES = Metrics.histogram("prefetch.bytes");
+
+    private final ArticleStore mStore;
+
+    private final NewsFetchEngine.Fetcher mFetcher;
+
+    private final int mMaxStories;
+
+    private final long mMaxBytes;
+
+    /**
+     * Constructs a new {@link ArticlePrefetcher}.
+     *
+     * @param store      stores the loaded bodies.
+     * @param fetcher    loads the news stories of a request URL.
+     * @param maxStories is the number of top news stories to save.
+     * @param maxBytes   is the number of compressed bytes a run can store. The body crossing
+     *                   it is the last one stored.
+     */
+    ArticlePrefetcher(ArticleStore store, NewsFetchEngine.Fetcher fetcher, int maxStories,
+                      long maxBytes) {
+        mStore = store;
+        mFetcher = fetcher;
+        mMaxStories = maxStories;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Save the bodies of the top news stories of the given list that are not stored yet, and
+     * add them to the {@link SearchIndex}.
+     * <p>
+     * On a background thread.
+     *
+     * @return the number of bodies stored, or -1 if a request failed before any was.
+     */
+    int prefetch(List<News> newsStories) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < Math.min(mMaxStories, newsStories.size()); i++) {
+            String url = newsStories.get(i).getUrl();
+            String id = GuardianRequest.idOf(url);
+            if (id != null && !mStore.contains(url)) {
+                ids.add(id);
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        int stored = 0;
+        long storedBytes = 0;
+        boolean failed = false;
+        int next = 0;
+        while (next < ids.size() && storedBytes < mMaxBytes) {
+            long bodyBytes = stored > 0 ? Math.max(1, storedBytes / stored) : ESTIMATED_BODY_BYTES;
+            // Round up, the body crossing the budget is still stored.
+            long fitting = (mMaxBytes - storedBytes + bodyBytes - 1) / bodyBytes;
+            int count = (int) Math.min(ids.size() - next, Math.max(1, fitting));
+            List<String> batch = ids.subList(next, next + count);
+            next += count;
+
+            List<News> articles;
+            try {
+                articles = mFetcher.fetch(buildRequest(batch).getUrl());
+            } catch (FetchException e) {
+                articles = null;
+            }
+            if (articles == null) {
+                failed = true;
+                break;
+            }
+
+            for (News article : articles) {
+                if (storedBytes >= mMaxBytes) {
+                    break;
+                }
+                String bodyText = article.getBodyText();
+                if (bodyText == null || bodyText.isEmpty()) {
+                    continue;
+                }
+                int bytes = mStore.put(article.getUrl(), bodyText);
+                if (bytes > 0) {
+                    stored++;
+                    storedBytes += bytes;
+                    SearchIndex.getInstance().setBodyText(article.getUrl(), bodyText);
+                }
+            }
+        }
+        PREFETCHED.add(stored);
+        PREFETCH_BYTES.record(storedBytes);
+        return failed && stored == 0 ? -1 : stored;
+    }
+
+    /**
+     * Return the request for the body text of the stories with the given IDs, all on one page.
+     */
+    static GuardianRequest buildRequest(List<String> ids) {
+        return new GuardianRequest.Builder()
+                .ids(ids)
+                .pageSize(ids.size())
+                .field(GuardianRequest.Field.BODY_TEXT)
+                .apiKey(QueryUtils.API_KEY)
+                .build();
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Disk store of the body text of news stories saved for offline reading, keyed by the web URL
+ * of the story.
+ * <p>
+ * Each body is gzip compressed, which shrinks article text to about a third. The store is
+ * bounded both by size and by number of stories, the least recently read ones go first.
+ */
+public class ArticleStore {
+
+    private static final String LOG_TAG = ArticleStore.class.getSimpleName();
+
+    /**
+     * Name of the store directory inside the app's cache directory.
+     */
+    private static final String DIRECTORY_NAME = "articles";
+
+    /**
+     * Maximum total size of the stored bodies, compressed.
+     */
+    private static final long MAX_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Maximum number of stored bodies.
+     */
+    private static final int MAX_ARTICLES = 200;
+
+    /**
+     * Version of the entry format, bumped whenever it changes so old entries are ignored.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static ArticleStore sInstance;
+
+    private final DiskLruCache mDiskCache;
+
+    /**
+     * Return the article store of the app.
+     */
+    public static synchronized ArticleStore getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(),
+                    DIRECTORY_NAME);
+            sInstance = new ArticleStore(new DiskLruCache(directory, MAX_BYTES, MAX_ARTICLES));
+        }
+        return sInstance;
+    }
+
+    ArticleStore(DiskLruCache diskCache) {
+        mDiskCache = diskCache;
+    }
+
+    /**
+     * Return true if the body of the story at the given URL is stored. Doesn't touch the disk,
+     * so it can be called on the UI thread.
+     */
+    public boolean contains(String url) {
+        return mDiskCache.contains(url);
+    }
+
+    /**
+     * Return the stored body of the story at the given URL, or null if there is none.
+     */
+    public String get(String url) {
+        byte[] bytes = mDiskCache.get(url);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            String[] entry = readEntry(bytes);
+            if (entry == null || !url.equals(entry[0])) {
+                mDiskCache.remove(url);
+                return null;
+            }
+            return entry[1];
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the stored article", e);
+            mDiskCache.remove(url);
+            return null;
+        }
+    }
+
+    /**
+     * Return the body of every stored story, keyed by URL, most recently used first.
+     */
+    public Map<String, String> getAll() {
+        Map<String, String> bodies = new LinkedHashMap<>();
+        for (byte[] bytes : mDiskCache.getAll()) {
+            try {
+                String[] entry = readEntry(bytes);
+                if (entry != null) {
+                    bodies.put(entry[0], entry[1]);
+                }
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem reading the stored article", e);
+            }
+        }
+        return bodies;
+    }
+
+    /**
+     * Store the body of the story at the given URL.
+     *
+     * @return the number of bytes it takes on disk, or 0 if it couldn't be stored.
+     */
+    public int put(String url, String bodyText) {
+        try {
+            byte[] bytes = writeEntry(url, bodyText);
+            mDiskCache.put(url, bytes);
+            return bytes.length;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the article to the store", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Return the total size of the stored bodies in bytes.
+     */
+    public long size() {
+        return mDiskCache.size();
+    }
+
+    private static byte[] writeEntry(String url, String bodyText) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes));
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(url);
+        // Bodies can be longer than writeUTF allows.
+        byte[] text = bodyText.getBytes(UTF_8);
+        out.writeInt(text.length);
+        out.write(text);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Return the URL and the body of the given entry, or null if it has another format.
+     */
+    private static String[] readEntry(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(bytes)));
+        try {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            String url = in.readUTF();
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            return new String[]{url, new String(text, UTF_8)};
+        } finally {
+            in.close();
+        }
+    }
+}
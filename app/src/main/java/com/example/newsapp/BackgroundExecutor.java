@@ -0,0 +1,51 @@
+package com.example.newsapp;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the app's short background work, other than fetches, on reused daemon threads.
+ * <p>
+ * Disk work runs one task at a time on the "io" thread, so the saves made each time the
+ * activity stops are serialized. The connection warm-up runs on the "net" thread, so a slow
+ * network never holds up the disk work at startup. Both threads stop once idle.
+ */
+final class BackgroundExecutor {
+
+    private static final ThreadPoolExecutor IO_EXECUTOR = newExecutor("io");
+
+    private static final ThreadPoolExecutor NETWORK_EXECUTOR = newExecutor("net");
+
+    private BackgroundExecutor() {
+    }
+
+    /**
+     * Run the given disk work after the disk work submitted before it.
+     */
+    static void execute(Runnable runnable) {
+        IO_EXECUTOR.execute(runnable);
+    }
+
+    /**
+     * Run the given network work after the network work submitted before it.
+     */
+    static void executeNetwork(Runnable runnable) {
+        NETWORK_EXECUTOR.execute(runnable);
+    }
+
+    private static ThreadPoolExecutor newExecutor(final String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.newsapp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops sending requests to an API that keeps failing, so loads fail fast and show the cached
+ * news stories instead of waiting out timeouts and retries.
+ * <p>
+ * The breaker is closed while requests succeed. After a number of failures in a row it opens,
+ * and requests are refused for a cool-down period. Then it lets a single trial request
+ * through: if it succeeds the breaker closes again, if it fails the breaker opens for another
+ * cool-down.
+ */
+class CircuitBreaker {
+
+    /**
+     * Number of times the breaker opened.
+     */
+    private static final Metrics.Counter OPENED = Metrics.counter("http.circuit.opened");
+
+    /**
+     * Number of requests refused while the breaker was open.
+     */
+    private static final Metrics.Counter REFUSED = Metrics.counter("http.circuit.refused");
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int mFailureThreshold;
+
+    private final long mOpenNanos;
+
+    private State mState = State.CLOSED;
+
+    /**
+     * Number of failures in a row while closed.
+     */
+    private int mFailures;
+
+    /**
+     * {@link System#nanoTime()} when the breaker last opened.
+     */
+    private long mOpenedAtNanos;
+
+    /**
+     * Whether the trial request of the half-open breaker is in flight.
+     */
+    private boolean mTrialInFlight;
+
+    /**
+     * Constructs a new {@link CircuitBreaker}.
+     *
+     * @param failureThreshold is the number of failures in a row that opens the breaker.
+     * @param openMillis       is how long the breaker stays open before a trial request.
+     */
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        mFailureThreshold = failureThreshold;
+        mOpenNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Return true if a request may be sent now. Every request allowed must be followed by
+     * one call to {@link #onSuccess()}, {@link #onFailure()} or {@link #onCancel()}.
+     */
+    synchronized boolean tryAcquire() {
+        switch (mState) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - mOpenedAtNanos < mOpenNanos) {
+                    break;
+                }
+                mState = State.HALF_OPEN;
+                mTrialInFlight = true;
+                return true;
+            case HALF_OPEN:
+                if (!mTrialInFlight) {
+                    mTrialInFlight = true;
+                    return true;
+                }
+                break;
+        }
+        REFUSED.increment();
+        return false;
+    }
+
+    /**
+     * The request got an answer from the API, which is healthy.
+     */
+    synchronized void onSuccess() {
+        mState = State.CLOSED;
+        mFailures = 0;
+        mTrialInFlight = false;
+    }
+
+    /**
+     * The request failed in a way that says the API is unhealthy.
+     */
+    synchronized void onFailure() {
+        mTrialInFlight = false;
+        if (mState == State.HALF_OPEN || ++mFailures >= mFailureThreshold) {
+            if (mState != State.OPEN) {
+                OPENED.increment();
+            }
+            mState = State.OPEN;
+            mOpenedAtNanos = System.nanoTime();
+            mFailures = 0;
+        }
+    }
+
+    /**
+     * The request was cancelled and says nothing about the API.
+     */
+    synchronized void onCancel() {
+        mTrialInFlight = false;
+    }
+
+    /**
+     * @return true if requests are refused, or only a trial one is let through.
+     */
+    synchronized boolean isOpen() {
+        return mState != State.CLOSED;
+    }
+}
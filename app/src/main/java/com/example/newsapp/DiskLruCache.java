@@ -0,0 +1,250 @@
+package com.example.newsapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A size bounded cache of byte arrays stored as files in a directory.
+ * <p>
+ * Each key is stored in its own file named after a hash of the key. When the total size of the
+ * files goes over the maximum size, or their number over the maximum number of entries, the
+ * least recently used entries are deleted until it fits again. Access order survives restarts
+ * through the files' last modified times.
+ */
+public class DiskLruCache {
+
+    private static final String FILE_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Directory that holds the cache files.
+     */
+    private final File mDirectory;
+
+    /**
+     * Maximum total size of the cache files in bytes.
+     */
+    private final long mMaxBytes;
+
+    /**
+     * Maximum number of cache files.
+     */
+    private final int mMaxEntries;
+
+    /**
+     * File name to file size, in least recently used order.
+     */
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Total size of the cache files in bytes.
+     */
+    private long mSize;
+
+    /**
+     * Constructs a new {@link DiskLruCache}, indexing any files already in the directory.
+     *
+     * @param directory to store the cache files in.
+     * @param maxBytes  is the maximum total size of the cache files.
+     */
+    public DiskLruCache(File directory, long maxBytes) {
+        this(directory, maxBytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a new {@link DiskLruCache} bounded by size and number of entries, indexing any
+     * files already in the directory.
+     *
+     * @param directory  to store the cache files in.
+     * @param maxBytes   is the maximum total size of the cache files.
+     * @param maxEntries is the maximum number of cache files.
+     */
+    public DiskLruCache(File directory, long maxBytes, int maxEntries) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        mMaxEntries = maxEntries;
+        mDirectory.mkdirs();
+
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long aModified = a.lastModified();
+                long bModified = b.lastModified();
+                return aModified < bModified ? -1 : (aModified == bModified ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(FILE_SUFFIX)) {
+                mEntries.put(name, file.length());
+                mSize += file.length();
+            } else if (name.endsWith(TEMP_SUFFIX)) {
+                // Left over from a write that never finished.
+                file.delete();
+            }
+        }
+        // The bounds may have shrunk since the files were written.
+        trimToSize();
+    }
+
+    /**
+     * Return the bytes stored for the given key, or null if there are none.
+     */
+    public synchronized byte[] get(String key) {
+        String name = fileName(key);
+        if (mEntries.get(name) == null) {
+            return null;
+        }
+        File file = new File(mDirectory, name);
+        try {
+            byte[] bytes = readFully(file);
+            file.setLastModified(System.currentTimeMillis());
+            return bytes;
+        } catch (IOException e) {
+            removeFile(name);
+            return null;
+        }
+    }
+
+    /**
+     * Return true if there are bytes stored for the given key, without reading them or
+     * changing their access order.
+     */
+    public synchronized boolean contains(String key) {
+        return mEntries.containsKey(fileName(key));
+    }
+
+    /**
+     * Return the bytes of every entry, most recently used first, without changing their
+     * access order.
+     */
+    public synchronized List<byte[]> getAll() {
+        List<String> names = new ArrayList<>(mEntries.keySet());
+        Collections.reverse(names);
+        List<byte[]> values = new ArrayList<>(names.size());
+        for (String name : names) {
+            try {
+                values.add(readFully(new File(mDirectory, name)));
+            } catch (IOException e) {
+                removeFile(name);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Store the given bytes for the key, evicting the least recently used entries if needed.
+     */
+    public synchronized void put(String key, byte[] bytes) throws IOException {
+        String name = fileName(key);
+        File file = new File(mDirectory, name);
+        File temp = new File(mDirectory, name + TEMP_SUFFIX);
+
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+
+        removeFile(name);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not commit cache file " + file);
+        }
+        mEntries.put(name, (long) bytes.length);
+        mSize += bytes.length;
+        trimToSize();
+    }
+
+    /**
+     * Remove the entry for the given key, if there is one.
+     */
+    public synchronized void remove(String key) {
+        removeFile(fileName(key));
+    }
+
+    /**
+     * Return the total size of the cache files in bytes.
+     */
+    public synchronized long size() {
+        return mSize;
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        List<String> evicted = new ArrayList<>();
+        long size = mSize;
+        int count = mEntries.size();
+        while ((size > mMaxBytes || count > mMaxEntries) && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            evicted.add(eldest.getKey());
+            size -= eldest.getValue();
+            count--;
+        }
+        for (String name : evicted) {
+            removeFile(name);
+        }
+    }
+
+    private void removeFile(String name) {
+        Long size = mEntries.remove(name);
+        if (size != null) {
+            mSize -= size;
+        }
+        new File(mDirectory, name).delete();
+    }
+
+    /**
+     * Return the file name for a key, a hex SHA-1 of the key so any String can be used.
+     */
+    private static String fileName(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes(Charset.forName("UTF-8")));
+            StringBuilder name = new StringBuilder(hash.length * 2 + FILE_SUFFIX.length());
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.append(FILE_SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
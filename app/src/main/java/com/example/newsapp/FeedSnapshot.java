@@ -0,0 +1,117 @@
+package com.example.newsapp;
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The first news stories of the feed shown last, saved when the activity stops so the next
+ * cold start draws them before the news loader even opens the cache or the network.
+ * <p>
+ * A snapshot is a single small file: the format version, the request URL of the feed, then
+ * the news stories encoded by {@link NewsCodec}. It is only shown for the same request URL,
+ * the feed of other preferences would be wrong.
+ */
+final class FeedSnapshot {
+
+    private static final String LOG_TAG = FeedSnapshot.class.getSimpleName();
+
+    /**
+     * Version of the snapshot format, bumped whenever it changes so old snapshots are ignored.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Number of news stories saved, about a screenful.
+     */
+    static final int MAX_STORIES = NewsLoader.PAGE_SIZE;
+
+    private FeedSnapshot() {
+    }
+
+    /**
+     * Save the first news stories of the given feed of the given request URL to the file,
+     * replacing the snapshot it held.
+     * <p>
+     * On a background thread.
+     */
+    static void write(File file, String url, FeedStore newsStories) throws IOException {
+        List<News> saved = new ArrayList<>(MAX_STORIES);
+        for (int i = 0; i < Math.min(MAX_STORIES, newsStories.size()); i++) {
+            saved.add(newsStories.get(i));
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+        try {
+            byte[] encoded = NewsCodec.encode(saved);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(url);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not commit snapshot " + file);
+        }
+    }
+
+    /**
+     * Return the news stories saved in the file for the given request URL, or null if there
+     * are none, they are of another URL, or the file can't be read.
+     * <p>
+     * On a background thread.
+     */
+    static FeedStore read(File file, String url) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            byte[] bytes = readFully(file);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(url)) {
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) {
+                throw new IOException("Invalid snapshot length " + length);
+            }
+            byte[] encoded = new byte[length];
+            in.readFully(encoded);
+            return FeedStore.of(NewsCodec.decode(encoded));
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Problem reading the feed snapshot", e);
+            return null;
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int read;
+            while (offset < bytes.length
+                    && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+            if (offset < bytes.length) {
+                throw new IOException("Truncated snapshot " + file);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,623 @@
+package com.example.newsapp;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact store of the news stories of a feed, read by position.
+ * <p>
+ * A list of {@link News} holds an object per story and a String per field, formatted date
+ * and time included. The store keeps the same stories in a few arrays instead:
+ * <ul>
+ * <li>section names, display dates and display times are interned into small dictionaries,
+ * and each story refers to its entries by int ID,</li>
+ * <li>publication times are primitive longs,</li>
+ * <li>titles, URLs and thumbnail URLs sit back to back in a UTF-8 byte arena. URLs are
+ * compared without decoding them, and a row decodes its title into a char buffer it reuses,
+ * to bind it with {@code TextView.setText(char[], int, int)} without creating a String.</li>
+ * </ul>
+ * A store is an immutable snapshot of the first {@link #size()} stories of its arena. Adding
+ * stories to the {@link #newBuilder()} of the latest snapshot of an arena fills the same
+ * arrays, so appending a page only copies the stories of the page, while the snapshot stays
+ * unchanged for whoever still reads it.
+ */
+public final class FeedStore {
+
+    /**
+     * Ints per story in {@link #mRows}: section ID, date ID, time ID, and the ends of the
+     * title, the URL and the thumbnail URL in the byte arena. Each string starts where the one
+     * before it ends.
+     */
+    private static final int ROW_INTS = 6;
+    private static final int SECTION = 0;
+    private static final int DATE = 1;
+    private static final int TIME = 2;
+    private static final int TITLE_END = 3;
+    private static final int URL_END = 4;
+    private static final int THUMBNAIL_END = 5;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Parameters of the 64-bit FNV-1a hash of the URLs.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * An empty store.
+     */
+    public static final FeedStore EMPTY = new Builder(0).build();
+
+    private final Builder mArena;
+
+    private final int mSize;
+
+    private final int[] mRows;
+
+    private final long[] mTimes;
+
+    private final byte[] mBytes;
+
+    private final String[] mSections;
+
+    private final String[] mDates;
+
+    private final String[] mDisplayTimes;
+
+    private FeedStore(Builder arena) {
+        mArena = arena;
+        mSize = arena.mSize;
+        mRows = arena.mRows;
+        mTimes = arena.mTimes;
+        mBytes = arena.mBytes;
+        mSections = arena.mSections.snapshot();
+        mDates = arena.mDates.snapshot();
+        mDisplayTimes = arena.mDisplayTimes.snapshot();
+    }
+
+    /**
+     * Return a store of the given news stories, in order.
+     */
+    public static FeedStore of(List<News> newsStories) {
+        if (newsStories == null || newsStories.isEmpty()) {
+            return EMPTY;
+        }
+        Builder builder = new Builder(newsStories.size());
+        for (News news : newsStories) {
+            builder.add(news);
+        }
+        return builder.trimToSize().build();
+    }
+
+    /**
+     * @return the number of news stories.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * @return the bytes of the arena taken by the titles and URLs of the news stories.
+     */
+    int arenaLength() {
+        return mSize > 0 ? mRows[(mSize - 1) * ROW_INTS + THUMBNAIL_END] : 0;
+    }
+
+    /**
+     * @return the chars of the section names, dates and times interned so far, including the
+     * ones of stories added after this snapshot.
+     */
+    int dictionaryLength() {
+        return Dictionary.length(mSections) + Dictionary.length(mDates)
+                + Dictionary.length(mDisplayTimes);
+    }
+
+    private int row(int position, int field) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + mSize);
+        }
+        return mRows[position * ROW_INTS + field];
+    }
+
+    /**
+     * Return where the string ending at the given field of the given position starts.
+     */
+    private int start(int position, int field) {
+        if (field != TITLE_END) {
+            return row(position, field - 1);
+        }
+        row(position, field);
+        return position > 0 ? mRows[(position - 1) * ROW_INTS + THUMBNAIL_END] : 0;
+    }
+
+    private int length(int position, int field) {
+        return row(position, field) - start(position, field);
+    }
+
+    private String decode(int position, int field) {
+        int start = start(position, field);
+        return new String(mBytes, start, row(position, field) - start, UTF_8);
+    }
+
+    /**
+     * @return the section name of the news story at the given position.
+     */
+    public String getNewsSection(int position) {
+        return mSections[row(position, SECTION)];
+    }
+
+    /**
+     * @return the date of the news story at the given position, formatted for display.
+     */
+    public String getDisplayDate(int position) {
+        return mDates[row(position, DATE)];
+    }
+
+    /**
+     * @return the time of the news story at the given position, formatted for display.
+     */
+    public String getDisplayTime(int position) {
+        return mDisplayTimes[row(position, TIME)];
+    }
+
+    /**
+     * @return the time in milliseconds since the epoch of the news story at the given
+     * position, or 0 if it couldn't be parsed.
+     */
+    public long getTimeInMillis(int position) {
+        row(position, SECTION);
+        return mTimes[position];
+    }
+
+    /**
+     * @return the title of the news story at the given position, as a new String.
+     */
+    public String getNewsTitle(int position) {
+        return decode(position, TITLE_END);
+    }
+
+    /**
+     * @return the most chars the title of the news story at the given position can take, the
+     * length of the buffer {@link #getNewsTitle(int, char[])} needs.
+     */
+    public int getTitleMaxLength(int position) {
+        // Every UTF-16 char takes at least one byte of UTF-8.
+        return length(position, TITLE_END);
+    }
+
+    /**
+     * Decode the title of the news story at the given position into the start of the given
+     * buffer, so it can be displayed without creating a String.
+     *
+     * @param buffer is at least {@link #getTitleMaxLength(int)} long.
+     * @return the number of chars of the title.
+     */
+    public int getNewsTitle(int position, char[] buffer) {
+        int end = row(position, TITLE_END);
+        int length = 0;
+        for (int i = start(position, TITLE_END); i < end; ) {
+            int b = mBytes[i++] & 0xFF;
+            if (b < 0x80) {
+                buffer[length++] = (char) b;
+            } else if (b < 0xE0) {
+                buffer[length++] = (char) (((b & 0x1F) << 6) | (mBytes[i++] & 0x3F));
+            } else if (b < 0xF0) {
+                buffer[length++] = (char) (((b & 0x0F) << 12) | ((mBytes[i++] & 0x3F) << 6)
+                        | (mBytes[i++] & 0x3F));
+            } else {
+                int codePoint = ((b & 0x07) << 18) | ((mBytes[i++] & 0x3F) << 12)
+                        | ((mBytes[i++] & 0x3F) << 6) | (mBytes[i++] & 0x3F);
+                buffer[length++] = Character.highSurrogate(codePoint);
+                buffer[length++] = Character.lowSurrogate(codePoint);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return the web URL of the news story at the given position, as a new String.
+     */
+    public String getUrl(int position) {
+        return decode(position, URL_END);
+    }
+
+    /**
+     * @return the thumbnail URL of the news story at the given position, as a new String, or
+     * null if it has none.
+     */
+    public String getThumbnailUrl(int position) {
+        return length(position, THUMBNAIL_END) > 0 ? decode(position, THUMBNAIL_END) : null;
+    }
+
+    /**
+     * Return the news story at the given position as a new {@link News} object, for the code
+     * that needs one, like opening it.
+     */
+    public News get(int position) {
+        long timeInMillis = getTimeInMillis(position);
+        // A time that couldn't be parsed wasn't kept, and formatting 0 would make one up.
+        return new News(getNewsSection(position), getNewsTitle(position),
+                timeInMillis != 0 ? null : "", timeInMillis, getUrl(position),
+                getThumbnailUrl(position), null);
+    }
+
+    /**
+     * Return the news stories as a list of new {@link News} objects.
+     */
+    public List<News> toList() {
+        List<News> newsStories = new ArrayList<>(mSize);
+        for (int i = 0; i < mSize; i++) {
+            newsStories.add(get(i));
+        }
+        return newsStories;
+    }
+
+    /**
+     * Return true if the news story at the given position has the same web URL as the one at
+     * the other position of the other store, without decoding either.
+     */
+    public boolean isSameStory(int position, FeedStore other, int otherPosition) {
+        return rangeEquals(mBytes, start(position, URL_END), row(position, URL_END),
+                other.mBytes, other.start(otherPosition, URL_END),
+                other.row(otherPosition, URL_END));
+    }
+
+    /**
+     * Return the hash of the web URL of the news story at the given position, the same as the
+     * {@link #urlHash(String)} of the URL, without decoding it.
+     */
+    public long getUrlHash(int position) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = start(position, URL_END), end = row(position, URL_END); i < end; i++) {
+            hash = (hash ^ (mBytes[i] & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Return the 64-bit FNV-1a hash of the UTF-8 bytes of the given URL, encoded on the fly.
+     * An unpaired surrogate hashes as the '?' it is encoded to.
+     */
+    public static long urlHash(String url) {
+        long hash = FNV_OFFSET_BASIS;
+        int length = url != null ? url.length() : 0;
+        for (int i = 0; i < length; i++) {
+            char c = url.charAt(i);
+            if (c < 0x80) {
+                hash = (hash ^ c) * FNV_PRIME;
+            } else if (c < 0x800) {
+                hash = (hash ^ (0xc0 | c >> 6)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | c & 0x3f)) * FNV_PRIME;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(url.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, url.charAt(++i));
+                    hash = (hash ^ (0xf0 | codePoint >> 18)) * FNV_PRIME;
+                    hash = (hash ^ (0x80 | codePoint >> 12 & 0x3f)) * FNV_PRIME;
+                    hash = (hash ^ (0x80 | codePoint >> 6 & 0x3f)) * FNV_PRIME;
+                    hash = (hash ^ (0x80 | codePoint & 0x3f)) * FNV_PRIME;
+                } else {
+                    hash = (hash ^ '?') * FNV_PRIME;
+                }
+            } else {
+                hash = (hash ^ (0xe0 | c >> 12)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | c >> 6 & 0x3f)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | c & 0x3f)) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Return true if the news story at the given position is displayed the same as the one at
+     * the other position of the other store.
+     */
+    public boolean hasSameContents(int position, FeedStore other, int otherPosition) {
+        return mTimes[position] == other.mTimes[otherPosition]
+                && getNewsSection(position).equals(other.getNewsSection(otherPosition))
+                && length(position, TITLE_END) == other.length(otherPosition, TITLE_END)
+                && length(position, URL_END) == other.length(otherPosition, URL_END)
+                && rangeEquals(mBytes, start(position, TITLE_END),
+                row(position, THUMBNAIL_END), other.mBytes,
+                other.start(otherPosition, TITLE_END), other.row(otherPosition, THUMBNAIL_END));
+    }
+
+    private static boolean rangeEquals(byte[] a, int aStart, int aEnd,
+                                       byte[] b, int bStart, int bEnd) {
+        if (aEnd - aStart != bEnd - bStart) {
+            return false;
+        }
+        for (int i = 0; i < aEnd - aStart; i++) {
+            if (a[aStart + i] != b[bStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return a builder that adds news stories after the ones of this store. If this is the
+     * latest snapshot of its arena, the builder fills the same arrays.
+     */
+    public Builder newBuilder() {
+        synchronized (mArena) {
+            // The empty store is shared by every empty load, it never hands over its arena.
+            if (mArena.mTip == this && this != EMPTY) {
+                // Hand the arena over once, a second builder copies.
+                mArena.mTip = null;
+                return mArena;
+            }
+        }
+        return new Builder(mSize).addRange(this, 0, mSize);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FeedStore)) {
+            return false;
+        }
+        FeedStore other = (FeedStore) o;
+        if (mSize != other.mSize) {
+            return false;
+        }
+        for (int i = 0; i < mSize; i++) {
+            if (!hasSameContents(i, other, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mSize;
+        for (int i = 0; i < mSize; i++) {
+            result = 31 * result + (int) (mTimes[i] ^ (mTimes[i] >>> 32));
+        }
+        return result;
+    }
+
+    /**
+     * Adds news stories to an arena, and takes snapshots of it.
+     */
+    public static final class Builder {
+
+        private int mSize;
+
+        private int[] mRows;
+
+        private long[] mTimes;
+
+        private byte[] mBytes;
+
+        private int mLength;
+
+        private final Dictionary mSections = new Dictionary();
+
+        private final Dictionary mDates = new Dictionary();
+
+        private final Dictionary mDisplayTimes = new Dictionary();
+
+        /**
+         * Web URLs added, to skip duplicates, or null until they are asked for.
+         */
+        private Set<String> mUrls;
+
+        /**
+         * Latest snapshot, the one whose builder may keep filling these arrays.
+         */
+        private FeedStore mTip;
+
+        /**
+         * Constructs a new {@link Builder}.
+         *
+         * @param expectedSize is the number of news stories it will probably hold.
+         */
+        public Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 1);
+            mRows = new int[capacity * ROW_INTS];
+            mTimes = new long[capacity];
+            mBytes = new byte[capacity * 256];
+        }
+
+        /**
+         * @return the number of news stories added.
+         */
+        public int size() {
+            return mSize;
+        }
+
+        /**
+         * Add the given news story.
+         */
+        public Builder add(News news) {
+            int titleEnd = append(news.getNewsTitle());
+            int urlEnd = append(news.getUrl());
+            append(news.getThumbnailUrl());
+            addRow(mSections.idOf(news.getNewsSection()), mDates.idOf(news.getDisplayDate()),
+                    mDisplayTimes.idOf(news.getDisplayTime()), titleEnd, urlEnd,
+                    news.getTimeInMillis());
+            if (mUrls != null) {
+                mUrls.add(news.getUrl());
+            }
+            return this;
+        }
+
+        /**
+         * Add the news story at the given position of the given store, without decoding it.
+         */
+        public Builder add(FeedStore feed, int position) {
+            int start = feed.start(position, TITLE_END);
+            int length = feed.row(position, THUMBNAIL_END) - start;
+            ensureCapacity(length);
+            System.arraycopy(feed.mBytes, start, mBytes, mLength, length);
+            int titleEnd = mLength + feed.row(position, TITLE_END) - start;
+            int urlEnd = mLength + feed.row(position, URL_END) - start;
+            mLength += length;
+
+            addRow(mSections.idOf(feed.getNewsSection(position)),
+                    mDates.idOf(feed.getDisplayDate(position)),
+                    mDisplayTimes.idOf(feed.getDisplayTime(position)), titleEnd, urlEnd,
+                    feed.mTimes[position]);
+            if (mUrls != null) {
+                mUrls.add(new String(mBytes, titleEnd, urlEnd - titleEnd, UTF_8));
+            }
+            return this;
+        }
+
+        /**
+         * Add the news stories of the given range of positions of the given store.
+         *
+         * @param start is the first position, inclusive.
+         * @param end   is the last position, exclusive.
+         */
+        public Builder addRange(FeedStore feed, int start, int end) {
+            for (int i = start; i < end; i++) {
+                add(feed, i);
+            }
+            return this;
+        }
+
+        /**
+         * Add the news stories of the given store whose web URL isn't in the builder yet,
+         * until the builder holds the given maximum number of news stories.
+         */
+        public Builder addAllNew(FeedStore feed, int maxSize) {
+            if (mUrls == null) {
+                mUrls = new HashSet<>();
+                for (int i = 0; i < mSize; i++) {
+                    int urlStart = mRows[i * ROW_INTS + TITLE_END];
+                    mUrls.add(new String(mBytes, urlStart,
+                            mRows[i * ROW_INTS + URL_END] - urlStart, UTF_8));
+                }
+            }
+            for (int i = 0; i < feed.size() && mSize < maxSize; i++) {
+                if (!mUrls.contains(feed.getUrl(i))) {
+                    add(feed, i);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Return a snapshot of the news stories added so far. More can be added afterwards
+         * without changing it.
+         */
+        public FeedStore build() {
+            synchronized (this) {
+                // The URLs are only needed while merging, don't keep them with the store.
+                mUrls = null;
+                mTip = new FeedStore(this);
+                return mTip;
+            }
+        }
+
+        /**
+         * Let go of the spare capacity of the arrays, for a store no more stories are added to.
+         */
+        private Builder trimToSize() {
+            mRows = Arrays.copyOf(mRows, mSize * ROW_INTS);
+            mTimes = Arrays.copyOf(mTimes, mSize);
+            mBytes = Arrays.copyOf(mBytes, mLength);
+            return this;
+        }
+
+        /**
+         * Append the UTF-8 bytes of the given String, if any, to the arena.
+         *
+         * @return the end of the bytes in the arena.
+         */
+        private int append(String value) {
+            if (value != null) {
+                byte[] bytes = value.getBytes(UTF_8);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, mBytes, mLength, bytes.length);
+                mLength += bytes.length;
+            }
+            return mLength;
+        }
+
+        private void addRow(int sectionId, int dateId, int timeId, int titleEnd, int urlEnd,
+                            long timeInMillis) {
+            if (mSize == mTimes.length) {
+                mRows = Arrays.copyOf(mRows, Math.max(mSize * 2, 8) * ROW_INTS);
+                mTimes = Arrays.copyOf(mTimes, Math.max(mSize * 2, 8));
+            }
+            int row = mSize * ROW_INTS;
+            mRows[row + SECTION] = sectionId;
+            mRows[row + DATE] = dateId;
+            mRows[row + TIME] = timeId;
+            mRows[row + TITLE_END] = titleEnd;
+            mRows[row + URL_END] = urlEnd;
+            mRows[row + THUMBNAIL_END] = mLength;
+            mTimes[mSize] = timeInMillis;
+            mSize++;
+        }
+
+        private void ensureCapacity(int length) {
+            if (mLength + length > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, Math.max(mBytes.length * 2, mLength + length));
+            }
+        }
+    }
+
+    /**
+     * Interns Strings that repeat across news stories and numbers them.
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> mIds = new HashMap<>();
+
+        private String[] mValues = new String[8];
+
+        private int mSize;
+
+        int idOf(String value) {
+            Integer id = mIds.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize] = value;
+            mIds.put(value, mSize);
+            return mSize++;
+        }
+
+        /**
+         * Return the values so far. Values are only ever appended, so the array stays right
+         * for the IDs handed out until now even as more are added.
+         */
+        String[] snapshot() {
+            return mValues;
+        }
+
+        /**
+         * Return the summed length of the values of the given snapshot.
+         */
+        static int length(String[] snapshot) {
+            int length = 0;
+            for (String value : snapshot) {
+                if (value != null) {
+                    length += value.length();
+                }
+            }
+            return length;
+        }
+    }
+}
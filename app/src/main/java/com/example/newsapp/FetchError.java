@@ -0,0 +1,54 @@
+package com.example.newsapp;
+
+/**
+ * Why loading news stories failed.
+ */
+public enum FetchError {
+    /**
+     * The connection couldn't be made or broke before the response was read.
+     */
+    NETWORK(true),
+    /**
+     * The server took longer to answer than the load's deadline or a socket timeout.
+     */
+    TIMEOUT(true),
+    /**
+     * The server answered with a 5xx error.
+     */
+    SERVER(true),
+    /**
+     * The server answered "429 Too Many Requests".
+     */
+    RATE_LIMITED(true),
+    /**
+     * The server rejected the request with another error, like a bad API key.
+     */
+    REJECTED(false),
+    /**
+     * The response couldn't be parsed.
+     */
+    MALFORMED(false),
+    /**
+     * The request wasn't sent because the API failed too often lately, see
+     * {@link CircuitBreaker}.
+     */
+    UNAVAILABLE(false),
+    /**
+     * The load was cancelled.
+     */
+    CANCELLED(false);
+
+    private final boolean mRetryable;
+
+    FetchError(boolean retryable) {
+        mRetryable = retryable;
+    }
+
+    /**
+     * @return true if sending the same request again may succeed. These are also the errors
+     * that say the API is unhealthy.
+     */
+    public boolean isRetryable() {
+        return mRetryable;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.newsapp;
+
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+/**
+ * A failed news request, with the {@link FetchError} saying why.
+ */
+public class FetchException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final FetchError mError;
+
+    private final long mRetryAfterMillis;
+
+    /**
+     * Constructs a new {@link FetchException}.
+     *
+     * @param error   is why the request failed.
+     * @param message describes the failure.
+     */
+    public FetchException(FetchError error, String message) {
+        this(error, message, 0, null);
+    }
+
+    /**
+     * Constructs a new {@link FetchException}.
+     *
+     * @param error            is why the request failed.
+     * @param message          describes the failure.
+     * @param retryAfterMillis is how long the server asked to wait before retrying, or 0.
+     * @param cause            is the exception the request failed with, or null.
+     */
+    public FetchException(FetchError error, String message, long retryAfterMillis,
+                          Throwable cause) {
+        super(error + ": " + message, cause);
+        mError = error;
+        mRetryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Return the given exception of a failed request as a {@link FetchException}.
+     */
+    static FetchException of(IOException e) {
+        if (e instanceof FetchException) {
+            return (FetchException) e;
+        }
+        FetchError error;
+        if (e instanceof SocketTimeoutException) {
+            error = FetchError.TIMEOUT;
+        } else if (e instanceof MalformedJsonException) {
+            error = FetchError.MALFORMED;
+        } else {
+            error = FetchError.NETWORK;
+        }
+        return new FetchException(error, String.valueOf(e.getMessage()), 0, e);
+    }
+
+    /**
+     * @return why the request failed.
+     */
+    public FetchError getError() {
+        return mError;
+    }
+
+    /**
+     * @return how long the server asked to wait before retrying, or 0 if it didn't say.
+     */
+    public long getRetryAfterMillis() {
+        return mRetryAfterMillis;
+    }
+}
@@ -0,0 +1,443 @@
+package com.example.newsapp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs network fetches on a bounded pool of threads, by priority.
+ * <p>
+ * Each fetch has a key, usually its request URL. Executing a fetch while one with the same key
+ * is in flight doesn't start another, the caller is handed the result of the one running, so
+ * pressing refresh over and over makes a single request. A fetch is cancelled once every
+ * caller waiting for it cancelled: if it hasn't started it never runs, and if it is running
+ * its thread is interrupted and the connections it registered with
+ * {@link #register(HttpURLConnection)} are disconnected, which aborts a blocked socket read.
+ * <p>
+ * Queued fetches run in {@link Priority} order, first come first served within a priority,
+ * so the user's refresh doesn't wait behind background prefetches.
+ */
+class FetchExecutor {
+
+    /**
+     * How urgently a fetch is needed, most urgent first.
+     */
+    enum Priority {
+        /**
+         * The user is waiting for it, like a refresh or a changed query.
+         */
+        FOREGROUND,
+        /**
+         * The user will soon need it, like the next page of the list.
+         */
+        NEXT_PAGE,
+        /**
+         * Nobody is waiting for it, like a sync or a prefetch.
+         */
+        BACKGROUND
+    }
+
+    /**
+     * The work of a fetch, on a pool thread.
+     */
+    interface Task<T> {
+        /**
+         * @return the result, or null if the fetch failed.
+         */
+        T run();
+    }
+
+    /**
+     * Receives the result of a fetch, on the callback executor.
+     */
+    interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * Number of fetches run.
+     */
+    private static final Metrics.Counter STARTED = Metrics.counter("fetch.started");
+
+    /**
+     * Number of fetches handed the result of an identical one in flight instead of running.
+     */
+    private static final Metrics.Counter COALESCED = Metrics.counter("fetch.coalesced");
+
+    /**
+     * Number of fetches cancelled before they finished.
+     */
+    private static final Metrics.Counter CANCELLED = Metrics.counter("fetch.cancelled");
+
+    /**
+     * Time a fetch waits in the queue before it runs.
+     */
+    private static final Metrics.Histogram QUEUE_WAIT_MICROS =
+            Metrics.histogram("fetch.queue_wait.us");
+
+    /**
+     * Number of threads fetching at once in the app.
+     */
+    private static final int THREADS = 3;
+
+    private static FetchExecutor sInstance;
+
+    /**
+     * The job running on the current thread, so the connections it opens can be registered.
+     */
+    private static final ThreadLocal<Job<?>> sCurrentJob = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor mExecutor;
+
+    private final Executor mCallbackExecutor;
+
+    /**
+     * Key to the job in flight for it.
+     */
+    private final Map<String, Job<?>> mInFlight = new HashMap<>();
+
+    /**
+     * Orders jobs of the same priority first come first served.
+     */
+    private final AtomicLong mSequence = new AtomicLong();
+
+    /**
+     * Return the fetch executor of the app, delivering results on the main thread.
+     */
+    static synchronized FetchExecutor getInstance() {
+        if (sInstance == null) {
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            sInstance = new FetchExecutor(THREADS, new Executor() {
+                @Override
+                public void execute(Runnable runnable) {
+                    mainHandler.post(runnable);
+                }
+            });
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructs a new {@link FetchExecutor}.
+     *
+     * @param threads          is the maximum number of fetches running at once.
+     * @param callbackExecutor runs the callbacks of finished fetches, usually on the UI thread.
+     */
+    FetchExecutor(int threads, Executor callbackExecutor) {
+        mCallbackExecutor = callbackExecutor;
+        mExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "fetch-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run the given fetch, or join the fetch with the same key if one is in flight. Joining a
+     * queued fetch with a more urgent priority moves it up the queue.
+     *
+     * @param key      identifies identical fetches, usually the request URL.
+     * @param priority of the fetch.
+     * @param task     fetches the result, unless an identical fetch is in flight.
+     * @param callback receives the result, unless the returned call is cancelled first.
+     * @return the call, to cancel it once its result is no longer needed.
+     */
+    <T> Call<T> execute(String key, Priority priority, Task<T> task, Callback<T> callback) {
+        Call<T> call = new Call<>(callback);
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            Job<T> job = (Job<T>) mInFlight.get(key);
+            if (job != null && job.addCall(call)) {
+                COALESCED.increment();
+                if (priority.ordinal() < job.mPriority.ordinal() && mExecutor.remove(job)) {
+                    job.mPriority = priority;
+                    mExecutor.execute(job);
+                }
+                return call;
+            }
+            job = new Job<>(key, priority, mSequence.getAndIncrement(), task);
+            job.addCall(call);
+            mInFlight.put(key, job);
+            mExecutor.execute(job);
+            return call;
+        }
+    }
+
+    /**
+     * Disconnect the given connection if the fetch running on the current thread is
+     * cancelled while it is open. Call {@link #unregister(HttpURLConnection)} once it is done.
+     *
+     * @return false if the fetch was already cancelled and the connection was disconnected.
+     */
+    static boolean register(HttpURLConnection connection) {
+        Job<?> job = sCurrentJob.get();
+        return job == null || job.addConnection(connection);
+    }
+
+    /**
+     * Stop disconnecting the given connection when the current fetch is cancelled.
+     */
+    static void unregister(HttpURLConnection connection) {
+        Job<?> job = sCurrentJob.get();
+        if (job != null) {
+            job.removeConnection(connection);
+        }
+    }
+
+    /**
+     * Return a callable that runs the given one as part of the fetch running on the current
+     * thread, so the connections it opens on another thread are disconnected with the fetch.
+     */
+    static <V> Callable<V> inCurrentFetch(final Callable<V> callable) {
+        final Job<?> job = sCurrentJob.get();
+        if (job == null) {
+            return callable;
+        }
+        return new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                Job<?> previous = sCurrentJob.get();
+                sCurrentJob.set(job);
+                try {
+                    return callable.call();
+                } finally {
+                    sCurrentJob.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Remove the job from the fetches in flight, if it is still the one for its key.
+     */
+    private synchronized void finish(Job<?> job) {
+        if (mInFlight.get(job.mKey) == job) {
+            mInFlight.remove(job.mKey);
+        }
+    }
+
+    /**
+     * A caller's interest in the result of a fetch.
+     */
+    static final class Call<T> {
+
+        private final Callback<T> mCallback;
+
+        private final CountDownLatch mDone = new CountDownLatch(1);
+
+        private volatile Job<T> mJob;
+
+        private volatile boolean mCancelled;
+
+        private volatile T mResult;
+
+        private Call(Callback<T> callback) {
+            mCallback = callback;
+        }
+
+        /**
+         * Stop waiting for the result. The callback won't be called, and the fetch itself is
+         * cancelled unless another call is still waiting for it.
+         */
+        void cancel() {
+            mCancelled = true;
+            mDone.countDown();
+            Job<T> job = mJob;
+            if (job != null) {
+                job.removeCall(this);
+            }
+        }
+
+        boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * Wait for the fetch to finish and the callback to return, on a background thread.
+         *
+         * @return the result, or null if the fetch failed or was cancelled.
+         */
+        T await() throws InterruptedException {
+            mDone.await();
+            return mResult;
+        }
+
+        private void deliver(T result) {
+            if (mCancelled) {
+                return;
+            }
+            mResult = result;
+            try {
+                if (mCallback != null) {
+                    mCallback.onResult(result);
+                }
+            } finally {
+                mDone.countDown();
+            }
+        }
+    }
+
+    /**
+     * A fetch in flight and the calls waiting for it.
+     */
+    private final class Job<T> implements Runnable, Comparable<Job<?>> {
+
+        private final String mKey;
+
+        private volatile Priority mPriority;
+
+        private final long mSequence;
+
+        private final Task<T> mTask;
+
+        private final long mQueuedNanos = System.nanoTime();
+
+        private final List<Call<T>> mCalls = new ArrayList<>();
+
+        private final Set<HttpURLConnection> mConnections = new HashSet<>();
+
+        /**
+         * Thread running the job, or null if it isn't running.
+         */
+        private Thread mThread;
+
+        private boolean mCancelled;
+
+        private boolean mFinished;
+
+        Job(String key, Priority priority, long sequence, Task<T> task) {
+            mKey = key;
+            mPriority = priority;
+            mSequence = sequence;
+            mTask = task;
+        }
+
+        @Override
+        public int compareTo(Job<?> other) {
+            int byPriority = mPriority.compareTo(other.mPriority);
+            if (byPriority != 0) {
+                return byPriority;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+                mThread = Thread.currentThread();
+            }
+            QUEUE_WAIT_MICROS.record(Metrics.microsSince(mQueuedNanos));
+            STARTED.increment();
+
+            T result = null;
+            sCurrentJob.set(this);
+            try {
+                result = mTask.run();
+            } finally {
+                // Even if the task threw, so the calls waiting for it get their null.
+                sCurrentJob.remove();
+                List<Call<T>> calls;
+                synchronized (this) {
+                    mThread = null;
+                    mFinished = true;
+                    // Don't leave a cancellation's interrupt for the next job of the thread.
+                    Thread.interrupted();
+                    calls = mCancelled ? null : new ArrayList<>(mCalls);
+                }
+                finish(this);
+                if (calls != null) {
+                    deliver(calls, result);
+                }
+            }
+        }
+
+        private void deliver(final List<Call<T>> calls, final T result) {
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (Call<T> call : calls) {
+                        call.deliver(result);
+                    }
+                }
+            });
+        }
+
+        /**
+         * @return false if the job is past taking more calls.
+         */
+        synchronized boolean addCall(Call<T> call) {
+            if (mCancelled || mFinished) {
+                return false;
+            }
+            mCalls.add(call);
+            call.mJob = this;
+            return true;
+        }
+
+        void removeCall(Call<T> call) {
+            synchronized (this) {
+                mCalls.remove(call);
+                if (!mCalls.isEmpty() || mCancelled || mFinished) {
+                    return;
+                }
+                cancel();
+            }
+            finish(this);
+            mExecutor.remove(this);
+        }
+
+        /**
+         * Cancel the job, interrupting its thread and disconnecting its connections.
+         */
+        private void cancel() {
+            mCancelled = true;
+            CANCELLED.increment();
+            if (mThread != null) {
+                mThread.interrupt();
+            }
+            for (HttpURLConnection connection : mConnections) {
+                connection.disconnect();
+            }
+            mConnections.clear();
+        }
+
+        synchronized boolean addConnection(HttpURLConnection connection) {
+            if (mCancelled) {
+                connection.disconnect();
+                return false;
+            }
+            mConnections.add(connection);
+            return true;
+        }
+
+        synchronized void removeConnection(HttpURLConnection connection) {
+            mConnections.remove(connection);
+        }
+    }
+}
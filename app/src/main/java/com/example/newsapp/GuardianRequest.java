@@ -0,0 +1,436 @@
+package com.example.newsapp;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A request to the Guardian content search, built with {@link Builder}.
+ * <p>
+ * The request names the {@link Field}s of each result it needs. Fields the search always
+ * returns are read from the result itself, the others are asked for with the show-fields
+ * parameter, and {@link NewsJsonParser} reads exactly those fields and skips the rest.
+ */
+public final class GuardianRequest {
+
+    /**
+     * URL of the Guardian content search.
+     */
+    public static final String SEARCH_URL = "http://content.guardianapis.com/search";
+
+    /**
+     * Number of results per page when the request doesn't say.
+     */
+    static final int DEFAULT_PAGE_SIZE = 10;
+
+    /**
+     * A field of a search result.
+     */
+    public enum Field {
+        SECTION_NAME("sectionName", false),
+        WEB_PUBLICATION_DATE("webPublicationDate", false),
+        WEB_TITLE("webTitle", false),
+        WEB_URL("webUrl", false),
+        THUMBNAIL("thumbnail", true),
+        BODY_TEXT("bodyText", true);
+
+        private static final Map<String, Field> sByName = new HashMap<>();
+
+        static {
+            for (Field field : values()) {
+                sByName.put(field.mName, field);
+            }
+        }
+
+        private final String mName;
+
+        private final boolean mShowField;
+
+        Field(String name, boolean showField) {
+            mName = name;
+            mShowField = showField;
+        }
+
+        /**
+         * @return the name of the field in the JSON result.
+         */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * @return true if the field is only returned when asked for with show-fields, in the
+         * "fields" object of the result.
+         */
+        public boolean isShowField() {
+            return mShowField;
+        }
+
+        /**
+         * Return the field with the given JSON name, or null if there is none.
+         */
+        static Field forName(String name) {
+            return sByName.get(name);
+        }
+    }
+
+    /**
+     * The fields displayed for every news story.
+     */
+    public static final Set<Field> DISPLAYED_FIELDS = Collections.unmodifiableSet(EnumSet.of(
+            Field.SECTION_NAME, Field.WEB_PUBLICATION_DATE, Field.WEB_TITLE, Field.WEB_URL));
+
+    private final String mUrl;
+
+    private final Set<Field> mFields;
+
+    private GuardianRequest(String url, Set<Field> fields) {
+        mUrl = url;
+        mFields = fields;
+    }
+
+    /**
+     * @return the request URL.
+     */
+    public String getUrl() {
+        return mUrl;
+    }
+
+    /**
+     * @return the fields read from each result.
+     */
+    public Set<Field> getFields() {
+        return mFields;
+    }
+
+    @Override
+    public String toString() {
+        return mUrl;
+    }
+
+    /**
+     * Return the fields read from each result of the given request URL: the displayed fields
+     * and any asked for with its show-fields parameter.
+     */
+    public static Set<Field> fieldsOf(String requestUrl) {
+        Set<Field> fields = EnumSet.copyOf(DISPLAYED_FIELDS);
+        String showFields = parameterOf(requestUrl, "show-fields");
+        if (showFields != null) {
+            for (String name : showFields.split(",")) {
+                Field field = Field.forName(name.trim());
+                if (field != null) {
+                    fields.add(field);
+                }
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Return the content ID of the story at the given web URL, which is the path of the URL
+     * without the leading slash, or null if the URL has no path.
+     */
+    public static String idOf(String webUrl) {
+        int hostStart = webUrl.indexOf("://");
+        int pathStart = webUrl.indexOf('/', hostStart < 0 ? 0 : hostStart + 3);
+        if (pathStart < 0 || pathStart == webUrl.length() - 1) {
+            return null;
+        }
+        int pathEnd = webUrl.length();
+        for (char end : new char[]{'?', '#'}) {
+            int index = webUrl.indexOf(end, pathStart);
+            if (index >= 0) {
+                pathEnd = Math.min(pathEnd, index);
+            }
+        }
+        return webUrl.substring(pathStart + 1, pathEnd);
+    }
+
+    /**
+     * Return true if the given request URL asks for the newest results first, so the results
+     * published after a given time are the first ones.
+     */
+    public static boolean isNewestFirst(String requestUrl) {
+        return "newest".equals(parameterOf(requestUrl, "order-by"));
+    }
+
+    /**
+     * Return the number of results per page of the given request URL.
+     */
+    static int pageSizeOf(String requestUrl) {
+        String pageSize = parameterOf(requestUrl, "page-size");
+        if (pageSize != null) {
+            try {
+                return Integer.parseInt(pageSize.trim());
+            } catch (NumberFormatException e) {
+                // Not a number, the Guardian ignores it.
+            }
+        }
+        return DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * Return the given request URL, only asking for results published at or after the given
+     * time in milliseconds.
+     */
+    public static String withFromDate(String requestUrl, long timeInMillis) {
+        return requestUrl + (requestUrl.indexOf('?') < 0 ? '?' : '&')
+                + "from-date=" + encode(NewsDates.formatIsoTime(timeInMillis));
+    }
+
+    /**
+     * Return the given request URL asking for the given page of results, starting from 1,
+     * instead of the page it asks for, if any.
+     */
+    public static String withPage(String requestUrl, int page) {
+        String url = withoutParameter(requestUrl, "page");
+        return url + (url.indexOf('?') < 0 ? '?' : '&') + "page=" + page;
+    }
+
+    /**
+     * Return the given request URL without the named parameter.
+     */
+    private static String withoutParameter(String requestUrl, String name) {
+        int queryStart = requestUrl.indexOf('?');
+        if (queryStart < 0) {
+            return requestUrl;
+        }
+        StringBuilder url = new StringBuilder(requestUrl.length())
+                .append(requestUrl, 0, queryStart);
+        char separator = '?';
+        for (String parameter : requestUrl.substring(queryStart + 1).split("&")) {
+            int split = parameter.indexOf('=');
+            if (parameter.isEmpty()
+                    || (split < 0 ? parameter : parameter.substring(0, split)).equals(name)) {
+                continue;
+            }
+            url.append(separator).append(parameter);
+            separator = '&';
+        }
+        return url.toString();
+    }
+
+    /**
+     * Return a key naming the query of the given request URL, the same for URLs that only
+     * differ by the order of their parameters, the case of the searched terms, the page or
+     * the API key, since those return the same news stories.
+     */
+    static String queryKeyOf(String requestUrl) {
+        int queryStart = requestUrl.indexOf('?');
+        if (queryStart < 0) {
+            return requestUrl;
+        }
+        SortedMap<String, String> parameters = new TreeMap<>();
+        for (String parameter : requestUrl.substring(queryStart + 1).split("&")) {
+            int split = parameter.indexOf('=');
+            String name = split < 0 ? parameter : parameter.substring(0, split);
+            if (name.isEmpty() || name.equals("page") || name.equals("api-key")) {
+                continue;
+            }
+            String value = split < 0 ? "" : decode(parameter.substring(split + 1)).trim();
+            parameters.put(name, name.equals("q") ? value.toLowerCase(Locale.ROOT) : value);
+        }
+        StringBuilder key = new StringBuilder(requestUrl.substring(0, queryStart));
+        char separator = '?';
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            key.append(separator).append(parameter.getKey()).append('=')
+                    .append(encode(parameter.getValue()));
+            separator = '&';
+        }
+        return key.toString();
+    }
+
+    /**
+     * Return the decoded value of the named parameter of the given request URL, or null if
+     * it has none.
+     */
+    static String parameterOf(String requestUrl, String name) {
+        int queryStart = requestUrl.indexOf('?');
+        if (queryStart < 0) {
+            return null;
+        }
+        String prefix = name + "=";
+        for (String parameter : requestUrl.substring(queryStart + 1).split("&")) {
+            if (parameter.startsWith(prefix)) {
+                return decode(parameter.substring(prefix.length()));
+            }
+        }
+        return null;
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Builds a {@link GuardianRequest}. Only the parameters that are set are sent.
+     */
+    public static final class Builder {
+
+        private String mQuery;
+
+        private final Set<String> mIds = new LinkedHashSet<>();
+
+        private final Set<String> mSections = new LinkedHashSet<>();
+
+        private long mFromDate = -1;
+
+        private String mOrderBy;
+
+        private int mPage;
+
+        private int mPageSize;
+
+        private final Set<Field> mFields = EnumSet.copyOf(DISPLAYED_FIELDS);
+
+        private final Set<String> mTags = new LinkedHashSet<>();
+
+        private String mApiKey;
+
+        /**
+         * Search for the given terms. Several topics separated by commas are queried one by
+         * one and merged, see {@link QueryUtils#fetchNewsData(String, String, String)}.
+         */
+        public Builder query(String query) {
+            mQuery = query;
+            return this;
+        }
+
+        /**
+         * Only return the content with the given IDs, see {@link #idOf(String)}, so the
+         * fields of several known stories are loaded with a single request.
+         */
+        public Builder ids(Collection<String> ids) {
+            mIds.addAll(ids);
+            return this;
+        }
+
+        /**
+         * Only return content from the given section ID, or any of several if called again.
+         */
+        public Builder section(String sectionId) {
+            mSections.add(sectionId);
+            return this;
+        }
+
+        /**
+         * Only return content published at or after the given time in milliseconds.
+         */
+        public Builder fromDate(long timeInMillis) {
+            mFromDate = timeInMillis;
+            return this;
+        }
+
+        /**
+         * Order the results "newest", "oldest" or by "relevance".
+         */
+        public Builder orderBy(String orderBy) {
+            mOrderBy = orderBy;
+            return this;
+        }
+
+        /**
+         * Return the given page of results, starting from 1.
+         */
+        public Builder page(int page) {
+            mPage = page;
+            return this;
+        }
+
+        /**
+         * Return the given number of results per page.
+         */
+        public Builder pageSize(int pageSize) {
+            mPageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Also read the given field of each result, asking for it with show-fields if the
+         * search doesn't return it by default.
+         */
+        public Builder field(Field field) {
+            mFields.add(field);
+            return this;
+        }
+
+        /**
+         * Return the tags of the given type with each result, for example "contributor".
+         */
+        public Builder tag(String tagType) {
+            mTags.add(tagType);
+            return this;
+        }
+
+        public Builder apiKey(String apiKey) {
+            mApiKey = apiKey;
+            return this;
+        }
+
+        public GuardianRequest build() {
+            StringBuilder url = new StringBuilder(SEARCH_URL);
+            appendParameter(url, "q", mQuery);
+            appendParameter(url, "ids", join(mIds, ","));
+            appendParameter(url, "section", join(mSections, "|"));
+            appendParameter(url, "from-date",
+                    mFromDate >= 0 ? NewsDates.formatIsoTime(mFromDate) : null);
+            appendParameter(url, "order-by", mOrderBy);
+            appendParameter(url, "page", mPage > 0 ? String.valueOf(mPage) : null);
+            appendParameter(url, "page-size",
+                    mPageSize > 0 ? String.valueOf(mPageSize) : null);
+
+            Set<String> showFields = new LinkedHashSet<>();
+            for (Field field : mFields) {
+                if (field.isShowField()) {
+                    showFields.add(field.getName());
+                }
+            }
+            appendParameter(url, "show-fields", join(showFields, ","));
+            appendParameter(url, "show-tags", join(mTags, ","));
+            appendParameter(url, "api-key", mApiKey);
+            return new GuardianRequest(url.toString(),
+                    Collections.unmodifiableSet(EnumSet.copyOf(mFields)));
+        }
+
+        private static void appendParameter(StringBuilder url, String name, String value) {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            url.append(url.indexOf("?") < 0 ? '?' : '&')
+                    .append(name).append('=').append(encode(value));
+        }
+
+        private static String join(Set<String> values, String separator) {
+            StringBuilder joined = new StringBuilder();
+            for (String value : values) {
+                if (joined.length() > 0) {
+                    joined.append(separator);
+                }
+                joined.append(value);
+            }
+            return joined.toString();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.newsapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * Shows images from the network in ImageViews, through an {@link ImagePipeline} of decoded
+ * Bitmaps.
+ * <p>
+ * Images are downsampled to the size they are displayed at while they are decoded, off the
+ * UI thread. Each ImageView remembers its pending load, so binding it to another image or
+ * recycling it cancels the load it no longer needs.
+ */
+public final class ImageLoader {
+
+    /**
+     * Name of the image cache directory inside the app's cache directory.
+     */
+    private static final String DIRECTORY_NAME = "images";
+
+    /**
+     * Maximum total size of the downloaded images on disk.
+     */
+    private static final long MAX_DISK_BYTES = 10 * 1024 * 1024;
+
+    /**
+     * Fraction of the app's heap the decoded images can use.
+     */
+    private static final int MEMORY_FRACTION = 8;
+
+    private static ImageLoader sInstance;
+
+    private final ImagePipeline<Bitmap> mPipeline;
+
+    /**
+     * Return the image loader of the app.
+     */
+    public static synchronized ImageLoader getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(),
+                    DIRECTORY_NAME);
+            sInstance = new ImageLoader(new DiskLruCache(directory, MAX_DISK_BYTES));
+        }
+        return sInstance;
+    }
+
+    private ImageLoader(DiskLruCache diskCache) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        mPipeline = new ImagePipeline<>(new BitmapDecoder(), diskCache,
+                Runtime.getRuntime().maxMemory() / MEMORY_FRACTION, new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                mainHandler.post(runnable);
+            }
+        });
+    }
+
+    /**
+     * Show the image at the given URL in the view, downsampled to the given size. The view is
+     * cleared while the image loads, or for good if the URL is null.
+     * <p>
+     * On the main thread.
+     */
+    public void load(final ImageView view, String url, int width, int height) {
+        cancel(view);
+        if (url == null) {
+            view.setImageDrawable(null);
+            return;
+        }
+
+        Bitmap cached = mPipeline.getCached(url, width, height);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+
+        view.setImageDrawable(null);
+        ImagePipeline.Request request = mPipeline.load(url, width, height,
+                new ImagePipeline.Target<Bitmap>() {
+                    @Override
+                    public void onImageLoaded(Bitmap image) {
+                        view.setTag(R.id.image_request, null);
+                        if (image != null) {
+                            view.setImageBitmap(image);
+                        }
+                    }
+                });
+        view.setTag(R.id.image_request, request);
+    }
+
+    /**
+     * Cancel the pending load of the view, if there is one.
+     * <p>
+     * On the main thread.
+     */
+    public void cancel(ImageView view) {
+        ImagePipeline.Request request = (ImagePipeline.Request) view.getTag(R.id.image_request);
+        if (request != null) {
+            request.cancel();
+            view.setTag(R.id.image_request, null);
+        }
+    }
+
+    /**
+     * Load the image at the given URL into memory in the background, so it shows right away
+     * once it is bound.
+     */
+    public void prefetch(String url, int width, int height) {
+        if (url != null) {
+            mPipeline.prefetch(url, width, height);
+        }
+    }
+
+    /**
+     * Decodes images into Bitmaps, reading their size first to downsample them while decoding.
+     */
+    private static final class BitmapDecoder implements ImagePipeline.Decoder<Bitmap> {
+
+        @Override
+        public Bitmap decode(byte[] bytes, int width, int height) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            options.inSampleSize = ImagePipeline.sampleSize(options.outWidth, options.outHeight,
+                    width, height);
+            options.inJustDecodeBounds = false;
+            // Thumbnails have no transparency, so half the bytes per pixel are enough.
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        }
+
+        @Override
+        public int sizeOf(Bitmap image) {
+            return image.getAllocationByteCount();
+        }
+    }
+}
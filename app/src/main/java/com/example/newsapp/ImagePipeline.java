@@ -0,0 +1,396 @@
+package com.example.newsapp;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads images from the network through a memory and a disk cache, decoding them on
+ * background threads.
+ * <p>
+ * Decoded images are kept in memory in least recently used order up to a number of bytes,
+ * keyed by URL and the size they were decoded for. The downloaded bytes are kept in a
+ * {@link DiskLruCache}, so an image evicted from memory is decoded again without a download.
+ * Loads for views that no longer need them are cancelled, and a cancelled load that hasn't
+ * started yet never runs. Prefetches run on their own thread at the lowest priority, behind
+ * the visible loads, and a load of an image being prefetched joins the prefetch instead of
+ * downloading it again, running it right away if it is still queued.
+ * <p>
+ * Decoding and delivering the result to the UI thread are supplied by the caller, so the
+ * pipeline runs on a plain JVM.
+ *
+ * @param <T> is the type of the decoded images.
+ */
+class ImagePipeline<T> {
+
+    /**
+     * Decodes downloaded image bytes.
+     */
+    interface Decoder<T> {
+        /**
+         * Decode the given image, downsampled to no less than the given size.
+         *
+         * @return the image, or null if the bytes are not an image.
+         */
+        T decode(byte[] bytes, int width, int height);
+
+        /**
+         * @return the number of bytes the decoded image takes in memory.
+         */
+        int sizeOf(T image);
+    }
+
+    /**
+     * Receives a loaded image, on the callback executor.
+     */
+    interface Target<T> {
+        /**
+         * @param image is the loaded image, or null if it couldn't be loaded.
+         */
+        void onImageLoaded(T image);
+    }
+
+    /**
+     * A pending image load.
+     */
+    static final class Request {
+
+        private volatile boolean mCancelled;
+
+        private volatile Future<?> mFuture;
+
+        /**
+         * Cancel the load. The target won't be called, and the load doesn't run at all if it
+         * hasn't started yet.
+         */
+        void cancel() {
+            mCancelled = true;
+            Future<?> future = mFuture;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        boolean isCancelled() {
+            return mCancelled;
+        }
+    }
+
+    private static final String LOG_TAG = ImagePipeline.class.getSimpleName();
+
+    private static final Metrics.Counter MEMORY_HITS = Metrics.counter("image.memory_hits");
+
+    private static final Metrics.Counter DISK_HITS = Metrics.counter("image.disk_hits");
+
+    private static final Metrics.Counter DOWNLOADS = Metrics.counter("image.downloads");
+
+    private static final Metrics.Counter CANCELLED = Metrics.counter("image.cancelled");
+
+    private static final Metrics.Histogram DOWNLOAD_MICROS =
+            Metrics.histogram("image.download.us");
+
+    private static final Metrics.Histogram DECODE_MICROS = Metrics.histogram("image.decode.us");
+
+    /**
+     * Number of threads loading images for views.
+     */
+    private static final int LOAD_THREADS = 3;
+
+    /**
+     * Priority of the threads loading images for views, below the UI thread so decoding
+     * doesn't compete with scrolling.
+     */
+    private static final int LOAD_PRIORITY = Thread.NORM_PRIORITY - 1;
+
+    private final Decoder<T> mDecoder;
+
+    private final DiskLruCache mDiskCache;
+
+    private final Executor mCallbackExecutor;
+
+    private final ThreadPoolExecutor mLoadExecutor;
+
+    private final ThreadPoolExecutor mPrefetchExecutor;
+
+    /**
+     * Memory cache key to decoded image, least recently used first.
+     */
+    private final LinkedHashMap<String, T> mMemoryCache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long mMaxMemoryBytes;
+
+    /**
+     * Total size of the images in the memory cache in bytes.
+     */
+    private long mMemoryBytes;
+
+    /**
+     * Prefetches queued or running, by memory cache key.
+     */
+    private final ConcurrentHashMap<String, FutureTask<T>> mPrefetching =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@link ImagePipeline}.
+     *
+     * @param decoder          decodes downloaded images.
+     * @param diskCache        stores downloaded images.
+     * @param maxMemoryBytes   is the maximum size of the decoded images kept in memory.
+     * @param callbackExecutor runs the targets of loaded images, usually on the UI thread.
+     */
+    ImagePipeline(Decoder<T> decoder, DiskLruCache diskCache, long maxMemoryBytes,
+                  Executor callbackExecutor) {
+        mDecoder = decoder;
+        mDiskCache = diskCache;
+        mMaxMemoryBytes = maxMemoryBytes;
+        mCallbackExecutor = callbackExecutor;
+        mLoadExecutor = newExecutor(LOAD_THREADS, "image-load-", LOAD_PRIORITY);
+        mPrefetchExecutor = newExecutor(1, "image-prefetch-", Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Return the image at the given URL decoded for the given size if it is in memory,
+     * otherwise null.
+     */
+    T getCached(String url, int width, int height) {
+        T image = getFromMemory(key(url, width, height));
+        if (image != null) {
+            MEMORY_HITS.increment();
+        }
+        return image;
+    }
+
+    /**
+     * Load the image at the given URL, decoded for the given size, and hand it to the target.
+     *
+     * @return the pending load, to cancel it once the image is no longer needed.
+     */
+    Request load(final String url, final int width, final int height, final Target<T> target) {
+        final Request request = new Request();
+        request.mFuture = mLoadExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (request.isCancelled()) {
+                    return;
+                }
+                FutureTask<T> prefetch = mPrefetching.get(key(url, width, height));
+                final T image = prefetch != null
+                        ? join(prefetch)
+                        : loadBlocking(url, width, height, request);
+                if (request.isCancelled()) {
+                    CANCELLED.increment();
+                    return;
+                }
+                mCallbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Check again, the load may have been cancelled while this was queued.
+                        if (!request.isCancelled()) {
+                            target.onImageLoaded(image);
+                        }
+                    }
+                });
+            }
+        });
+        return request;
+    }
+
+    /**
+     * Load the image at the given URL into the memory cache in the background, unless it is
+     * already there or being prefetched.
+     */
+    void prefetch(final String url, final int width, final int height) {
+        final String key = key(url, width, height);
+        if (getFromMemory(key) != null) {
+            return;
+        }
+        FutureTask<T> prefetch = new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() {
+                return loadBlocking(url, width, height, null);
+            }
+        }) {
+            @Override
+            protected void done() {
+                mPrefetching.remove(key, this);
+            }
+        };
+        if (mPrefetching.putIfAbsent(key, prefetch) == null) {
+            mPrefetchExecutor.execute(prefetch);
+        }
+    }
+
+    /**
+     * Return the image of the given prefetch, running it on the calling thread if it hasn't
+     * started yet, or else waiting for it.
+     */
+    private T join(FutureTask<T> prefetch) {
+        // Does nothing if the prefetch thread already runs it.
+        prefetch.run();
+        try {
+            return prefetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Log.e(LOG_TAG, "Problem prefetching an image", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Load the image at the given URL from memory, disk or the network, on a background
+     * thread. Stops early if the request is cancelled.
+     *
+     * @return the decoded image, or null if it couldn't be loaded.
+     */
+    T loadBlocking(String url, int width, int height, Request request) {
+        String key = key(url, width, height);
+        T image = getFromMemory(key);
+        if (image != null) {
+            MEMORY_HITS.increment();
+            return image;
+        }
+
+        byte[] bytes = mDiskCache.get(url);
+        if (bytes != null) {
+            DISK_HITS.increment();
+        } else {
+            try {
+                bytes = download(url);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem downloading the image " + url, e);
+                return null;
+            }
+            try {
+                mDiskCache.put(url, bytes);
+            } catch (IOException e) {
+                // Still show the image, it is just downloaded again next time.
+            }
+        }
+
+        if (request != null && request.isCancelled()) {
+            return null;
+        }
+        long startNanos = System.nanoTime();
+        image = mDecoder.decode(bytes, width, height);
+        DECODE_MICROS.record(Metrics.microsSince(startNanos));
+        if (image != null) {
+            putInMemory(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Return the total size of the images in the memory cache in bytes.
+     */
+    synchronized long getMemoryBytes() {
+        return mMemoryBytes;
+    }
+
+    private synchronized T getFromMemory(String key) {
+        return mMemoryCache.get(key);
+    }
+
+    private synchronized void putInMemory(String key, T image) {
+        T previous = mMemoryCache.put(key, image);
+        if (previous != null) {
+            mMemoryBytes -= mDecoder.sizeOf(previous);
+        }
+        mMemoryBytes += mDecoder.sizeOf(image);
+
+        Iterator<Map.Entry<String, T>> iterator = mMemoryCache.entrySet().iterator();
+        while (mMemoryBytes > mMaxMemoryBytes && iterator.hasNext()) {
+            mMemoryBytes -= mDecoder.sizeOf(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    private static byte[] download(String url) throws IOException {
+        long startNanos = System.nanoTime();
+        HttpURLConnection urlConnection = (HttpURLConnection) new URL(url).openConnection();
+        urlConnection.setReadTimeout(10000 /* Milliseconds */);
+        urlConnection.setConnectTimeout(15000 /* Milliseconds */);
+        int responseCode = urlConnection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            InputStream errorStream = urlConnection.getErrorStream();
+            if (errorStream != null) {
+                errorStream.close();
+            }
+            throw new IOException("Error response code: " + responseCode);
+        }
+
+        InputStream in = new BufferedInputStream(urlConnection.getInputStream());
+        try {
+            int length = urlConnection.getContentLength();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 ? length : 8192);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            DOWNLOADS.increment();
+            DOWNLOAD_MICROS.record(Metrics.microsSince(startNanos));
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Return the largest power of two to divide an image of the given size by, so it is still
+     * at least as large as the requested size.
+     */
+    static int sampleSize(int width, int height, int requestedWidth, int requestedHeight) {
+        int sampleSize = 1;
+        if (requestedWidth <= 0 || requestedHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= requestedWidth
+                && height / (sampleSize * 2) >= requestedHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static String key(String url, int width, int height) {
+        return url + '@' + width + 'x' + height;
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads, final String namePrefix,
+                                                  final int priority) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(priority);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
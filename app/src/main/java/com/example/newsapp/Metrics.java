@@ -0,0 +1,221 @@
+package com.example.newsapp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lightweight process-wide metrics: named counters and histograms of phase timings.
+ * <p>
+ * Recording a value is a handful of atomic increments with no locking and no allocation, so
+ * the metrics stay on in release builds. Look a metric up once and keep it in a static field,
+ * then record into it from any thread. A snapshot of every metric can be written out on demand
+ * with {@link #dump(Writer)}.
+ */
+public final class Metrics {
+
+    private static final ConcurrentHashMap<String, Histogram> sHistograms =
+            new ConcurrentHashMap<>();
+
+    private static final ConcurrentHashMap<String, Counter> sCounters =
+            new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Return the histogram with the given name, creating it if needed.
+     *
+     * @param name is the name of the histogram, with the unit of its values as a suffix.
+     */
+    public static Histogram histogram(String name) {
+        Histogram histogram = sHistograms.get(name);
+        if (histogram == null) {
+            Histogram newHistogram = new Histogram();
+            histogram = sHistograms.putIfAbsent(name, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Return the counter with the given name, creating it if needed.
+     */
+    public static Counter counter(String name) {
+        Counter counter = sCounters.get(name);
+        if (counter == null) {
+            Counter newCounter = new Counter();
+            counter = sCounters.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Return the microseconds elapsed since the given {@link System#nanoTime()}.
+     */
+    public static long microsSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    /**
+     * Write a snapshot of every counter and histogram, one per line, sorted by name.
+     */
+    public static void dump(Writer writer) throws IOException {
+        List<String> counterNames = new ArrayList<>(sCounters.keySet());
+        Collections.sort(counterNames);
+        for (String name : counterNames) {
+            writer.write(name + " " + sCounters.get(name).get() + "\n");
+        }
+
+        List<String> histogramNames = new ArrayList<>(sHistograms.keySet());
+        Collections.sort(histogramNames);
+        for (String name : histogramNames) {
+            Histogram histogram = sHistograms.get(name);
+            writer.write(String.format(Locale.US,
+                    "%s count=%d mean=%.1f p50<=%d p90<=%d p99<=%d max=%d\n",
+                    name, histogram.getCount(), histogram.getMean(),
+                    histogram.getPercentile(0.5), histogram.getPercentile(0.9),
+                    histogram.getPercentile(0.99), histogram.getMax()));
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write a snapshot of every metric to the given file.
+     */
+    public static void dumpToFile(File file) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                Charset.forName("UTF-8"));
+        try {
+            dump(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reset every metric to zero.
+     */
+    public static void reset() {
+        for (Histogram histogram : sHistograms.values()) {
+            histogram.reset();
+        }
+        for (Counter counter : sCounters.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * A monotonically increasing count.
+     */
+    public static final class Counter {
+
+        private final AtomicLong mValue = new AtomicLong();
+
+        public void increment() {
+            mValue.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            mValue.addAndGet(delta);
+        }
+
+        public long get() {
+            return mValue.get();
+        }
+
+        void reset() {
+            mValue.set(0);
+        }
+    }
+
+    /**
+     * A histogram of non-negative values in power of two buckets: bucket 0 counts the value 0
+     * and bucket i counts values from 2^(i-1) to 2^i - 1. Percentiles are reported as the
+     * upper bound of their bucket, so they are accurate to within a factor of two.
+     */
+    public static final class Histogram {
+
+        private static final int BUCKET_COUNT = 64;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+        private final AtomicLong mCount = new AtomicLong();
+
+        private final AtomicLong mSum = new AtomicLong();
+
+        private final AtomicLong mMax = new AtomicLong();
+
+        /**
+         * Record a value, negative values count as 0.
+         */
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            mBuckets.incrementAndGet(BUCKET_COUNT - Long.numberOfLeadingZeros(value));
+            mCount.incrementAndGet();
+            mSum.addAndGet(value);
+            long max = mMax.get();
+            while (value > max && !mMax.compareAndSet(max, value)) {
+                max = mMax.get();
+            }
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getMax() {
+            return mMax.get();
+        }
+
+        public double getMean() {
+            long count = mCount.get();
+            return count == 0 ? 0 : (double) mSum.get() / count;
+        }
+
+        /**
+         * Return the upper bound of the bucket holding the given fraction of the values.
+         */
+        public long getPercentile(double fraction) {
+            long count = mCount.get();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= rank) {
+                    return i == 0 ? 0 : Math.min((1L << i) - 1, mMax.get());
+                }
+            }
+            return mMax.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                mBuckets.set(i, 0);
+            }
+            mCount.set(0);
+            mSum.set(0);
+            mMax.set(0);
+        }
+    }
+}
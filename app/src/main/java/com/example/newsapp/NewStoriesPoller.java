@@ -0,0 +1,383 @@
+package com.example.newsapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks, while the news feed is in the foreground, whether stories newer than the head of
+ * the list were published, without reloading the list.
+ * <p>
+ * Each poll asks the Guardian for the stories published since the newest one shown, like the
+ * delta revalidation of the {@link NewsCache}, so it usually answers with a story or two.
+ * The new stories wait in a pending buffer, newest first, until the user asks for them with
+ * {@link #takePending()}, so the list doesn't move under their finger.
+ * <p>
+ * The interval between polls starts at {@link #MIN_INTERVAL_MILLIS} and doubles with every
+ * poll that finds nothing new, up to {@link #MAX_INTERVAL_MILLIS}, and goes back to the
+ * shortest as soon as new stories are found. While the user hasn't touched the app for
+ * {@link #IDLE_AFTER_MILLIS}, it polls at the longest interval, so a quiet feed or an idle
+ * screen lets the radio sleep.
+ * <p>
+ * Only newest-first queries are polled, the others don't list new stories at the top.
+ */
+public final class NewStoriesPoller {
+
+    private static final String LOG_TAG = NewStoriesPoller.class.getSimpleName();
+
+    /**
+     * Shortest time between polls, while new stories keep coming.
+     */
+    static final long MIN_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Longest time between polls, once the feed is quiet or the user idle.
+     */
+    static final long MAX_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(16);
+
+    /**
+     * Time without user interaction after which the user is considered idle.
+     */
+    static final long IDLE_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Maximum number of pending news stories. The poll asks for one page, a full page means
+     * there may be more new stories than it holds.
+     */
+    static final int MAX_PENDING = NewsLoader.PAGE_SIZE;
+
+    /**
+     * Key of the polls on the {@link FetchExecutor}, so a poll never runs twice at once.
+     */
+    private static final String POLL_FETCH_KEY = "new-stories-poll";
+
+    /**
+     * Number of polls sent.
+     */
+    private static final Metrics.Counter POLLS = Metrics.counter("poll.requests");
+
+    /**
+     * Number of new news stories found by the polls.
+     */
+    private static final Metrics.Counter NEW_STORIES = Metrics.counter("poll.new_stories");
+
+    /**
+     * Receives the number of pending news stories when it changes. Called on the main thread.
+     */
+    public interface Listener {
+        void onPendingChanged(int pendingCount);
+    }
+
+    private final FetchExecutor mExecutor;
+
+    /**
+     * Handler scheduling the polls, or null if they are only run with {@link #pollNow()}.
+     */
+    private final Handler mHandler;
+
+    private final Listener mListener;
+
+    /**
+     * The news stories the user already opened, which don't count as new, or null.
+     */
+    private SeenStore mSeenStore;
+
+    /**
+     * Request URL of the news feed, or null if it isn't polled.
+     */
+    private String mUrl;
+
+    /**
+     * Publication time of the newest news story of the list or pending, in milliseconds.
+     */
+    private long mHeadTime;
+
+    /**
+     * URLs of the news stories of the list and the pending ones, so a story is only found
+     * once.
+     */
+    private final Set<String> mKnownUrls = new HashSet<>();
+
+    /**
+     * News stories newer than the list, newest first.
+     */
+    private FeedStore mPending = FeedStore.EMPTY;
+
+    /**
+     * Number of polls in a row that found nothing new.
+     */
+    private int mQuietPolls;
+
+    /**
+     * {@link SystemClock#uptimeMillis()} of the last user interaction.
+     */
+    private long mLastInteractionMillis;
+
+    private boolean mStarted;
+
+    private FetchExecutor.Call<List<News>> mCall;
+
+    private final Runnable mPoll = new Runnable() {
+        @Override
+        public void run() {
+            poll();
+        }
+    };
+
+    public NewStoriesPoller(Listener listener) {
+        this(FetchExecutor.getInstance(), new Handler(Looper.getMainLooper()), listener);
+    }
+
+    NewStoriesPoller(FetchExecutor executor, Handler handler, Listener listener) {
+        mExecutor = executor;
+        mHandler = handler;
+        mListener = listener;
+    }
+
+    /**
+     * Return the time to wait before the next poll.
+     *
+     * @param quietPolls is the number of polls in a row that found nothing new.
+     * @param idleMillis is the time since the last user interaction.
+     */
+    static long intervalMillis(int quietPolls, long idleMillis) {
+        if (idleMillis >= IDLE_AFTER_MILLIS) {
+            return MAX_INTERVAL_MILLIS;
+        }
+        long interval = MIN_INTERVAL_MILLIS;
+        for (int i = 0; i < quietPolls && interval < MAX_INTERVAL_MILLIS; i++) {
+            interval *= 2;
+        }
+        return Math.min(interval, MAX_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Start polling, when the feed comes to the foreground.
+     * <p>
+     * On the main thread.
+     */
+    public void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        mLastInteractionMillis = SystemClock.uptimeMillis();
+        scheduleNextPoll();
+    }
+
+    /**
+     * Stop polling, cancelling the poll in flight, when the feed leaves the foreground. The
+     * pending news stories are kept.
+     * <p>
+     * On the main thread.
+     */
+    public void stop() {
+        mStarted = false;
+        if (mHandler != null) {
+            mHandler.removeCallbacks(mPoll);
+        }
+        if (mCall != null) {
+            mCall.cancel();
+            mCall = null;
+        }
+    }
+
+    /**
+     * The user touched the app: poll at the pace of the feed again, starting right away if
+     * the idle interval was waiting.
+     * <p>
+     * On the main thread.
+     */
+    public void onUserInteraction() {
+        long now = SystemClock.uptimeMillis();
+        boolean wasIdle = now - mLastInteractionMillis >= IDLE_AFTER_MILLIS;
+        mLastInteractionMillis = now;
+        if (wasIdle && mStarted && mCall == null) {
+            scheduleNextPoll();
+        }
+    }
+
+    /**
+     * The list now shows the given news stories of the given request URL, poll for the ones
+     * newer than its head. Pending news stories the list now shows are dropped.
+     * <p>
+     * On the main thread.
+     */
+    public void setHead(String url, FeedStore newsStories) {
+        if (url == null || !GuardianRequest.isNewestFirst(url)) {
+            url = null;
+        }
+        FeedStore previous = mPending;
+        if (url == null || !url.equals(mUrl)) {
+            // Another query, the stories found for the previous one don't belong to it.
+            previous = FeedStore.EMPTY;
+            mQuietPolls = 0;
+        }
+        mUrl = url;
+        mKnownUrls.clear();
+        mHeadTime = 0;
+        if (newsStories != null) {
+            for (int i = 0; i < newsStories.size(); i++) {
+                mKnownUrls.add(newsStories.getUrl(i));
+                mHeadTime = Math.max(mHeadTime, newsStories.getTimeInMillis(i));
+            }
+        }
+
+        // Keep the pending news stories the list doesn't show yet, the next poll only asks for
+        // stories newer than those.
+        FeedStore.Builder pending = new FeedStore.Builder(previous.size());
+        for (int i = 0; i < previous.size(); i++) {
+            if (mKnownUrls.add(previous.getUrl(i))) {
+                pending.add(previous, i);
+                mHeadTime = Math.max(mHeadTime, previous.getTimeInMillis(i));
+            }
+        }
+        setPending(pending.build());
+    }
+
+    /**
+     * Don't count the news stories of the given store as new, the user already saw them, for
+     * example through a search.
+     * <p>
+     * On the main thread.
+     */
+    public void setSeenStore(SeenStore seenStore) {
+        mSeenStore = seenStore;
+    }
+
+    /**
+     * @return the number of news stories newer than the list.
+     */
+    public int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * Return the news stories newer than the list, newest first, and empty the pending buffer.
+     * They are expected to be added to the top of the list, which then shows them.
+     * <p>
+     * On the main thread.
+     */
+    public FeedStore takePending() {
+        FeedStore pending = mPending;
+        setPending(FeedStore.EMPTY);
+        return pending;
+    }
+
+    /**
+     * Poll right away on the calling thread, waiting for the answer, instead of on the
+     * schedule.
+     */
+    void pollNow() {
+        onPolled(fetchNewer(mUrl, mHeadTime));
+    }
+
+    /**
+     * @return the time the next poll waits, at the current pace.
+     */
+    long getIntervalMillis() {
+        return intervalMillis(mQuietPolls, SystemClock.uptimeMillis() - mLastInteractionMillis);
+    }
+
+    private void scheduleNextPoll() {
+        if (mHandler == null || !mStarted) {
+            return;
+        }
+        mHandler.removeCallbacks(mPoll);
+        mHandler.postDelayed(mPoll, getIntervalMillis());
+    }
+
+    private void poll() {
+        final String url = mUrl;
+        final long headTime = mHeadTime;
+        if (url == null || headTime == 0) {
+            // Nothing to compare with yet, check again later.
+            scheduleNextPoll();
+            return;
+        }
+        mCall = mExecutor.execute(POLL_FETCH_KEY, FetchExecutor.Priority.BACKGROUND,
+                new FetchExecutor.Task<List<News>>() {
+                    @Override
+                    public List<News> run() {
+                        return fetchNewer(url, headTime);
+                    }
+                }, new FetchExecutor.Callback<List<News>>() {
+                    @Override
+                    public void onResult(List<News> newer) {
+                        mCall = null;
+                        // Drop the answer for a query the list no longer shows.
+                        if (url.equals(mUrl)) {
+                            onPolled(newer);
+                        } else {
+                            scheduleNextPoll();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Return the news stories of the given request URL published at or after the given time,
+     * or null if the poll failed.
+     * <p>
+     * On a background thread.
+     */
+    private static List<News> fetchNewer(String url, long headTime) {
+        if (url == null || headTime == 0) {
+            return null;
+        }
+        POLLS.increment();
+        try {
+            return QueryUtils.fetchNewsStories(GuardianRequest.withFromDate(url, headTime));
+        } catch (FetchException e) {
+            Log.w(LOG_TAG, "Problem polling for new stories", e);
+            return null;
+        }
+    }
+
+    /**
+     * Add the news stories found by a poll to the pending ones and schedule the next poll.
+     */
+    private void onPolled(List<News> newer) {
+        // The cursor is inclusive, so the head of the list comes again and is skipped.
+        List<News> found = new ArrayList<>();
+        if (newer != null) {
+            for (News news : newer) {
+                if (news.getTimeInMillis() >= mHeadTime && mKnownUrls.add(news.getUrl())
+                        && !isSeen(news)) {
+                    found.add(news);
+                }
+            }
+        }
+        if (found.isEmpty()) {
+            mQuietPolls++;
+        } else {
+            mQuietPolls = 0;
+            NEW_STORIES.add(found.size());
+            for (News news : found) {
+                mHeadTime = Math.max(mHeadTime, news.getTimeInMillis());
+            }
+            setPending(FeedStore.of(found).newBuilder().addAllNew(mPending, MAX_PENDING)
+                    .build());
+        }
+        scheduleNextPoll();
+    }
+
+    private boolean isSeen(News news) {
+        return mSeenStore != null && mSeenStore.contains(FeedStore.urlHash(news.getUrl()));
+    }
+
+    private void setPending(FeedStore pending) {
+        boolean changed = pending.size() != mPending.size();
+        mPending = pending;
+        if (changed) {
+            mListener.onPendingChanged(pending.size());
+        }
+    }
+}
@@ -8,14 +8,34 @@ public class News {
     // Title of the news article.
     private String mNewsTitle;
 
-    // Date and time of the news article.
+    // Date and time of the news article, formatted from mTimeInMillis when first asked for
+    // if the News was decoded from its stored form.
     private String mTime;
 
     // Website URL of the news article.
     private String mUrl;
 
+    // URL of the thumbnail image of the news article, or null if it has none.
+    private String mThumbnailUrl;
+
+    // Plain text body of the news article, or null unless it was asked for. Only loaded to
+    // be saved for offline reading, it is not kept with the cached news lists.
+    private String mBodyText;
+
+    // Date and time of the news article in milliseconds since the epoch.
+    private long mTimeInMillis;
+
+    // Date of the news article formatted for display, i.e "Mar 10, 2010".
+    private String mDisplayDate;
+
+    // Time of the news article formatted for display, i.e "3:00 PM".
+    private String mDisplayTime;
+
     /**
      * Constructs a new {@link News} object.
+     * <p>
+     * The time is parsed and formatted for display here, on the loading thread, so binding
+     * the news article to a list item doesn't have to.
      *
      * @param newsSection is the section name of the news article(i.e Politics, Economy e.t.c).
      * @param newsTitle   is the title of the news article.
@@ -23,10 +43,55 @@ public class News {
      * @param url         is the website URL to find more details about the news article.
      */
     public News(String newsSection, String newsTitle, String time, String url) {
+        this(newsSection, newsTitle, time, url, null);
+    }
+
+    /**
+     * Constructs a new {@link News} object with a thumbnail image.
+     *
+     * @param thumbnailUrl is the URL of the thumbnail image of the news article, or null.
+     */
+    public News(String newsSection, String newsTitle, String time, String url,
+                String thumbnailUrl) {
+        this(newsSection, newsTitle, time, url, thumbnailUrl, null);
+    }
+
+    /**
+     * Constructs a new {@link News} object with a thumbnail image and body text.
+     *
+     * @param thumbnailUrl is the URL of the thumbnail image of the news article, or null.
+     * @param bodyText     is the plain text body of the news article, or null.
+     */
+    public News(String newsSection, String newsTitle, String time, String url,
+                String thumbnailUrl, String bodyText) {
+        this(newsSection, newsTitle, time, NewsDates.parseIsoTime(time), url, thumbnailUrl,
+                bodyText);
+    }
+
+    /**
+     * Constructs a new {@link News} object whose time is already parsed, see {@link NewsCodec}.
+     *
+     * @param time         is the date and time when the news article was released, or null
+     *                     to format it from timeInMillis when it is asked for.
+     * @param timeInMillis is the same time in milliseconds since the epoch, or 0 if the time
+     *                     couldn't be parsed.
+     */
+    News(String newsSection, String newsTitle, String time, long timeInMillis, String url,
+         String thumbnailUrl, String bodyText) {
         mNewsSection = newsSection;
         mNewsTitle = newsTitle;
         mTime = time;
         mUrl = url;
+        mThumbnailUrl = thumbnailUrl;
+        mBodyText = bodyText;
+        mTimeInMillis = timeInMillis;
+        if (mTimeInMillis != 0) {
+            mDisplayDate = NewsDates.formatDate(mTimeInMillis);
+            mDisplayTime = NewsDates.formatTime(mTimeInMillis);
+        } else {
+            mDisplayDate = "";
+            mDisplayTime = "";
+        }
     }
 
     /**
@@ -47,13 +112,97 @@ public class News {
      * @return the Time and Date of the news article.
      */
     public String getTime() {
+        if (mTime == null) {
+            // Racing threads format the same String, so no lock is needed.
+            mTime = NewsDates.formatIsoTime(mTimeInMillis);
+        }
         return mTime;
     }
 
+    /**
+     * @return the Time and Date of the news article in milliseconds since the epoch, or 0 if
+     * it couldn't be parsed.
+     */
+    public long getTimeInMillis() {
+        return mTimeInMillis;
+    }
+
+    /**
+     * @return the Date of the news article formatted for display.
+     */
+    public String getDisplayDate() {
+        return mDisplayDate;
+    }
+
+    /**
+     * @return the Time of the news article formatted for display.
+     */
+    public String getDisplayTime() {
+        return mDisplayTime;
+    }
+
     /**
      * @return the URL of the news article.
      */
     public String getUrl() {
         return mUrl;
     }
+
+    /**
+     * @return the URL of the thumbnail image of the news article, or null if it has none.
+     */
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
+
+    /**
+     * @return the plain text body of the news article, or null if it wasn't loaded.
+     */
+    public String getBodyText() {
+        return mBodyText;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof News)) {
+            return false;
+        }
+        News other = (News) o;
+        return mNewsSection.equals(other.mNewsSection)
+                && mNewsTitle.equals(other.mNewsTitle)
+                && timeEquals(other)
+                && mUrl.equals(other.mUrl)
+                && (mThumbnailUrl == null
+                ? other.mThumbnailUrl == null : mThumbnailUrl.equals(other.mThumbnailUrl))
+                && (mBodyText == null
+                ? other.mBodyText == null : mBodyText.equals(other.mBodyText));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mNewsSection.hashCode();
+        result = 31 * result + mNewsTitle.hashCode();
+        result = 31 * result + (int) (mTimeInMillis ^ (mTimeInMillis >>> 32));
+        result = 31 * result + mUrl.hashCode();
+        result = 31 * result + (mThumbnailUrl != null ? mThumbnailUrl.hashCode() : 0);
+        result = 31 * result + (mBodyText != null ? mBodyText.hashCode() : 0);
+        return result;
+    }
+
+    /**
+     * Return true if the other news article has the same time, without formatting it unless
+     * only one of the two has its time String.
+     */
+    private boolean timeEquals(News other) {
+        if (mTimeInMillis != other.mTimeInMillis) {
+            return false;
+        }
+        if (mTime == null && other.mTime == null) {
+            return true;
+        }
+        return getTime().equals(other.getTime());
+    }
 }
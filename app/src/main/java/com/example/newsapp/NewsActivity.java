@@ -3,38 +3,76 @@ package com.example.newsapp;
 import android.content.Context;
 import android.content.Intent;
 import android.content.Loader;
-import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
-import android.app.LoaderManager;
 import android.app.LoaderManager.LoaderCallbacks;
-import android.preference.PreferenceManager;
+import android.support.v4.widget.SwipeRefreshLayout;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.util.Log;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.List;
+import java.util.Map;
 
-public class NewsActivity extends AppCompatActivity implements LoaderCallbacks<List<News>> {
+public class NewsActivity extends AppCompatActivity implements LoaderCallbacks<NewsResult> {
 
     private static final String LOG_TAG = NewsActivity.class.getName();
 
-    private static final String GUARDIAN_REQUEST_URL =
-            "http://content.guardianapis.com/search";
+    /**
+     * Name of the file the performance metrics are written to, in the app's files directory.
+     */
+    private static final String METRICS_FILE_NAME = "metrics.txt";
+
+    /**
+     * Name of the file the snapshot of the feed is saved to, in the app's cache directory.
+     */
+    private static final String SNAPSHOT_FILE_NAME = "feed_snapshot.bin";
 
     /**
      * Constant value for the news loader ID.
      */
     private static final int NEWS_LOADER_ID = 1;
 
+    /**
+     * Constant value for the loader ID of the remote search.
+     */
+    private static final int SEARCH_LOADER_ID = 2;
+
+    /**
+     * Key of the request URL in the bundle of the news loader.
+     */
+    private static final String ARG_URL = "url";
+
+    /**
+     * Key of the search query in the bundle of the search loader.
+     */
+    private static final String ARG_SEARCH_QUERY = "search_query";
+
+    /**
+     * Maximum number of local search results shown.
+     */
+    private static final int MAX_SEARCH_RESULTS = 100;
+
+    /**
+     * Whether the news stories of every cached query have been added to the search index.
+     */
+    private static volatile boolean sCacheIndexed;
+
     /**
      * Adapter for the list of news stories
      */
@@ -50,38 +88,120 @@ public class NewsActivity extends AppCompatActivity implements LoaderCallbacks<L
      */
     private View loadingIndicator;
 
+    /**
+     * RecyclerView that displays the news stories.
+     */
+    private RecyclerView mNewsListView;
+
+    /**
+     * Layout that refreshes the news stories when the user pulls down the list.
+     */
+    private SwipeRefreshLayout mSwipeRefreshLayout;
+
+    /**
+     * Number of rows from the end of the list at which the next page starts loading.
+     */
+    private int mPrefetchDistance;
+
+    /**
+     * Whether there was no network connection when the activity was created.
+     */
+    private boolean mOffline;
+
+    /**
+     * News stories of the topic and order-by preferences, loaded last.
+     */
+    private FeedStore mNewsStories;
+
+    /**
+     * Why the last load of the news stories failed, or null if it succeeded.
+     */
+    private FetchError mError;
+
+    /**
+     * Text being searched for, or null when not searching.
+     */
+    private String mSearchQuery;
+
+    /**
+     * Query the remote search results are for, or null if there are none.
+     */
+    private String mRemoteSearchQuery;
+
+    /**
+     * News stories the Guardian found for the remote search query.
+     */
+    private FeedStore mRemoteSearchResults;
+
+    /**
+     * Reloads the news feed when the topic or order-by preference changes.
+     */
+    private QueryEngine mQueryEngine;
+
+    /**
+     * Shows how many newer news stories wait to be added to the top of the list.
+     */
+    private TextView mNewStoriesView;
+
+    /**
+     * Looks for news stories newer than the list while it is in the foreground.
+     */
+    private NewStoriesPoller mNewStoriesPoller;
+
+    /**
+     * The news stories the user opened, or null until it is read in the background.
+     */
+    private SeenStore mSeenStore;
+
+    /**
+     * The bodies saved for offline reading, or null until it is opened in the background.
+     */
+    private ArticleStore mArticleStore;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTrace.start();
         super.onCreate(savedInstanceState);
+
+        // Set up the connection to the Guardian, and read the preferences, the connectivity
+        // and the snapshot of the feed, in the background while the layout is inflated. The
+        // loader kept across a configuration change is only restored by super.onCreate.
+        boolean coldStart = getLoaderManager().getLoader(NEWS_LOADER_ID) == null;
+        if (coldStart) {
+            QueryUtils.prewarmConnection(GuardianRequest.SEARCH_URL);
+        }
+        loadStartupState();
+
+        StartupTrace.Section section = StartupTrace.begin("inflate");
         setContentView(R.layout.news_activity);
 
-        // Find a reference to the {@link ListView} in the layout.
-        ListView newsListView = findViewById(R.id.list);
+        // Find a reference to the {@link RecyclerView} in the layout.
+        mNewsListView = findViewById(R.id.list);
 
         // Find a reference to the empty TextView in the layout.
         mEmptyStateTextView = findViewById(R.id.empty_view);
 
         // Find a reference to the loading indicator in the layout.
         loadingIndicator = findViewById(R.id.loading_indicator);
+        section.end();
 
-        // Set the empty TextView on the {@link ListView}
-        // so the TextView is displayed when the list is empty.
-        newsListView.setEmptyView(mEmptyStateTextView);
-
-        // Create a new adapter that takes an empty list of news stories as input.
-        mAdapter = new NewsAdapter(this, new ArrayList<News>());
+        section = StartupTrace.begin("adapter");
 
-        // Set the adapter on the {@link ListView}
-        // so the list can be populated in the user interface.
-        newsListView.setAdapter(mAdapter);
-
-        // Set an item click listener on the ListView, which sends an intent to a web browser
-        // to open a website with more information about the selected news story.
-        newsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Create a new adapter which opens the clicked news story in the reader if it was
+        // saved for offline reading, or else sends an intent to a web browser to open a
+        // website with more information about it.
+        mAdapter = new NewsAdapter(new NewsAdapter.OnNewsClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
-                // Find the current news story that was clicked on.
-                News currentNews = mAdapter.getItem(position);
+            public void onNewsClick(News currentNews) {
+                // The adapter dims the row once the story is marked seen.
+                if (mSeenStore != null) {
+                    mSeenStore.markSeen(currentNews.getUrl());
+                }
+
+                if (mArticleStore != null && mArticleStore.contains(currentNews.getUrl())) {
+                    startActivity(ReaderActivity.newIntent(NewsActivity.this, currentNews));
+                    return;
+                }
 
                 // Convert the String URL into a URI object (to pass into the Intent constructor)
                 Uri newsUri = Uri.parse(currentNews.getUrl());
@@ -94,82 +214,555 @@ public class NewsActivity extends AppCompatActivity implements LoaderCallbacks<L
             }
         });
 
-        // Get a reference to the ConnectivityManager to check the state of the network
-        // connectivity
-        ConnectivityManager connectivityManager = (ConnectivityManager)
-                getSystemService(Context.CONNECTIVITY_SERVICE);
+        // Set the layout manager and the adapter on the {@link RecyclerView}
+        // so the list can be populated in the user interface.
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        mNewsListView.setLayoutManager(layoutManager);
+        mNewsListView.addItemDecoration(
+                new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        mNewsListView.setHasFixedSize(true);
+        mNewsListView.setAdapter(mAdapter);
+
+        // Load the next page of news stories in the background once the user scrolls close
+        // to the end of the list, and the thumbnails of the rows about to scroll into view.
+        mPrefetchDistance = getResources().getInteger(R.integer.page_prefetch_distance);
+        mNewsListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int totalItemCount = layoutManager.getItemCount();
+                if (mSearchQuery == null && totalItemCount > 0
+                        && layoutManager.findLastVisibleItemPosition()
+                        >= totalItemCount - 1 - mPrefetchDistance) {
+                    NewsLoader loader = getNewsLoader();
+                    if (loader != null) {
+                        loader.loadNextPage();
+                    }
+                }
+                if (dy > 0) {
+                    int lastVisible = layoutManager.findLastVisibleItemPosition();
+                    mAdapter.prefetchThumbnails(lastVisible + 1,
+                            lastVisible + 1 + mPrefetchDistance);
+                }
+            }
+        });
 
-        // Get details on the currently active default data network
-        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        // Reload the news stories when the user pulls down the list.
+        mSwipeRefreshLayout = findViewById(R.id.swipe_refresh);
+        mSwipeRefreshLayout.setColorSchemeResources(R.color.colorAccent);
+        mSwipeRefreshLayout.setOnRefreshListener(new SwipeRefreshLayout.OnRefreshListener() {
+            @Override
+            public void onRefresh() {
+                NewsLoader loader = getNewsLoader();
+                if (loader != null) {
+                    loader.refresh();
+                } else {
+                    mSwipeRefreshLayout.setRefreshing(false);
+                }
+            }
+        });
 
-        // If there is a network connection, fetch data
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
+        // Add the newer news stories found while the list was shown to its top when the user
+        // asks for them.
+        mNewStoriesView = findViewById(R.id.new_stories);
+        mNewStoriesView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                showNewStories();
+            }
+        });
+        mNewStoriesPoller = new NewStoriesPoller(new NewStoriesPoller.Listener() {
+            @Override
+            public void onPendingChanged(int pendingCount) {
+                updateNewStoriesView();
+            }
+        });
+
+        section.end();
+
+        // The loader survives a configuration change, reconnect to it right away. At cold
+        // start it is created once the startup state is loaded.
+        if (!coldStart) {
+            getLoaderManager().initLoader(NEWS_LOADER_ID, null, this);
+        }
+
+        // Follow the preferences for as long as the activity lives, including while the
+        // settings are shown on top of it.
+        mQueryEngine = new QueryEngine(this, new QueryEngine.OnQueryChangedListener() {
+            @Override
+            public void onQueryChanged(String url) {
+                onNewsQueryChanged(url);
+            }
+        });
+        mQueryEngine.start();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mQueryEngine.stop();
+        super.onDestroy();
+    }
 
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null
-            // for the bundle. Pass in this activity for the LoaderCallbacks parameter (because
-            // this activity implements the LoaderCallbacks interface)
-            loaderManager.initLoader(NEWS_LOADER_ID, null, this);
+    @Override
+    public void onUserInteraction() {
+        super.onUserInteraction();
+        mNewStoriesPoller.onUserInteraction();
+    }
+
+    /**
+     * Show the number of newer news stories waiting, if there are any and the news list is
+     * shown rather than search results.
+     */
+    private void updateNewStoriesView() {
+        int pendingCount = mNewStoriesPoller.getPendingCount();
+        if (pendingCount > 0 && mSearchQuery == null) {
+            mNewStoriesView.setText(getResources().getQuantityString(
+                    R.plurals.new_stories, pendingCount, pendingCount));
+            mNewStoriesView.setVisibility(View.VISIBLE);
         } else {
-            // Otherwise, display error
-            // First, hide loading indicator so error message will be visible.
+            mNewStoriesView.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Add the newer news stories waiting to the top of the list. The diff only inserts their
+     * rows, above the first visible row, which keeps its place on the screen.
+     */
+    private void showNewStories() {
+        NewsLoader loader = getNewsLoader();
+        if (loader != null) {
+            loader.prependStories(mNewStoriesPoller.takePending());
+        }
+    }
+
+    /**
+     * Replace the news loader with one for the given request URL, unless it already loads it.
+     * The new loader shows the news stories of the query at once if it is a recent one.
+     */
+    private void onNewsQueryChanged(String url) {
+        NewsLoader loader = getNewsLoader();
+        if (loader == null || url.equals(loader.getUrl())) {
+            return;
+        }
+        if (mSearchQuery == null) {
+            loadingIndicator.setVisibility(View.VISIBLE);
+        }
+        Bundle args = new Bundle();
+        args.putString(ARG_URL, url);
+        getLoaderManager().restartLoader(NEWS_LOADER_ID, args, this);
+    }
+
+    /**
+     * Read the request URL of the preferences, the connectivity, the snapshot of the feed and
+     * the seen news stories, and open the article store and the news cache, on a background
+     * thread, then show the snapshot and start the news loader.
+     */
+    private void loadStartupState() {
+        final Context context = getApplicationContext();
+        BackgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                StartupTrace.Section section = StartupTrace.begin("preferences");
+                final String url = QueryUtils.buildRequestUrl(context);
+                section.end();
+
+                section = StartupTrace.begin("connectivity");
+                // Get details on the currently active default data network
+                ConnectivityManager connectivityManager = (ConnectivityManager)
+                        context.getSystemService(Context.CONNECTIVITY_SERVICE);
+                NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+                final boolean offline = networkInfo == null || !networkInfo.isConnected();
+                section.end();
+
+                section = StartupTrace.begin("snapshot");
+                final FeedStore snapshot = FeedSnapshot.read(
+                        new File(context.getCacheDir(), SNAPSHOT_FILE_NAME), url);
+                section.end();
+
+                section = StartupTrace.begin("seen");
+                final SeenStore seenStore = SeenStore.getInstance(context);
+                section.end();
+
+                // Opening the article store indexes its directory.
+                section = StartupTrace.begin("articles");
+                final ArticleStore articleStore = ArticleStore.getInstance(context);
+                section.end();
+
+                // Open the news cache the loader reads first, it indexes its directory too.
+                section = StartupTrace.begin("cache");
+                NewsCache.getInstance(context);
+                section.end();
+
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        onStartupStateLoaded(url, offline, snapshot, seenStore, articleStore);
+                    }
+                });
+
+                // Keep the news stories fresh in the background, so the next launch has them
+                // on disk.
+                NewsSyncJobService.schedule(context);
+            }
+        });
+    }
+
+    /**
+     * Show the snapshot of the feed, if any and nothing was loaded yet, dim the rows of the
+     * news stories already seen, and start the news loader for the given request URL unless
+     * it survived a configuration change.
+     *
+     * @param offline is whether there is no network connection, to explain an empty list.
+     */
+    private void onStartupStateLoaded(String url, boolean offline, FeedStore snapshot,
+                                      SeenStore seenStore, ArticleStore articleStore) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        mOffline = offline;
+        mSeenStore = seenStore;
+        mArticleStore = articleStore;
+        mAdapter.setSeenStore(seenStore);
+        mNewStoriesPoller.setSeenStore(seenStore);
+        if (snapshot != null && mNewsStories == null && mSearchQuery == null) {
             loadingIndicator.setVisibility(View.GONE);
+            showNewsStories(snapshot);
+            onFirstContent("snapshot");
+        }
 
-            // Update empty state with no connection error message
-            mEmptyStateTextView.setText(R.string.no_internet_connection);
+        // Initialize the loader even without a network connection, so news stories saved by
+        // the background sync are shown straight from disk. Pass in the int ID constant
+        // defined above and the request URL in the bundle. Pass in this activity for the
+        // LoaderCallbacks parameter (because this activity implements the LoaderCallbacks
+        // interface)
+        if (getNewsLoader() == null) {
+            StartupTrace.Section section = StartupTrace.begin("loader");
+            Bundle args = new Bundle();
+            args.putString(ARG_URL, url);
+            getLoaderManager().initLoader(NEWS_LOADER_ID, args, this);
+            section.end();
+        }
+    }
+
+    /**
+     * Record the time to the first news stories shown, from the given source, if they are.
+     */
+    private void onFirstContent(String source) {
+        if (StartupTrace.firstContent(source)) {
+            reportFullyDrawn();
         }
     }
 
     @Override
-    public Loader<List<News>> onCreateLoader(int i, Bundle bundle) {
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
-        String topic = sharedPrefs.getString(
-                getString(R.string.settings_topic_key),
-                getString(R.string.settings_topic_default));
+    protected void onStop() {
+        super.onStop();
+        mNewStoriesPoller.stop();
+
+        // Save the top of the feed, so the next cold start can draw it right away.
+        final NewsLoader loader = getNewsLoader();
+        final FeedStore newsStories = mNewsStories;
+        if (loader != null && newsStories != null && !newsStories.isEmpty()) {
+            final File file = new File(getCacheDir(), SNAPSHOT_FILE_NAME);
+            BackgroundExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        FeedSnapshot.write(file, loader.getUrl(), newsStories);
+                    } catch (IOException e) {
+                        Log.e(LOG_TAG, "Problem saving the feed snapshot", e);
+                    }
+                }
+            });
+        }
 
-        String orderBy = sharedPrefs.getString(
-                getString(R.string.settings_order_by_key),
-                getString(R.string.settings_order_by_key));
+        // Save the news stories opened since the last save.
+        final SeenStore seenStore = mSeenStore;
+        if (seenStore != null) {
+            BackgroundExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        seenStore.saveIfChanged();
+                    } catch (IOException e) {
+                        Log.e(LOG_TAG, "Problem saving the seen news stories", e);
+                    }
+                }
+            });
+        }
+    }
 
-        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
-        Uri.Builder uriBuilder = baseUri.buildUpon();
+    @Override
+    protected void onStart() {
+        super.onStart();
 
-        uriBuilder.appendQueryParameter("q", topic);
-        uriBuilder.appendQueryParameter("orderby", orderBy);
-        uriBuilder.appendQueryParameter("api-key", "test");
+        // If the topic or order-by preference changed just before coming back from the
+        // settings, apply it now rather than once the preferences settle.
+        mQueryEngine.flush();
 
-        // Create a new loader for the given URL.
-        return new NewsLoader(this, uriBuilder.toString());
+        // Only look for newer news stories while the list can be seen.
+        mNewStoriesPoller.start();
+    }
+
+    /**
+     * Return the news loader, or null if it hasn't been created.
+     */
+    private NewsLoader getNewsLoader() {
+        return (NewsLoader) getLoaderManager().<NewsResult>getLoader(NEWS_LOADER_ID);
     }
 
     @Override
-    public void onLoadFinished(Loader<List<News>> loader, List<News> newsStories) {
+    public Loader<NewsResult> onCreateLoader(int id, Bundle bundle) {
+        if (id == SEARCH_LOADER_ID) {
+            return new NewsLoader(this,
+                    QueryUtils.buildSearchUrl(this, bundle.getString(ARG_SEARCH_QUERY)));
+        }
+        // Create a new loader for the given URL, read in the background at cold start.
+        String url = bundle != null ? bundle.getString(ARG_URL) : null;
+        return new NewsLoader(this, url != null ? url : QueryUtils.buildRequestUrl(this));
+    }
+
+    @Override
+    public void onLoadFinished(Loader<NewsResult> loader, NewsResult result) {
         // Hide the loading indicator because the data has been loaded
         loadingIndicator.setVisibility(View.GONE);
+        mSwipeRefreshLayout.setRefreshing(false);
+        FeedStore newsStories = result.getNewsStories();
+
+        if (loader.getId() == SEARCH_LOADER_ID) {
+            if (mSearchQuery != null && mSearchQuery.equals(mRemoteSearchQuery)) {
+                mRemoteSearchResults = newsStories;
+                showSearchResults();
+                showError(result.getError());
+            }
+            return;
+        }
 
-        // Set the empty state to display "No news stories found."
-        mEmptyStateTextView.setText(R.string.no_news_stories);
+        FeedStore previous = mNewsStories;
+        mNewsStories = newsStories;
+        mError = result.getError();
+        mNewStoriesPoller.setHead(((NewsLoader) loader).getUrl(), newsStories);
+        if (mSearchQuery == null) {
+            showNewsStories(newsStories);
+            // The empty state explains the error when there is nothing to show.
+            if (newsStories != null && !newsStories.isEmpty()) {
+                showError(mError);
+                onFirstContent("loader");
+            }
+        }
 
-        // Clear the adapter of previous news data.
-        mAdapter.clear();
+        // Save the top news stories for offline reading once on an unmetered network, when
+        // they changed rather than for every page or redelivery.
+        if (newsStories != null && firstPageChanged(previous, newsStories)) {
+            ArticlePrefetchJobService.schedule(this);
+        }
+    }
 
-        // If there is a valid list of {@link News} stories, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (newsStories != null && !newsStories.isEmpty()) {
-            mAdapter.addAll(newsStories);
+    /**
+     * Return true if the first page of the given news stories isn't the first page of the
+     * previous ones.
+     */
+    private static boolean firstPageChanged(FeedStore previous, FeedStore newsStories) {
+        int count = Math.min(NewsLoader.PAGE_SIZE, newsStories.size());
+        if (previous == null || previous.size() < count) {
+            return count > 0;
         }
+        for (int position = 0; position < count; position++) {
+            if (!newsStories.isSameStory(position, previous, position)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
-    public void onLoaderReset(Loader<List<News>> loader) {
+    public void onLoaderReset(Loader<NewsResult> loader) {
         // Loader reset, so we can clear out our existing data.
-        mAdapter.clear();
+        if (loader.getId() == SEARCH_LOADER_ID) {
+            mRemoteSearchResults = null;
+        } else {
+            mNewsStories = null;
+            mNewStoriesPoller.setHead(null, null);
+            if (mSearchQuery == null) {
+                mAdapter.submitList(null);
+            }
+        }
+    }
+
+    /**
+     * Show the given news stories, or the empty state if there are none.
+     */
+    private void showNewsStories(FeedStore newsStories) {
+        // Set the empty state to display "No news stories found.", or that there is no
+        // internet connection if that's why.
+        if (mSearchQuery != null) {
+            mEmptyStateTextView.setText(R.string.no_news_stories);
+        } else if (mOffline) {
+            mEmptyStateTextView.setText(R.string.no_internet_connection);
+        } else {
+            mEmptyStateTextView.setText(mError != null
+                    ? errorMessage(mError) : R.string.no_news_stories);
+        }
+
+        // Hand the news stories to the adapter. It diffs them against the ones shown, so an
+        // appended page only binds the new rows and a refresh only the rows that changed.
+        boolean empty = newsStories == null || newsStories.isEmpty();
+        mAdapter.submitList(empty ? null : newsStories);
+        mEmptyStateTextView.setVisibility(empty ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Tell the user why loading news stories failed, if it did.
+     */
+    private void showError(FetchError error) {
+        if (error != null && error != FetchError.CANCELLED) {
+            Toast.makeText(this, errorMessage(error), Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * Return the message explaining the given error.
+     */
+    private static int errorMessage(FetchError error) {
+        switch (error) {
+            case TIMEOUT:
+                return R.string.error_timeout;
+            case SERVER:
+            case UNAVAILABLE:
+                return R.string.error_server;
+            case RATE_LIMITED:
+                return R.string.error_rate_limited;
+            case REJECTED:
+            case MALFORMED:
+                return R.string.error_rejected;
+            default:
+                return R.string.error_network;
+        }
+    }
+
+    /**
+     * Show the news stories matching the search query: the local matches, ranked, followed
+     * by the remote results that are not among them.
+     */
+    private void showSearchResults() {
+        FeedStore results = FeedStore.of(
+                SearchIndex.getInstance().search(mSearchQuery, MAX_SEARCH_RESULTS));
+        if (mRemoteSearchResults != null) {
+            results = results.newBuilder()
+                    .addAllNew(mRemoteSearchResults, Integer.MAX_VALUE).build();
+        }
+        showNewsStories(results);
+    }
+
+    /**
+     * Search the indexed news stories for the given text, and the Guardian as well if
+     * refineRemotely is true. The local results are shown right away, the remote ones are
+     * added once they arrive.
+     */
+    private void search(String query, boolean refineRemotely) {
+        mSearchQuery = query;
+        if (!query.equals(mRemoteSearchQuery)) {
+            mRemoteSearchQuery = null;
+            mRemoteSearchResults = null;
+        }
+        showSearchResults();
+
+        if (refineRemotely && !SearchIndex.tokenize(query).isEmpty()) {
+            mRemoteSearchQuery = query;
+            Bundle args = new Bundle();
+            args.putString(ARG_SEARCH_QUERY, query);
+            getLoaderManager().restartLoader(SEARCH_LOADER_ID, args, this);
+        }
+    }
+
+    /**
+     * Start searching: the pull to refresh, paging and new stories of the news list are
+     * paused, and the news stories of every cached query, with the bodies saved for offline
+     * reading, are added to the search index in the background.
+     */
+    private void startSearch() {
+        mSearchQuery = "";
+        mSwipeRefreshLayout.setEnabled(false);
+        updateNewStoriesView();
+        showSearchResults();
+
+        if (!sCacheIndexed) {
+            sCacheIndexed = true;
+            final Context context = getApplicationContext();
+            BackgroundExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (List<News> newsStories
+                            : NewsCache.getInstance(context).getAllNewsStories()) {
+                        SearchIndex.getInstance().addAll(newsStories);
+                    }
+                    for (Map.Entry<String, String> body
+                            : ArticleStore.getInstance(context).getAll().entrySet()) {
+                        SearchIndex.getInstance().setBodyText(body.getKey(), body.getValue());
+                    }
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mSearchQuery != null) {
+                                showSearchResults();
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop searching and show the news stories of the preferences again.
+     */
+    private void endSearch() {
+        mSearchQuery = null;
+        mRemoteSearchQuery = null;
+        mRemoteSearchResults = null;
+        getLoaderManager().destroyLoader(SEARCH_LOADER_ID);
+        mSwipeRefreshLayout.setEnabled(true);
+        updateNewStoriesView();
+        showNewsStories(mNewsStories);
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
+        menu.findItem(R.id.action_dump_metrics).setVisible(BuildConfig.DEBUG);
+
+        // Search the indexed news stories as the user types, and the Guardian as well when
+        // the user submits the query.
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query, true);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (mSearchQuery != null) {
+                    search(newText, false);
+                }
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                startSearch();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                endSearch();
+                return true;
+            }
+        });
         return true;
     }
 
@@ -181,6 +774,31 @@ public class NewsActivity extends AppCompatActivity implements LoaderCallbacks<L
             startActivity(settingsIntent);
             return true;
         }
+        if (id == R.id.action_dump_metrics) {
+            dumpMetrics();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
+
+    /**
+     * Write a snapshot of the performance metrics to a file and show it in a dialog.
+     */
+    private void dumpMetrics() {
+        File file = new File(getFilesDir(), METRICS_FILE_NAME);
+        StringWriter snapshot = new StringWriter();
+        try {
+            Metrics.dumpToFile(file);
+            Metrics.dump(snapshot);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the metrics", e);
+            Toast.makeText(this, R.string.dump_metrics_failed, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(file.getPath())
+                .setMessage(snapshot.toString())
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
 }
@@ -1,126 +1,326 @@
 package com.example.newsapp;
 
-import android.app.Activity;
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The {@link NewsAdapter} creates a list item layout for each news story in the
- * data source (a list of {@link News} objects).
+ * data source (a {@link FeedStore} of news stories).
  * <p>
- * These list item layouts will be provided to an adapter view like ListView
- * to be displayed to the user.
+ * These list item layouts will be provided to a RecyclerView to be displayed to the user.
+ * Rows are bound straight from the store by position, the title from its char arena, so no
+ * {@link News} object is made for a row until it is clicked.
+ * New stores are diffed against the current one on a background thread, keyed on the URL of
+ * the news stories, so only the rows whose story changed are rebound. Thumbnails are loaded
+ * by the {@link ImageLoader}, and the load of a recycled row is cancelled.
  */
-public class NewsAdapter extends ArrayAdapter<News> {
+public class NewsAdapter extends RecyclerView.Adapter<NewsAdapter.NewsViewHolder> {
 
-    private static final String LOG_TAG = NewsAdapter.class.getName();
+    /**
+     * Diffs the submitted news stories, one store at a time.
+     */
+    private static final ThreadPoolExecutor DIFF_EXECUTOR = newDiffExecutor();
+
+    /**
+     * Time to bind a news story to a list item.
+     */
+    private static final Metrics.Histogram BIND_MICROS = Metrics.histogram("adapter.bind.us");
+
+    /**
+     * Opacity of the rows of the news stories the user already opened.
+     */
+    private static final float SEEN_ALPHA = 0.5f;
+
+    /**
+     * Listener for clicks on a news story.
+     */
+    public interface OnNewsClickListener {
+        void onNewsClick(News news);
+    }
+
+    private final OnNewsClickListener mClickListener;
+
+    /**
+     * Handler used to apply the diffs on the main thread.
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * News stories shown, or null if there are none.
+     */
+    private FeedStore mNewsStories;
+
+    /**
+     * Number of stores submitted, so the diff of a store replaced before it was applied is
+     * dropped.
+     */
+    private int mSubmitCount;
+
+    /**
+     * Loads the thumbnails, created with the first view holder.
+     */
+    private ImageLoader mImageLoader;
+
+    /**
+     * Size of the thumbnail views in pixels.
+     */
+    private int mThumbnailWidth;
+    private int mThumbnailHeight;
+
+    /**
+     * The news stories the user opened, whose rows are dimmed, or null until it is read.
+     */
+    private SeenStore mSeenStore;
 
     /**
      * Constructs a new {@link NewsAdapter}.
      *
-     * @param context     of the app.
-     * @param newsStories is the list of news stories, which is the data source of the adapter.
+     * @param clickListener is notified when the user clicks on a news story.
+     */
+    public NewsAdapter(OnNewsClickListener clickListener) {
+        mClickListener = clickListener;
+    }
+
+    /**
+     * Show the given news stories. They are diffed against the ones shown on a background
+     * thread, then only the rows that changed are updated.
+     * <p>
+     * On the main thread.
+     *
+     * @param newsStories is the store of the news stories to show, or null to clear the list.
      */
-    public NewsAdapter(Activity context, ArrayList<News> newsStories) {
-        super(context, 0, newsStories);
+    public void submitList(final FeedStore newsStories) {
+        final FeedStore previous = mNewsStories;
+        if (newsStories == previous) {
+            return;
+        }
+        final int submitCount = ++mSubmitCount;
+        if (previous == null || previous.isEmpty() || newsStories == null
+                || newsStories.isEmpty()) {
+            // Nothing to diff, every row is inserted or removed.
+            mNewsStories = newsStories;
+            if (previous != null && !previous.isEmpty()) {
+                notifyItemRangeRemoved(0, previous.size());
+            }
+            if (newsStories != null && !newsStories.isEmpty()) {
+                notifyItemRangeInserted(0, newsStories.size());
+            }
+            return;
+        }
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult diff =
+                        DiffUtil.calculateDiff(new DiffCallback(previous, newsStories));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (submitCount == mSubmitCount) {
+                            mNewsStories = newsStories;
+                            diff.dispatchUpdatesTo(NewsAdapter.this);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Dim the rows of the news stories the given store holds, and the rows clicked from now
+     * on once the click listener marked them seen.
+     * <p>
+     * On the main thread.
+     */
+    public void setSeenStore(SeenStore seenStore) {
+        mSeenStore = seenStore;
+        notifyItemRangeChanged(0, getItemCount());
+    }
+
+    @Override
+    public int getItemCount() {
+        return mNewsStories != null ? mNewsStories.size() : 0;
     }
 
     /**
-     * @return a list item view that displays information about the news story at the given position
-     * in the list of news stories
+     * @return a new list item view holder, its views looked up once and reused for every
+     * news story it displays.
      */
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        // Check if there is an existing list view (called convertView) that we can reuse,
-        // otherwise, if convertView is null, then inflate a new list item layout.
-        View listItemView = convertView;
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(
-                    R.layout.news_list_item, parent, false);
+    public NewsViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        if (mImageLoader == null) {
+            mImageLoader = ImageLoader.getInstance(parent.getContext());
+            mThumbnailWidth = parent.getResources()
+                    .getDimensionPixelSize(R.dimen.thumbnail_width);
+            mThumbnailHeight = parent.getResources()
+                    .getDimensionPixelSize(R.dimen.thumbnail_height);
+        }
+        View listItemView = LayoutInflater.from(parent.getContext()).inflate(
+                R.layout.news_list_item, parent, false);
+        final NewsViewHolder holder = new NewsViewHolder(listItemView);
+        listItemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                int position = holder.getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    mClickListener.onNewsClick(mNewsStories.get(position));
+                    // Rebind the row, dimmed if the listener marked the story seen.
+                    notifyItemChanged(position);
+                }
+            }
+        });
+        return holder;
+    }
+
+    /**
+     * Display the news story at the given position in the list of news stories.
+     */
+    @Override
+    public void onBindViewHolder(NewsViewHolder holder, int position) {
+        long startNanos = System.nanoTime();
+
+        FeedStore newsStories = mNewsStories;
+
+        // Display the section name and the title of the news story at the given position,
+        // the title decoded into the chars the row reuses.
+        holder.newsSectionView.setText(newsStories.getNewsSection(position));
+        int titleMaxLength = newsStories.getTitleMaxLength(position);
+        if (holder.titleChars.length < titleMaxLength) {
+            holder.titleChars = new char[titleMaxLength];
+        }
+        holder.newsTitleView.setText(holder.titleChars, 0,
+                newsStories.getNewsTitle(position, holder.titleChars));
+
+        // Display the date and time of the news story, formatted when it was loaded.
+        holder.dateView.setText(newsStories.getDisplayDate(position));
+        holder.timeView.setText(newsStories.getDisplayTime(position));
+
+        // Show the thumbnail from memory, or start loading it in the background.
+        String thumbnailUrl = newsStories.getThumbnailUrl(position);
+        holder.thumbnailView.setVisibility(thumbnailUrl != null ? View.VISIBLE : View.GONE);
+        mImageLoader.load(holder.thumbnailView, thumbnailUrl, mThumbnailWidth,
+                mThumbnailHeight);
+
+        // Dim the row if the story was already opened, checked by the hash of its URL.
+        boolean seen = mSeenStore != null
+                && mSeenStore.contains(newsStories.getUrlHash(position));
+        holder.itemView.setAlpha(seen ? SEEN_ALPHA : 1f);
+
+        BIND_MICROS.record(Metrics.microsSince(startNanos));
+    }
+
+    /**
+     * The row scrolled out of view, stop loading its thumbnail and let go of the image.
+     */
+    @Override
+    public void onViewRecycled(NewsViewHolder holder) {
+        if (mImageLoader != null) {
+            mImageLoader.cancel(holder.thumbnailView);
+        }
+        holder.thumbnailView.setImageDrawable(null);
+    }
+
+    /**
+     * Load the thumbnails of the news stories in the given range of positions into memory in
+     * the background, so they show right away once their rows scroll into view.
+     *
+     * @param start is the first position, inclusive.
+     * @param end   is the last position, exclusive.
+     */
+    public void prefetchThumbnails(int start, int end) {
+        if (mImageLoader == null) {
+            return;
+        }
+        for (int position = Math.max(start, 0); position < Math.min(end, getItemCount());
+             position++) {
+            mImageLoader.prefetch(mNewsStories.getThumbnailUrl(position), mThumbnailWidth,
+                    mThumbnailHeight);
+        }
+    }
+
+    private static ThreadPoolExecutor newDiffExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "news-diff");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Decides which news stories of two stores are the same story, by URL, and whether their
+     * content changed, comparing the arenas without decoding them.
+     */
+    private static class DiffCallback extends DiffUtil.Callback {
+
+        private final FeedStore mOldStories;
+        private final FeedStore mNewStories;
+
+        DiffCallback(FeedStore oldStories, FeedStore newStories) {
+            mOldStories = oldStories;
+            mNewStories = newStories;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldStories.size();
         }
 
-        // Find the news story at the given position in the list of news stories.
-        News currentNews = getItem(position);
-
-        // Find the TextView with the view ID news_section.
-        TextView newsSectionView = listItemView.findViewById(R.id.news_section);
-        // Get the news section of the news story.
-        String newsSection = currentNews.getNewsSection();
-        // Display the section name of the current news in that TextView.
-        newsSectionView.setText(newsSection);
-
-        // Find the TextView with the view ID news_title.
-        TextView newsTitleView = listItemView.findViewById(R.id.news_title);
-        // Get the Title of the news story.
-        String newsTitle = currentNews.getNewsTitle();
-        // Display the Title of the current news in that TextView.
-        newsTitleView.setText(newsTitle);
-
-        // Get the original time from the News object.
-        String originalTime = currentNews.getTime();
-
-        // Split the original time string into two parts, based on the "T" and "Z" texts from the
-        // original time text of "2019-05-11T05:00:12Z"
-        String[] parts = originalTime.split("(T)|(Z)");
-        // The date string should be in the format "2019-05-11"
-        String date = parts[0];
-        // The time string should be in the format "05:00:12"
-        String time = parts[1];
-
-        // Change the date format from this "2019-05-11" format...
-        SimpleDateFormat ymdFormat = new SimpleDateFormat("yyyy-MM-dd");
-        // ...to this format "Mar 10, 2010"
-        SimpleDateFormat ldyFormat = new SimpleDateFormat("LLL dd, yyyy");
-
-        // Format the date string into the format "Mar 10, 2010"
-        String outputDateStr = parseDate(date, ymdFormat, ldyFormat);
-        Log.i(LOG_TAG, "This is the  current date: " + outputDateStr);
-
-        // Find the TextView with the view ID date.
-        TextView dateView = listItemView.findViewById(R.id.date);
-        // Display the date of the current news in that TextView.
-        dateView.setText(outputDateStr);
-
-        // Change the time format from this "05:00:12" format...
-        SimpleDateFormat hmsFormat = new SimpleDateFormat("hh:mm:ss");
-        // ...to this format "3.00 PM"
-        SimpleDateFormat hmaFormat = new SimpleDateFormat("h:mm a");
-
-        // Format the time string into the format "3.00 PM"
-        String outputTimeStr = parseDate(time, hmsFormat, hmaFormat);
-        Log.i(LOG_TAG, "This is the current time: " + outputTimeStr);
-
-        // Find the TextView with the view ID time.
-        TextView timeView = listItemView.findViewById(R.id.time);
-        // Display the time of the current news in that TextView.
-        timeView.setText(outputTimeStr);
-
-        // Return the list item view that is now showing the appropriate data.
-        return listItemView;
+        @Override
+        public int getNewListSize() {
+            return mNewStories.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return mOldStories.isSameStory(oldPosition, mNewStories, newPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return mOldStories.hasSameContents(oldPosition, mNewStories, newPosition);
+        }
     }
 
     /**
-     * Helper method to change the format of the time and date strings
+     * Holds the views of a news list item so they are only looked up once.
      */
-    public static String parseDate(String inputDateString, SimpleDateFormat inputDateFormat,
-                                   SimpleDateFormat outputDateFormat) {
-        Date date;
-        String outputDateString = null;
-        try {
-            date = inputDateFormat.parse(inputDateString);
-            outputDateString = outputDateFormat.format(date);
-        } catch (ParseException e) {
-            e.printStackTrace();
+    static class NewsViewHolder extends RecyclerView.ViewHolder {
+
+        final TextView newsSectionView;
+        final TextView newsTitleView;
+        final TextView dateView;
+        final TextView timeView;
+        final ImageView thumbnailView;
+
+        /**
+         * Chars of the title displayed, overwritten when the row is bound again.
+         */
+        char[] titleChars = new char[128];
+
+        NewsViewHolder(View listItemView) {
+            super(listItemView);
+            newsSectionView = listItemView.findViewById(R.id.news_section);
+            newsTitleView = listItemView.findViewById(R.id.news_title);
+            dateView = listItemView.findViewById(R.id.date);
+            timeView = listItemView.findViewById(R.id.time);
+            thumbnailView = listItemView.findViewById(R.id.thumbnail);
         }
-        return outputDateString;
     }
 }
@@ -0,0 +1,344 @@
+package com.example.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disk cache of parsed news stories, keyed by the request URL they were loaded from.
+ */
+public class NewsCache {
+
+    private static final String LOG_TAG = NewsCache.class.getSimpleName();
+
+    /**
+     * Name of the cache directory inside the app's cache directory.
+     */
+    private static final String DIRECTORY_NAME = "news";
+
+    /**
+     * Maximum total size of the cached news lists.
+     */
+    private static final long MAX_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * How long a cached news list can still be shown while it is revalidated.
+     */
+    private static final long TIME_TO_LIVE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Version of the entry format, bumped whenever it changes so old entries are ignored.
+     */
+    private static final int FORMAT_VERSION = 4;
+
+    /**
+     * Maximum number of news stories kept for a request URL. When newer news stories are
+     * merged in, the oldest ones past it are dropped.
+     */
+    static final int MAX_RETAINED_STORIES = NewsLoader.MAX_STORIES;
+
+    /**
+     * Number of revalidations that only loaded the news stories newer than the cached ones.
+     */
+    private static final Metrics.Counter DELTA_SYNCS = Metrics.counter("cache.delta_syncs");
+
+    /**
+     * Number of news stories loaded by a delta revalidation.
+     */
+    private static final Metrics.Histogram DELTA_ITEMS = Metrics.histogram("cache.delta.items");
+
+    private static NewsCache sInstance;
+
+    private final DiskLruCache mDiskCache;
+
+    /**
+     * Return the news cache of the app.
+     */
+    public static synchronized NewsCache getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(),
+                    DIRECTORY_NAME);
+            sInstance = new NewsCache(new DiskLruCache(directory, MAX_BYTES));
+        }
+        return sInstance;
+    }
+
+    NewsCache(DiskLruCache diskCache) {
+        mDiskCache = diskCache;
+    }
+
+    /**
+     * Return the cached news stories for the given request URL, or null if there are none
+     * or they are older than the time to live.
+     */
+    public Entry get(String url) {
+        return get(url, false);
+    }
+
+    /**
+     * Return the cached news stories for the given request URL, or null if there are none.
+     * <p>
+     * Entries older than the time to live are kept until they are evicted, so they can still
+     * be shown when the Guardian can't be reached.
+     *
+     * @param allowStale is true to return an entry older than the time to live too.
+     */
+    public Entry get(String url, boolean allowStale) {
+        byte[] bytes = mDiskCache.get(url);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            Entry entry = readEntry(bytes);
+            if (entry == null) {
+                mDiskCache.remove(url);
+                return null;
+            }
+            if (!allowStale
+                    && System.currentTimeMillis() - entry.getSavedAt() > TIME_TO_LIVE_MILLIS) {
+                return null;
+            }
+            return entry;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cached news stories", e);
+            mDiskCache.remove(url);
+            return null;
+        }
+    }
+
+    /**
+     * Return the news stories of every cached request URL, most recently used first. Unlike
+     * {@link #get(String)}, entries past the time to live are included, they are still worth
+     * searching offline.
+     */
+    public List<List<News>> getAllNewsStories() {
+        List<List<News>> newsStories = new ArrayList<>();
+        for (byte[] bytes : mDiskCache.getAll()) {
+            try {
+                Entry entry = readEntry(bytes);
+                if (entry != null) {
+                    newsStories.add(entry.getNewsStories());
+                }
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem reading the cached news stories", e);
+            }
+        }
+        return newsStories;
+    }
+
+    /**
+     * Store the news stories loaded from the given request URL, along with the validators
+     * of the response they were parsed from.
+     *
+     * @return the stored entry.
+     */
+    public Entry put(String url, List<News> newsStories, String eTag, String lastModified) {
+        Entry entry = new Entry(newsStories, System.currentTimeMillis(), eTag, lastModified);
+        try {
+            mDiskCache.put(url, writeEntry(entry));
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the news stories to the cache", e);
+        }
+        return entry;
+    }
+
+    /**
+     * Load the news stories of the given request URL from the network and store them.
+     * <p>
+     * If the URL asks for the newest news stories first and some are cached, only the ones
+     * published since the newest cached one are loaded and merged in front of the cached ones.
+     * Otherwise the validators of the cached entry, if any, make it a conditional request, and
+     * when the server says the cached news stories are still current their parse is reused.
+     * <p>
+     * On a background thread.
+     *
+     * @param url    is the request URL.
+     * @param cached is the cached entry for the URL, or null.
+     * @return the stored entry.
+     * @throws FetchException if the request failed.
+     */
+    public Entry revalidate(String url, Entry cached) throws FetchException {
+        if (cached != null && cached.getNewestTime() > 0 && GuardianRequest.isNewestFirst(url)
+                && GuardianRequest.parameterOf(url, "from-date") == null) {
+            return revalidateNewer(url, cached);
+        }
+
+        NewsResponse response = cached != null
+                ? QueryUtils.fetchNewsResponse(url, cached.getETag(), cached.getLastModified())
+                : QueryUtils.fetchNewsResponse(url, null, null);
+
+        List<News> newsStories = response.isNotModified() && cached != null
+                ? cached.getNewsStories()
+                : response.getNewsStories();
+        if (newsStories == null) {
+            throw new FetchException(FetchError.MALFORMED, "Not modified, but nothing cached");
+        }
+        return put(url, newsStories, response.getETag(), response.getLastModified());
+    }
+
+    /**
+     * Load the news stories of the given request URL published since the newest cached one,
+     * and store them in front of the cached ones. If none is new, the cached news stories are
+     * stored again as they are, so they count as fresh for another time to live. The
+     * validators of the cached entry are kept either way.
+     */
+    private Entry revalidateNewer(String url, Entry cached) throws FetchException {
+        List<News> newer = QueryUtils.fetchNewsStories(
+                GuardianRequest.withFromDate(url, cached.getNewestTime()));
+        DELTA_SYNCS.increment();
+
+        // The cursor is inclusive, so the newest cached story comes again and doesn't count.
+        Set<String> cachedUrls = new HashSet<>();
+        for (News news : cached.getNewsStories()) {
+            cachedUrls.add(news.getUrl());
+        }
+        int newCount = 0;
+        for (News news : newer) {
+            if (!cachedUrls.contains(news.getUrl())) {
+                newCount++;
+            }
+        }
+        DELTA_ITEMS.record(newCount);
+        if (newCount == 0) {
+            return put(url, cached.getNewsStories(), cached.getETag(),
+                    cached.getLastModified());
+        }
+
+        List<News> newsStories;
+        if (newCount >= GuardianRequest.pageSizeOf(url)) {
+            // A full page of new stories, there may be more than it holds and appending the
+            // cached ones would leave a gap. Start over from the newest page.
+            newsStories = newer;
+        } else {
+            newsStories = NewsLoader.merge(newer, cached.getNewsStories());
+            if (newsStories.size() > MAX_RETAINED_STORIES) {
+                newsStories = new ArrayList<>(newsStories.subList(0, MAX_RETAINED_STORIES));
+            }
+        }
+        return put(url, newsStories, cached.getETag(), cached.getLastModified());
+    }
+
+    static byte[] writeEntry(Entry entry) throws IOException {
+        List<News> newsStories = entry.getNewsStories();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(entry.getSavedAt());
+        writeNullableUTF(out, entry.getETag());
+        writeNullableUTF(out, entry.getLastModified());
+        // The news stories go last in their compact form, see NewsCodec.
+        byte[] encoded = NewsCodec.encode(newsStories);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Entry readEntry(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        long savedAt = in.readLong();
+        String eTag = readNullableUTF(in);
+        String lastModified = readNullableUTF(in);
+        int length = in.readInt();
+        if (length < 0 || length > bytes.length) {
+            throw new IOException("Invalid news list length " + length);
+        }
+        // Decode the news stories in place rather than through the stream.
+        List<News> newsStories = NewsCodec.decode(
+                ByteBuffer.wrap(bytes, bytes.length - length, length));
+        return new Entry(Collections.unmodifiableList(newsStories), savedAt, eTag, lastModified);
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * A cached list of news stories.
+     */
+    public static class Entry {
+
+        private final List<News> mNewsStories;
+
+        private final long mSavedAt;
+
+        private final String mETag;
+
+        private final String mLastModified;
+
+        private final long mNewestTime;
+
+        Entry(List<News> newsStories, long savedAt, String eTag, String lastModified) {
+            mNewsStories = newsStories;
+            mSavedAt = savedAt;
+            mETag = eTag;
+            mLastModified = lastModified;
+
+            long newestTime = 0;
+            for (News news : newsStories) {
+                newestTime = Math.max(newestTime, news.getTimeInMillis());
+            }
+            mNewestTime = newestTime;
+        }
+
+        /**
+         * @return the cached news stories.
+         */
+        public List<News> getNewsStories() {
+            return mNewsStories;
+        }
+
+        /**
+         * @return the time in milliseconds when the news stories were stored.
+         */
+        public long getSavedAt() {
+            return mSavedAt;
+        }
+
+        /**
+         * @return the entity tag of the response the news stories were parsed from, or null.
+         */
+        public String getETag() {
+            return mETag;
+        }
+
+        /**
+         * @return the last modified date of the response the news stories were parsed from,
+         * or null.
+         */
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        /**
+         * @return the publication time in milliseconds of the newest cached news story, or 0
+         * if there are none.
+         */
+        public long getNewestTime() {
+            return mNewestTime;
+        }
+    }
+}
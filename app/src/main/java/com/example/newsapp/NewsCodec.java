@@ -0,0 +1,283 @@
+package com.example.newsapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of a list of news stories, so cached lists are read back without
+ * parsing any text.
+ * <p>
+ * The format is a magic number and a version, the number of stories, a dictionary of the
+ * section names, then for each story:
+ * <ul>
+ * <li>the index of its section name in the dictionary,</li>
+ * <li>a flags byte,</li>
+ * <li>its time as milliseconds since the epoch, or as the original String if formatting the
+ * milliseconds doesn't give it back,</li>
+ * <li>its title, URL and thumbnail URL if it has one.</li>
+ * </ul>
+ * Counts and lengths are unsigned varints and Strings are length prefixed UTF-8. Sections
+ * repeat heavily in a list, so the decoded stories share one String per section, and their
+ * time is only formatted back into a String if it is asked for.
+ */
+public final class NewsCodec {
+
+    /**
+     * "NWSB", tells the format apart from anything else stored under the same key.
+     */
+    private static final int MAGIC = 0x4E575342;
+
+    /**
+     * Version of the format, bumped whenever it changes so old data is rejected.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Set if the story has a thumbnail URL.
+     */
+    private static final int FLAG_THUMBNAIL = 1;
+
+    /**
+     * Set if the time is stored as its original String rather than in milliseconds.
+     */
+    private static final int FLAG_RAW_TIME = 1 << 1;
+
+    /**
+     * Fewest bytes a story takes: its section index, flags, and the lengths of an empty time,
+     * title and URL. Bounds the number of stories a damaged count can claim.
+     */
+    private static final int MIN_STORY_BYTES = 5;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private NewsCodec() {
+    }
+
+    /**
+     * Return the binary form of the given news stories. Their body text isn't kept.
+     */
+    public static byte[] encode(List<News> newsStories) {
+        Map<String, Integer> sectionIndexes = new HashMap<>();
+        List<String> sections = new ArrayList<>();
+        for (News news : newsStories) {
+            if (!sectionIndexes.containsKey(news.getNewsSection())) {
+                sectionIndexes.put(news.getNewsSection(), sections.size());
+                sections.add(news.getNewsSection());
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + newsStories.size() * 160);
+        writeInt(out, MAGIC);
+        out.write(VERSION);
+        writeVarint(out, newsStories.size());
+        writeVarint(out, sections.size());
+        for (String section : sections) {
+            writeString(out, section);
+        }
+        for (News news : newsStories) {
+            writeVarint(out, sectionIndexes.get(news.getNewsSection()));
+            String time = news.getTime();
+            boolean rawTime = !time.equals(NewsDates.formatIsoTime(news.getTimeInMillis()));
+            String thumbnailUrl = news.getThumbnailUrl();
+            out.write((thumbnailUrl != null ? FLAG_THUMBNAIL : 0)
+                    | (rawTime ? FLAG_RAW_TIME : 0));
+            if (rawTime) {
+                writeString(out, time);
+            } else {
+                writeLong(out, news.getTimeInMillis());
+            }
+            writeString(out, news.getNewsTitle());
+            writeString(out, news.getUrl());
+            if (thumbnailUrl != null) {
+                writeString(out, thumbnailUrl);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Return the news stories of the given binary form.
+     *
+     * @throws IOException if the bytes aren't news stories of this version of the format.
+     */
+    public static List<News> decode(byte[] bytes) throws IOException {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Return the news stories of the binary form between the position and the limit of the
+     * given buffer, which may be a memory mapped file. The stories are decoded straight from
+     * the buffer, a mapped file isn't copied to the heap first. The position is left
+     * unchanged.
+     *
+     * @throws IOException if the bytes aren't news stories of this version of the format.
+     */
+    public static List<News> decode(ByteBuffer buffer) throws IOException {
+        Reader in = new Reader(buffer);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an encoded news list");
+        }
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported news list version " + version);
+        }
+
+        // Check the counts against the bytes left before allocating for them, so damaged
+        // bytes fail to decode rather than run out of memory.
+        int count = in.readVarint();
+        if (count > in.remaining() / MIN_STORY_BYTES) {
+            throw new IOException("Invalid news story count " + count);
+        }
+        int sectionCount = in.readVarint();
+        if (sectionCount > in.remaining()) {
+            throw new IOException("Invalid section count " + sectionCount);
+        }
+        String[] sections = new String[sectionCount];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = in.readString();
+        }
+        List<News> newsStories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int sectionIndex = in.readVarint();
+            if (sectionIndex >= sections.length) {
+                throw new IOException("Section index " + sectionIndex + " out of range");
+            }
+            int flags = in.readByte();
+            String time = null;
+            long timeInMillis;
+            if ((flags & FLAG_RAW_TIME) != 0) {
+                time = in.readString();
+                timeInMillis = NewsDates.parseIsoTime(time);
+            } else {
+                timeInMillis = in.readLong();
+            }
+            String newsTitle = in.readString();
+            String url = in.readString();
+            String thumbnailUrl = (flags & FLAG_THUMBNAIL) != 0 ? in.readString() : null;
+            newsStories.add(new News(sections[sectionIndex], newsTitle, time, timeInMillis, url,
+                    thumbnailUrl, null));
+        }
+        return newsStories;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        writeInt(out, (int) (value >>> 32));
+        writeInt(out, (int) value);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads the format straight off a buffer with absolute gets, without a stream in between
+     * and without moving the position of the buffer.
+     */
+    private static final class Reader {
+
+        private final ByteBuffer mBuffer;
+
+        /**
+         * Array backing the buffer, or null if it is direct or mapped.
+         */
+        private final byte[] mArray;
+
+        private final int mArrayOffset;
+
+        private final int mEnd;
+
+        private int mPosition;
+
+        Reader(ByteBuffer buffer) {
+            mBuffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+            mArray = buffer.hasArray() ? buffer.array() : null;
+            mArrayOffset = buffer.hasArray() ? buffer.arrayOffset() : 0;
+            mPosition = buffer.position();
+            mEnd = buffer.limit();
+        }
+
+        int remaining() {
+            return mEnd - mPosition;
+        }
+
+        private void require(int count) throws IOException {
+            if (count < 0 || mEnd - mPosition < count) {
+                throw new IOException("Truncated news list");
+            }
+        }
+
+        int readByte() throws IOException {
+            require(1);
+            return mBuffer.get(mPosition++) & 0xFF;
+        }
+
+        int readInt() throws IOException {
+            require(4);
+            int value = mBuffer.getInt(mPosition);
+            mPosition += 4;
+            return value;
+        }
+
+        long readLong() throws IOException {
+            require(8);
+            long value = mBuffer.getLong(mPosition);
+            mPosition += 8;
+            return value;
+        }
+
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        String readString() throws IOException {
+            int length = readVarint();
+            require(length);
+            String value;
+            if (mArray != null) {
+                value = new String(mArray, mArrayOffset + mPosition, length, UTF_8);
+            } else {
+                ByteBuffer bytes = mBuffer.duplicate();
+                bytes.limit(mPosition + length);
+                bytes.position(mPosition);
+                value = UTF_8.decode(bytes).toString();
+            }
+            mPosition += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.newsapp;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Helper methods to parse the Guardian publication dates and format them for display.
+ * <p>
+ * SimpleDateFormat is expensive to create and not thread safe, so each thread keeps its own
+ * instances. Dates are formatted once per story on the loading thread, never while binding.
+ */
+final class NewsDates {
+
+    /**
+     * Format of the webPublicationDate field, for example "2019-05-11T05:00:12Z".
+     */
+    private static final ThreadLocal<SimpleDateFormat> ISO_FORMAT =
+            new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    SimpleDateFormat format =
+                            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+                    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+                    return format;
+                }
+            };
+
+    /**
+     * Displayed date format, for example "Mar 10, 2010".
+     */
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT =
+            new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    return new SimpleDateFormat("LLL dd, yyyy", Locale.getDefault());
+                }
+            };
+
+    /**
+     * Displayed time format, for example "3:00 PM".
+     */
+    private static final ThreadLocal<SimpleDateFormat> TIME_FORMAT =
+            new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    return new SimpleDateFormat("h:mm a", Locale.getDefault());
+                }
+            };
+
+    private NewsDates() {
+    }
+
+    /**
+     * Return the time in milliseconds of the given publication date, or 0 if it can't be
+     * parsed.
+     */
+    static long parseIsoTime(String isoTime) {
+        try {
+            return ISO_FORMAT.get().parse(isoTime).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Return the given time in milliseconds in the format of the webPublicationDate field.
+     */
+    static String formatIsoTime(long timeInMillis) {
+        return ISO_FORMAT.get().format(new Date(timeInMillis));
+    }
+
+    /**
+     * Return the date of the given time in milliseconds, in the device's time zone.
+     */
+    static String formatDate(long timeInMillis) {
+        return DATE_FORMAT.get().format(new Date(timeInMillis));
+    }
+
+    /**
+     * Return the time of day of the given time in milliseconds, in the device's time zone.
+     */
+    static String formatTime(long timeInMillis) {
+        return TIME_FORMAT.get().format(new Date(timeInMillis));
+    }
+}
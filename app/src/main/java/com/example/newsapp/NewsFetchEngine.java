@@ -0,0 +1,189 @@
+package com.example.newsapp;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs several news queries in parallel and merges their news stories into one feed.
+ * <p>
+ * Queries run on a bounded pool of threads, and at most a fixed number of them talk to the
+ * same host at once, so following many topics doesn't flood the Guardian with requests.
+ * The merged feed is ordered newest first and holds each story once, by URL.
+ */
+class NewsFetchEngine {
+
+    /**
+     * Fetches the news stories of a single query.
+     */
+    interface Fetcher {
+        /**
+         * @return the news stories of the query, or null if the request failed.
+         * @throws FetchException if the request failed and it is known why.
+         */
+        List<News> fetch(String requestUrl) throws FetchException;
+    }
+
+    /**
+     * Orders news stories newest first.
+     */
+    private static final Comparator<News> NEWEST_FIRST = new Comparator<News>() {
+        @Override
+        public int compare(News a, News b) {
+            long aTime = a.getTimeInMillis();
+            long bTime = b.getTimeInMillis();
+            return aTime > bTime ? -1 : (aTime == bTime ? 0 : 1);
+        }
+    };
+
+    private final ThreadPoolExecutor mExecutor;
+
+    private final int mMaxRequestsPerHost;
+
+    /**
+     * Host name to the permits for requests to that host.
+     */
+    private final ConcurrentHashMap<String, Semaphore> mHostPermits = new ConcurrentHashMap<>();
+
+    private final Fetcher mFetcher;
+
+    /**
+     * Constructs a new {@link NewsFetchEngine}.
+     *
+     * @param maxThreads         is the maximum number of queries running at once.
+     * @param maxRequestsPerHost is the maximum number of queries to the same host at once.
+     * @param fetcher            fetches the news stories of a single query.
+     */
+    NewsFetchEngine(int maxThreads, int maxRequestsPerHost, Fetcher fetcher) {
+        mMaxRequestsPerHost = maxRequestsPerHost;
+        mFetcher = fetcher;
+        mExecutor = new ThreadPoolExecutor(maxThreads, maxThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "news-fetch-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Fetch all the given queries in parallel and return their merged news stories.
+     *
+     * @throws FetchException if every query failed, with the failure of the first one.
+     */
+    List<News> fetchAll(List<String> requestUrls) throws InterruptedException, FetchException {
+        List<Future<List<News>>> futures = new ArrayList<>(requestUrls.size());
+        try {
+            for (final String requestUrl : requestUrls) {
+                // Part of the caller's fetch, so cancelling it aborts the topic queries too.
+                futures.add(mExecutor.submit(FetchExecutor.inCurrentFetch(
+                        new Callable<List<News>>() {
+                            @Override
+                            public List<News> call()
+                                    throws InterruptedException, FetchException {
+                                return fetchWithHostPermit(requestUrl);
+                            }
+                        })));
+            }
+
+            List<List<News>> results = new ArrayList<>(futures.size());
+            FetchException failure = null;
+            for (Future<List<News>> future : futures) {
+                try {
+                    List<News> newsStories = future.get();
+                    if (newsStories != null) {
+                        results.add(newsStories);
+                    }
+                } catch (ExecutionException e) {
+                    // A failed query just contributes no news stories.
+                    if (failure == null && e.getCause() instanceof FetchException) {
+                        failure = (FetchException) e.getCause();
+                    }
+                }
+            }
+            if (results.isEmpty()) {
+                // Only fail the whole fetch if every query failed.
+                if (failure != null) {
+                    throw failure;
+                }
+                throw new FetchException(FetchError.NETWORK, "Every topic query failed");
+            }
+            return merge(results);
+        } finally {
+            // If the caller was interrupted, don't leave the other queries running.
+            for (Future<List<News>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private List<News> fetchWithHostPermit(String requestUrl)
+            throws InterruptedException, FetchException {
+        Semaphore permits = hostPermits(requestUrl);
+        permits.acquire();
+        try {
+            return mFetcher.fetch(requestUrl);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Semaphore hostPermits(String requestUrl) {
+        String host;
+        try {
+            host = new URL(requestUrl).getHost();
+        } catch (MalformedURLException e) {
+            host = "";
+        }
+        Semaphore permits = mHostPermits.get(host);
+        if (permits == null) {
+            Semaphore newPermits = new Semaphore(mMaxRequestsPerHost);
+            permits = mHostPermits.putIfAbsent(host, newPermits);
+            if (permits == null) {
+                permits = newPermits;
+            }
+        }
+        return permits;
+    }
+
+    /**
+     * Return the news stories of all the results, newest first and each story only once.
+     */
+    static List<News> merge(List<List<News>> results) {
+        int size = 0;
+        for (List<News> newsStories : results) {
+            size += newsStories.size();
+        }
+        List<News> merged = new ArrayList<>(size);
+        Set<String> urls = new HashSet<>();
+        for (List<News> newsStories : results) {
+            for (News news : newsStories) {
+                if (urls.add(news.getUrl())) {
+                    merged.add(news);
+                }
+            }
+        }
+        Collections.sort(merged, NEWEST_FIRST);
+        return merged;
+    }
+}
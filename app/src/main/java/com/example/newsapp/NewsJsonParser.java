@@ -0,0 +1,185 @@
+package com.example.newsapp;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streaming parser for the Guardian search response.
+ * <p>
+ * Reads the JSON token by token straight off the response stream and creates a {@link News}
+ * object for each result as it goes, so neither the whole response String nor a JSONObject
+ * tree of it is ever held in memory. Only the {@link GuardianRequest.Field}s of the request
+ * are read, everything else is skipped.
+ */
+public final class NewsJsonParser {
+
+    /**
+     * Time to parse a response, including reading it off the stream.
+     */
+    private static final Metrics.Histogram PARSE_MICROS = Metrics.histogram("parse.time.us");
+
+    /**
+     * Number of news stories in a parsed response.
+     */
+    private static final Metrics.Histogram PARSE_ITEMS = Metrics.histogram("parse.items");
+
+    /**
+     * Create a private constructor so no one creates a {@link NewsJsonParser} object.
+     */
+    private NewsJsonParser() {
+    }
+
+    /**
+     * Return a list of {@link News} stories read from the given UTF-8 encoded JSON stream,
+     * reading the displayed fields of each result.
+     */
+    public static List<News> parse(InputStream inputStream) throws IOException {
+        return parse(inputStream, GuardianRequest.DISPLAYED_FIELDS);
+    }
+
+    /**
+     * Return a list of {@link News} stories read from the given UTF-8 encoded JSON stream,
+     * reading the given fields of each result.
+     */
+    public static List<News> parse(InputStream inputStream, Set<GuardianRequest.Field> fields)
+            throws IOException {
+        return parse(new InputStreamReader(inputStream, Charset.forName("UTF-8")), fields);
+    }
+
+    /**
+     * Return a list of {@link News} stories read from the given JSON character stream,
+     * reading the given fields of each result.
+     */
+    public static List<News> parse(Reader in, Set<GuardianRequest.Field> fields)
+            throws IOException {
+        long startNanos = System.nanoTime();
+        List<News> newsStories = new ArrayList<>();
+        JsonReader reader = new JsonReader(in);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("response".equals(reader.nextName())) {
+                    readResponse(reader, fields, newsStories);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            // JsonReader reports an unexpected token type with an IllegalStateException,
+            // surface it the same way as malformed JSON.
+            throw (MalformedJsonException) new MalformedJsonException(
+                    "Unexpected news JSON structure").initCause(e);
+        }
+        PARSE_MICROS.record(Metrics.microsSince(startNanos));
+        PARSE_ITEMS.record(newsStories.size());
+        return newsStories;
+    }
+
+    /**
+     * Read the "response" object, collecting the stories in its "results" array.
+     */
+    private static void readResponse(JsonReader reader, Set<GuardianRequest.Field> fields,
+                                     List<News> newsStories) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("results".equals(reader.nextName())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    News news = readResult(reader, fields);
+                    if (news != null) {
+                        newsStories.add(news);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read a single result object, or return null if it is missing one of the displayed fields.
+     */
+    private static News readResult(JsonReader reader, Set<GuardianRequest.Field> fields)
+            throws IOException {
+        String[] values = new String[GuardianRequest.Field.values().length];
+        boolean readShowFields = hasShowField(fields);
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if (readShowFields && "fields".equals(name)) {
+                readFields(reader, fields, true, values);
+            } else {
+                readField(reader, name, fields, false, values);
+            }
+        }
+        reader.endObject();
+
+        String newsSection = values[GuardianRequest.Field.SECTION_NAME.ordinal()];
+        String time = values[GuardianRequest.Field.WEB_PUBLICATION_DATE.ordinal()];
+        String newsTitle = values[GuardianRequest.Field.WEB_TITLE.ordinal()];
+        String url = values[GuardianRequest.Field.WEB_URL.ordinal()];
+        if (newsSection == null || time == null || newsTitle == null || url == null) {
+            return null;
+        }
+        return new News(newsSection, newsTitle, time, url,
+                values[GuardianRequest.Field.THUMBNAIL.ordinal()],
+                values[GuardianRequest.Field.BODY_TEXT.ordinal()]);
+    }
+
+    /**
+     * Read the "fields" object of a result, which holds the fields asked for with show-fields.
+     */
+    private static void readFields(JsonReader reader, Set<GuardianRequest.Field> fields,
+                                   boolean showFields, String[] values) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else {
+                readField(reader, name, fields, showFields, values);
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read the value of the named field into values if it is one of the given fields,
+     * otherwise skip it.
+     */
+    private static void readField(JsonReader reader, String name,
+                                  Set<GuardianRequest.Field> fields, boolean showFields,
+                                  String[] values) throws IOException {
+        GuardianRequest.Field field = GuardianRequest.Field.forName(name);
+        if (field != null && field.isShowField() == showFields && fields.contains(field)) {
+            values[field.ordinal()] = reader.nextString();
+        } else {
+            reader.skipValue();
+        }
+    }
+
+    private static boolean hasShowField(Set<GuardianRequest.Field> fields) {
+        for (GuardianRequest.Field field : fields) {
+            if (field.isShowField()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
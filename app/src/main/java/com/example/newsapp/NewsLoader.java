@@ -1,26 +1,141 @@
 package com.example.newsapp;
 
-import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.content.Loader;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Loads a list of news stories by using AsyncTask to perform the
- * network request to the given URL.
+ * Loads a list of news stories from the given URL on the app's {@link FetchExecutor}.
+ * <p>
+ * Stories cached on disk for the URL are delivered as soon as they are read, then the network
+ * request revalidates them and the fresh stories are only delivered if they changed.
+ * <p>
+ * The loader keeps the news stories it delivered last and redelivers them when it is started
+ * again, only loading again once they are older than the freshness window or the content
+ * changed. A new loader for one of the recent queries of the {@link QueryEngine} starts with
+ * the news stories that query loaded, the same way. Loads are fetches keyed by URL, so
+ * refreshing again while a load is in flight joins it instead of making another request, and
+ * stopping or resetting the loader cancels the load, aborting its request. A reload asked for
+ * with {@link #refresh()} always delivers a result once done, even when the news stories didn't
+ * change, so the user can tell it finished.
+ * <p>
+ * Further pages of the query are loaded on request with {@link #loadNextPage()} and appended
+ * to the delivered news stories, keeping at most {@link #MAX_STORIES} of the latest ones.
+ * <p>
+ * When loading the first page fails, the {@link NewsResult} delivered carries the
+ * {@link FetchError} along with the news stories already shown, or else the cached ones even
+ * past their time to live, so the list stays useful while the Guardian can't be reached.
  */
-public class NewsLoader extends AsyncTaskLoader {
+public class NewsLoader extends Loader<NewsResult> {
 
     /**
      * Tag for log messages.
      */
     private static final String LOG_TAG = NewsLoader.class.getName();
 
+    /**
+     * Number of news stories requested per page.
+     */
+    public static final int PAGE_SIZE = 20;
+
+    /**
+     * Maximum number of news stories kept in memory. When more pages are loaded, the oldest
+     * pages are dropped from the front of the list.
+     */
+    public static final int MAX_STORIES = 500;
+
+    /**
+     * How long delivered news stories are redelivered without loading them again.
+     */
+    private static final long FRESHNESS_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Number of loads started, across all news loaders.
+     */
+    private static final Metrics.Counter FETCHES = Metrics.counter("loader.fetches");
+
+    /**
+     * Number of loads avoided by redelivering fresh news stories, across all news loaders.
+     */
+    private static final Metrics.Counter AVOIDED_FETCHES =
+            Metrics.counter("loader.fetches_avoided");
+
+    /**
+     * Time a load waits between being started and running on the background thread.
+     */
+    private static final Metrics.Histogram QUEUE_WAIT_MICROS =
+            Metrics.histogram("loader.queue_wait.us");
+
     /**
      * Query URL.
      */
     private String mUrl;
 
+    /**
+     * Runs the loads.
+     */
+    private final FetchExecutor mExecutor;
+
+    /**
+     * Handler used to deliver cached news stories on the main thread while the network
+     * request is still running.
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The load in flight, or null if there is none.
+     */
+    private FetchExecutor.Call<NewsResult> mCall;
+
+    /**
+     * News stories delivered last, kept in a compact store since paging can make them
+     * hundreds.
+     */
+    private volatile FeedStore mNewsStories;
+
+    /**
+     * Result delivered last, redelivered when the loader is started again.
+     */
+    private NewsResult mResult;
+
+    /**
+     * Time in milliseconds when the news stories delivered last were loaded.
+     */
+    private volatile long mLoadedAt;
+
+    /**
+     * {@link System#nanoTime()} when the current load was started.
+     */
+    private volatile long mForceLoadNanos;
+
+    /**
+     * Page the next load will request, 1 to reload the query from the start.
+     */
+    private int mPageToLoad = 1;
+
+    /**
+     * Page {@link #loadNextPage()} will request.
+     */
+    private int mNextPage = 2;
+
+    /**
+     * Whether the last page loaded was full, so there may be more pages.
+     */
+    private boolean mHasMorePages;
+
+    /**
+     * Whether the user asked for a reload with {@link #refresh()} that hasn't delivered yet.
+     */
+    private boolean mRefreshing;
+
     /**
      * Constructs a new {@link NewsLoader}
      *
@@ -30,25 +145,390 @@ public class NewsLoader extends AsyncTaskLoader {
     public NewsLoader(Context context, String url) {
         super(context);
         mUrl = url;
+        mExecutor = FetchExecutor.getInstance();
+    }
+
+    /**
+     * @return the URL this loader loads news stories from.
+     */
+    public String getUrl() {
+        return mUrl;
+    }
+
+    /**
+     * @return the number of loads started, across all news loaders.
+     */
+    public static long getFetchCount() {
+        return FETCHES.get();
+    }
+
+    /**
+     * @return the number of loads avoided by redelivering fresh news stories.
+     */
+    public static long getAvoidedFetchCount() {
+        return AVOIDED_FETCHES.get();
+    }
+
+    /**
+     * Start loading the next page of the query in the background, unless a load is already
+     * in flight or the last page has been loaded.
+     * <p>
+     * On the main thread.
+     *
+     * @return true if a page load was started.
+     */
+    public boolean loadNextPage() {
+        if (mNewsStories == null || !mHasMorePages || mCall != null) {
+            return false;
+        }
+        mPageToLoad = mNextPage;
+        forceLoad();
+        return true;
+    }
+
+    /**
+     * Reload the query from the first page, because the user asked for it. Unlike a reload
+     * for a content change, it delivers a result once done even if the news stories are the
+     * same, and a refresh while a load is in flight joins that load.
+     * <p>
+     * On the main thread.
+     */
+    public void refresh() {
+        mRefreshing = true;
+        onContentChanged();
+    }
+
+    /**
+     * Deliver the given news stories, newer than the ones delivered, in front of them, without
+     * loading anything. The rows already shown keep their place, see {@link NewStoriesPoller}.
+     * <p>
+     * On the main thread.
+     */
+    public void prependStories(FeedStore newerStories) {
+        FeedStore newsStories = mNewsStories;
+        if (newsStories == null || newerStories.isEmpty()) {
+            return;
+        }
+        deliverResult(new NewsResult(
+                newerStories.newBuilder().addAllNew(newsStories, MAX_STORIES).build(), null));
     }
 
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        if (mResult != null) {
+            // Redeliver the news stories we already have right away.
+            super.deliverResult(mResult);
+        } else {
+            // Switching back to a recent query shows the news stories it loaded right away,
+            // they are only loaded again below if they are stale.
+            QueryEngine.RecentResult recent = QueryEngine.getRecentResult(mUrl);
+            if (recent != null) {
+                mLoadedAt = recent.loadedAt;
+                mNextPage = recent.nextPage;
+                mHasMorePages = recent.hasMorePages;
+                deliverResult(new NewsResult(recent.newsStories, null));
+            }
+        }
+
+        boolean stale = System.currentTimeMillis() - mLoadedAt > FRESHNESS_WINDOW_MILLIS;
+        if (takeContentChanged() || mNewsStories == null || stale) {
+            mPageToLoad = 1;
+            forceLoad();
+        } else {
+            AVOIDED_FETCHES.increment();
+        }
+    }
+
+    @Override
+    public void onContentChanged() {
+        mPageToLoad = 1;
+        super.onContentChanged();
     }
 
     /**
-     * On a background thread.
+     * Start the load of {@link #mPageToLoad}. The load it replaces is cancelled only after the
+     * new one is started, so reloading while a reload is in flight joins it.
      */
     @Override
-    public List<News> loadInBackground() {
+    protected void onForceLoad() {
+        mForceLoadNanos = System.nanoTime();
+        FETCHES.increment();
+
+        final int page = mPageToLoad;
+        mPageToLoad = 1;
+        FetchExecutor.Call<NewsResult> previous = mCall;
+        if (page > 1) {
+            final FeedStore base = mNewsStories;
+            mCall = mExecutor.execute(pageUrl(page), FetchExecutor.Priority.NEXT_PAGE,
+                    new FetchExecutor.Task<NewsResult>() {
+                        @Override
+                        public NewsResult run() {
+                            return loadPage(page);
+                        }
+                    }, new FetchExecutor.Callback<NewsResult>() {
+                        @Override
+                        public void onResult(NewsResult pageResult) {
+                            mCall = null;
+                            deliverResult(appendPage(page, base, pageResult));
+                        }
+                    });
+        } else {
+            mCall = mExecutor.execute(mUrl, FetchExecutor.Priority.FOREGROUND,
+                    new FetchExecutor.Task<NewsResult>() {
+                        @Override
+                        public NewsResult run() {
+                            return loadFirstPage();
+                        }
+                    }, new FetchExecutor.Callback<NewsResult>() {
+                        @Override
+                        public void onResult(NewsResult result) {
+                            mCall = null;
+                            boolean refreshed = mRefreshing;
+                            mRefreshing = false;
+                            deliverResult(mergeFirstPage(result), refreshed);
+                        }
+                    });
+        }
+        if (previous != null && previous != mCall) {
+            previous.cancel();
+        }
+    }
+
+    @Override
+    protected boolean onCancelLoad() {
+        if (mCall == null) {
+            return false;
+        }
+        mCall.cancel();
+        mCall = null;
+        return true;
+    }
+
+    @Override
+    protected void onStopLoading() {
+        // A refresh stopped before it finished carries on when the loader starts again.
+        boolean refreshing = mRefreshing && mCall != null;
+        cancelLoad();
+        if (refreshing) {
+            onContentChanged();
+        }
+    }
+
+    /**
+     * Return the URL of the given page of the query.
+     */
+    private String pageUrl(int page) {
+        return GuardianRequest.withPage(mUrl, page);
+    }
+
+    /**
+     * Load the first page of the query, revalidating the cached news stories. If the network
+     * request failed, return its error with the cached news stories, even the stale ones.
+     * The cached and loaded news stories are added to the {@link SearchIndex}.
+     * <p>
+     * On a background thread, and possibly for another loader of the same URL.
+     */
+    private NewsResult loadFirstPage() {
+        QUEUE_WAIT_MICROS.record(Metrics.microsSince(mForceLoadNanos));
 
         if (mUrl == null) {
-            return null;
+            return new NewsResult(null, FetchError.REJECTED);
+        }
+
+        // The disk cache of previously loaded news stories, opened here rather than on the
+        // main thread if the startup work didn't open it yet.
+        NewsCache cache = NewsCache.getInstance(getContext());
+
+        // Show the cached news stories right away, while they are revalidated below.
+        final NewsCache.Entry cached = cache.get(mUrl);
+        if (cached != null) {
+            SearchIndex.getInstance().addAll(cached.getNewsStories());
+            final FeedStore cachedStories = FeedStore.of(cached.getNewsStories());
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (isStarted() && mNewsStories == null) {
+                        deliverResult(new NewsResult(cachedStories, null));
+                    }
+                }
+            });
         }
 
         // Perform the network request, parse the response, and extract the list of news stories.
-        List<News> newsStories = QueryUtils.fetchNewsData(mUrl);
+        // The validators of the cached news stories make it a conditional request.
+        try {
+            List<News> newsStories = cache.revalidate(mUrl, cached).getNewsStories();
+            SearchIndex.getInstance().addAll(newsStories);
+            return new NewsResult(FeedStore.of(newsStories), null);
+        } catch (FetchException e) {
+            Log.e(LOG_TAG, "Problem loading the news stories", e);
+            // Rather than nothing, show the news stories cached past their time to live.
+            NewsCache.Entry stale = cached != null ? cached : cache.get(mUrl, true);
+            return new NewsResult(stale != null ? FeedStore.of(stale.getNewsStories()) : null,
+                    e.getError());
+        }
+    }
+
+    /**
+     * Return the result to deliver for the loaded first page, on the main thread.
+     */
+    private NewsResult mergeFirstPage(NewsResult result) {
+        // If the network request failed, keep showing the news stories we have, along with
+        // the error. Those are the cached ones if nothing else was delivered, they were
+        // posted before this.
+        if (result.getError() != null) {
+            return new NewsResult(
+                    mNewsStories != null ? mNewsStories : result.getNewsStories(),
+                    result.getError());
+        }
+        FeedStore newsStories = result.getNewsStories();
+        mLoadedAt = System.currentTimeMillis();
+
+        // Keep the further pages already loaded behind the fresh first page.
+        FeedStore merged = withFirstPage(mNewsStories, newsStories);
+        if (merged != newsStories) {
+            return new NewsResult(merged, null);
+        }
+
+        // The news stories may be several pages long once newer ones were merged into the
+        // cached ones, continue paging after them.
+        mNextPage = newsStories.size() / PAGE_SIZE + 1;
+        mHasMorePages = newsStories.size() >= PAGE_SIZE;
+        return result;
+    }
+
+    /**
+     * Load the given page of the query, or return the error it failed to load with.
+     * <p>
+     * On a background thread, and possibly for another loader of the same URL.
+     */
+    private NewsResult loadPage(int page) {
+        QUEUE_WAIT_MICROS.record(Metrics.microsSince(mForceLoadNanos));
+        try {
+            List<News> pageStories = QueryUtils.fetchNewsStories(pageUrl(page));
+            SearchIndex.getInstance().addAll(pageStories);
+            return new NewsResult(FeedStore.of(pageStories), null);
+        } catch (FetchException e) {
+            Log.e(LOG_TAG, "Problem loading page " + page, e);
+            return new NewsResult(null, e.getError());
+        }
+    }
+
+    /**
+     * Return the base news stories with the loaded page appended, dropping the oldest ones
+     * past {@link #MAX_STORIES}, on the main thread.
+     */
+    private NewsResult appendPage(int page, FeedStore base, NewsResult pageResult) {
+        // If the page failed to load, keep the news stories we have. Returning the same store
+        // without the error means nothing is delivered, and the next scroll will retry the
+        // page.
+        FeedStore pageStories = pageResult.getNewsStories();
+        if (pageStories == null) {
+            return new NewsResult(base, null);
+        }
+
+        mNextPage = page + 1;
+        mHasMorePages = pageStories.size() >= PAGE_SIZE;
+        return new NewsResult(withNextPage(base, pageStories), null);
+    }
+
+    /**
+     * Return the given feed with the freshly loaded first page of its query. When more pages
+     * were loaded, the first page is put in front of them instead of dropping them, so only
+     * the changed rows update.
+     *
+     * @param feed      is the news stories delivered, or null if there are none.
+     * @param firstPage is the first page loaded, returned as it is if nothing is merged in.
+     */
+    static FeedStore withFirstPage(FeedStore feed, FeedStore firstPage) {
+        if (feed == null || feed.size() <= firstPage.size()) {
+            return firstPage;
+        }
+        return firstPage.newBuilder().addAllNew(feed, MAX_STORIES).build();
+    }
+
+    /**
+     * Return the given feed with the given page appended, dropping the oldest news stories
+     * past {@link #MAX_STORIES}.
+     */
+    static FeedStore withNextPage(FeedStore feed, FeedStore page) {
+        // The page is appended to the arena of the feed, only its stories are copied.
+        FeedStore newsStories = feed.newBuilder().addAllNew(page, Integer.MAX_VALUE).build();
+        int overflow = newsStories.size() - MAX_STORIES;
+        if (overflow > 0) {
+            // Copy the latest news stories to a new arena, so the dropped ones are freed.
+            newsStories = new FeedStore.Builder(MAX_STORIES)
+                    .addRange(newsStories, overflow, newsStories.size()).build();
+        }
         return newsStories;
     }
+
+    /**
+     * Return the head news stories followed by the tail ones that are not already in the
+     * head. Stories can move between pages while paging through a live feed, so a story is
+     * only kept once, by URL.
+     */
+    static List<News> merge(List<News> head, List<News> tail) {
+        Set<String> urls = new HashSet<>();
+        for (News news : head) {
+            urls.add(news.getUrl());
+        }
+        List<News> newsStories = new ArrayList<>(head.size() + tail.size());
+        newsStories.addAll(head);
+        for (News news : tail) {
+            if (urls.add(news.getUrl())) {
+                newsStories.add(news);
+            }
+        }
+        return newsStories;
+    }
+
+    /**
+     * Return true if the given result must be delivered when the given news stories were
+     * delivered last. News stories equal to those are not delivered again, so revalidating an
+     * unchanged cache entry doesn't refresh the list, unless the result ends a refresh. A
+     * failed load is always delivered, so its error can be shown.
+     */
+    static boolean shouldDeliver(NewsResult result, FeedStore delivered, boolean refreshed) {
+        return refreshed || result.getError() != null || result.getNewsStories() == null
+                || !result.getNewsStories().equals(delivered);
+    }
+
+    /**
+     * On the main thread. See {@link #shouldDeliver(NewsResult, FeedStore, boolean)}.
+     */
+    @Override
+    public void deliverResult(NewsResult result) {
+        deliverResult(result, false);
+    }
+
+    /**
+     * Deliver the given result, even if its news stories didn't change when it ends a
+     * refresh.
+     */
+    private void deliverResult(NewsResult result, boolean refreshed) {
+        if (isReset() || !shouldDeliver(result, mNewsStories, refreshed)) {
+            return;
+        }
+        FeedStore newsStories = result.getNewsStories();
+        mNewsStories = newsStories;
+        mResult = result;
+        if (result.getError() == null && newsStories != null && mLoadedAt != 0) {
+            QueryEngine.putRecentResult(mUrl, new QueryEngine.RecentResult(
+                    newsStories, mLoadedAt, mNextPage, mHasMorePages));
+        }
+        if (isStarted()) {
+            super.deliverResult(result);
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        mNewsStories = null;
+        mResult = null;
+        mLoadedAt = 0;
+        mRefreshing = false;
+    }
 }
@@ -0,0 +1,60 @@
+package com.example.newsapp;
+
+import java.util.List;
+
+/**
+ * The result of a news request: the parsed news stories, or a note that the cached ones are
+ * still current, along with the validators to send with the next conditional request.
+ */
+public class NewsResponse {
+
+    // News stories parsed from the response, null if the response was "304 Not Modified".
+    private List<News> mNewsStories;
+
+    // Value of the ETag response header, if any.
+    private String mETag;
+
+    // Value of the Last-Modified response header, if any.
+    private String mLastModified;
+
+    /**
+     * Constructs a new {@link NewsResponse} object.
+     *
+     * @param newsStories  is the list of news stories, or null if they were not modified.
+     * @param eTag         is the entity tag of the response.
+     * @param lastModified is the last modified date of the response.
+     */
+    public NewsResponse(List<News> newsStories, String eTag, String lastModified) {
+        mNewsStories = newsStories;
+        mETag = eTag;
+        mLastModified = lastModified;
+    }
+
+    /**
+     * @return true if the server answered that the cached news stories are still current.
+     */
+    public boolean isNotModified() {
+        return mNewsStories == null;
+    }
+
+    /**
+     * @return the news stories parsed from the response, or null if they were not modified.
+     */
+    public List<News> getNewsStories() {
+        return mNewsStories;
+    }
+
+    /**
+     * @return the entity tag of the response, or null.
+     */
+    public String getETag() {
+        return mETag;
+    }
+
+    /**
+     * @return the last modified date of the response, or null.
+     */
+    public String getLastModified() {
+        return mLastModified;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.newsapp;
+
+/**
+ * What a {@link NewsLoader} delivers: the news stories to show, and why the load failed if
+ * it did. A failed load still carries the news stories shown before it, or the cached ones.
+ */
+public class NewsResult {
+
+    // News stories to show, or null if there are none.
+    private final FeedStore mNewsStories;
+
+    // Why the load failed, or null if it succeeded.
+    private final FetchError mError;
+
+    /**
+     * Constructs a new {@link NewsResult} object.
+     *
+     * @param newsStories is the store of the news stories to show, or null.
+     * @param error       is why the load failed, or null if it succeeded.
+     */
+    public NewsResult(FeedStore newsStories, FetchError error) {
+        mNewsStories = newsStories;
+        mError = error;
+    }
+
+    /**
+     * @return the news stories to show, or null if there are none.
+     */
+    public FeedStore getNewsStories() {
+        return mNewsStories;
+    }
+
+    /**
+     * @return why the load failed, or null if it succeeded.
+     */
+    public FetchError getError() {
+        return mError;
+    }
+}
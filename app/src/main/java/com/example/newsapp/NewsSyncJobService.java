@@ -0,0 +1,170 @@
+package com.example.newsapp;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically loads the news stories of the saved topic and order-by preferences in the
+ * background and stores them in the {@link NewsCache}, so the app shows them straight from
+ * disk when it is opened.
+ * <p>
+ * The sync only runs on unmetered networks or while the device is charging. JobScheduler
+ * constraints can't express "or", so there is one job for each case; whichever runs first
+ * does the work and the other finds the cache fresh. Failed syncs are retried with
+ * exponential backoff.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class NewsSyncJobService extends JobService {
+
+    private static final String LOG_TAG = NewsSyncJobService.class.getSimpleName();
+
+    /**
+     * Job ID of the sync on unmetered networks.
+     */
+    private static final int UNMETERED_JOB_ID = 1001;
+
+    /**
+     * Job ID of the sync while charging.
+     */
+    private static final int CHARGING_JOB_ID = 1002;
+
+    /**
+     * How often the news stories are synced.
+     */
+    private static final long SYNC_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Delay before the first retry of a failed sync, doubled on every further failure.
+     */
+    private static final long INITIAL_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Cached news stories younger than this are not synced again.
+     */
+    private static final long MIN_SYNC_AGE_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    /**
+     * Key of the sync on the {@link FetchExecutor}, so overlapping jobs join the same sync.
+     */
+    private static final String SYNC_FETCH_KEY = "news-sync";
+
+    /**
+     * The sync each running job is waiting for, by job ID. Both jobs can run at once on the
+     * same service, and stopping one must only cancel its own call.
+     */
+    private final SparseArray<FetchExecutor.Call<Boolean>> mSyncCalls = new SparseArray<>();
+
+    /**
+     * Schedule the periodic sync jobs, unless they are already scheduled.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (jobScheduler == null) {
+            return;
+        }
+
+        boolean unmeteredScheduled = false;
+        boolean chargingScheduled = false;
+        List<JobInfo> pendingJobs = jobScheduler.getAllPendingJobs();
+        for (JobInfo job : pendingJobs) {
+            unmeteredScheduled |= job.getId() == UNMETERED_JOB_ID;
+            chargingScheduled |= job.getId() == CHARGING_JOB_ID;
+        }
+
+        ComponentName service = new ComponentName(context, NewsSyncJobService.class);
+        if (!unmeteredScheduled) {
+            jobScheduler.schedule(new JobInfo.Builder(UNMETERED_JOB_ID, service)
+                    .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                    .setPeriodic(SYNC_INTERVAL_MILLIS)
+                    .setBackoffCriteria(INITIAL_BACKOFF_MILLIS,
+                            JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                    .setPersisted(true)
+                    .build());
+        }
+        if (!chargingScheduled) {
+            jobScheduler.schedule(new JobInfo.Builder(CHARGING_JOB_ID, service)
+                    .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                    .setRequiresCharging(true)
+                    .setPeriodic(SYNC_INTERVAL_MILLIS)
+                    .setBackoffCriteria(INITIAL_BACKOFF_MILLIS,
+                            JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                    .setPersisted(true)
+                    .build());
+        }
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        // Sync in the background, behind the loads the user is waiting for. A sync that is
+        // already running is joined instead of syncing twice.
+        final Context context = getApplicationContext();
+        final int jobId = params.getJobId();
+        FetchExecutor.Call<Boolean> call = FetchExecutor.getInstance().execute(SYNC_FETCH_KEY,
+                FetchExecutor.Priority.BACKGROUND, new FetchExecutor.Task<Boolean>() {
+                    @Override
+                    public Boolean run() {
+                        return sync(context);
+                    }
+                }, new FetchExecutor.Callback<Boolean>() {
+                    @Override
+                    public void onResult(Boolean synced) {
+                        mSyncCalls.remove(jobId);
+                        // Ask for a retry with backoff if the sync failed.
+                        jobFinished(params, !Boolean.TRUE.equals(synced));
+                    }
+                });
+        mSyncCalls.put(jobId, call);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The constraints of this job no longer hold, stop waiting and retry later. The sync
+        // itself carries on if the other job is still waiting for it.
+        FetchExecutor.Call<Boolean> call = mSyncCalls.get(params.getJobId());
+        if (call != null) {
+            mSyncCalls.remove(params.getJobId());
+            call.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * Load the news stories of the saved preferences into the cache, on a background thread.
+     *
+     * @return true if the cache holds fresh news stories afterwards.
+     */
+    static boolean sync(Context context) {
+        String url = QueryUtils.buildRequestUrl(context);
+        NewsCache cache = NewsCache.getInstance(context);
+        NewsCache.Entry cached = cache.get(url);
+        if (cached != null
+                && System.currentTimeMillis() - cached.getSavedAt() < MIN_SYNC_AGE_MILLIS) {
+            return true;
+        }
+
+        try {
+            cache.revalidate(url, cached);
+        } catch (FetchException e) {
+            Log.e(LOG_TAG, "Problem syncing the news stories", e);
+            return false;
+        }
+        ArticlePrefetchJobService.schedule(context);
+        return true;
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Follows the query of the news feed as the topic and order-by preferences change, and keeps
+ * the results of the last few queries.
+ * <p>
+ * A change of either preference doesn't reload right away: editing the topic several times,
+ * or the topic then the order, only reloads once the preferences stayed the same for
+ * {@link #DEBOUNCE_MILLIS}, with the request URL they add up to.
+ * <p>
+ * The news stories loaded for the last {@link #MAX_RECENT_QUERIES} queries are kept in memory
+ * by {@link GuardianRequest#queryKeyOf(String) query key}, so switching back to a recent topic
+ * shows its news stories at once, and the {@link NewsLoader} only loads them again in the
+ * background once they are stale.
+ */
+public final class QueryEngine implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    /**
+     * Time the preferences must stay the same before the feed is reloaded.
+     */
+    static final long DEBOUNCE_MILLIS = 500;
+
+    /**
+     * Number of queries whose news stories are kept.
+     */
+    static final int MAX_RECENT_QUERIES = 8;
+
+    /**
+     * Number of preference changes that didn't reload the feed because another followed.
+     */
+    private static final Metrics.Counter DEBOUNCED_CHANGES =
+            Metrics.counter("query.changes_debounced");
+
+    /**
+     * Number of loaders started with the news stories of a recent query.
+     */
+    private static final Metrics.Counter RECENT_HITS = Metrics.counter("query.recent_hits");
+
+    private static final RecentResults sRecentResults = new RecentResults(MAX_RECENT_QUERIES);
+
+    /**
+     * Listens for the query of the news feed to change.
+     */
+    public interface OnQueryChangedListener {
+
+        /**
+         * The preferences changed to the given request URL. Called on the main thread.
+         */
+        void onQueryChanged(String url);
+    }
+
+    private final Context mContext;
+
+    private final SharedPreferences mPreferences;
+
+    private final OnQueryChangedListener mListener;
+
+    private final String mTopicKey;
+
+    private final String mOrderByKey;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Whether a reload is waiting for the preferences to settle.
+     */
+    private boolean mReloadPending;
+
+    private final Runnable mReload = new Runnable() {
+        @Override
+        public void run() {
+            mReloadPending = false;
+            mListener.onQueryChanged(QueryUtils.buildRequestUrl(mContext));
+        }
+    };
+
+    public QueryEngine(Context context, OnQueryChangedListener listener) {
+        mContext = context.getApplicationContext();
+        mPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mListener = listener;
+        mTopicKey = context.getString(R.string.settings_topic_key);
+        mOrderByKey = context.getString(R.string.settings_order_by_key);
+    }
+
+    /**
+     * Start listening for preference changes. The preferences only hold on to their
+     * listeners weakly, so the caller must keep a reference to this engine.
+     * <p>
+     * On the main thread.
+     */
+    public void start() {
+        mPreferences.registerOnSharedPreferenceChangeListener(this);
+    }
+
+    /**
+     * Stop listening for preference changes, dropping any pending reload.
+     * <p>
+     * On the main thread.
+     */
+    public void stop() {
+        mPreferences.unregisterOnSharedPreferenceChangeListener(this);
+        mMainHandler.removeCallbacks(mReload);
+        mReloadPending = false;
+    }
+
+    /**
+     * Reload right away if a reload is waiting for the preferences to settle, for example
+     * when coming back from the settings.
+     * <p>
+     * On the main thread.
+     */
+    public void flush() {
+        if (mReloadPending) {
+            mMainHandler.removeCallbacks(mReload);
+            mReload.run();
+        }
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences preferences, String key) {
+        if (!mTopicKey.equals(key) && !mOrderByKey.equals(key)) {
+            return;
+        }
+        if (mReloadPending) {
+            DEBOUNCED_CHANGES.increment();
+            mMainHandler.removeCallbacks(mReload);
+        }
+        mReloadPending = true;
+        mMainHandler.postDelayed(mReload, DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Return the news stories last loaded for the query of the given request URL, or null if
+     * it isn't one of the recent queries.
+     */
+    static RecentResult getRecentResult(String url) {
+        RecentResult result = url != null ? sRecentResults.get(url) : null;
+        if (result != null) {
+            RECENT_HITS.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Keep the news stories loaded for the query of the given request URL, making it the most
+     * recent query.
+     */
+    static void putRecentResult(String url, RecentResult result) {
+        if (url != null) {
+            sRecentResults.put(url, result);
+        }
+    }
+
+    /**
+     * The news stories loaded for a query, with what is needed to carry on paging through it.
+     */
+    static final class RecentResult {
+        final FeedStore newsStories;
+        final long loadedAt;
+        final int nextPage;
+        final boolean hasMorePages;
+
+        RecentResult(FeedStore newsStories, long loadedAt, int nextPage, boolean hasMorePages) {
+            this.newsStories = newsStories;
+            this.loadedAt = loadedAt;
+            this.nextPage = nextPage;
+            this.hasMorePages = hasMorePages;
+        }
+    }
+
+    /**
+     * The results of the most recent queries, by query key, dropping the least recently used
+     * query past the maximum.
+     */
+    static final class RecentResults {
+
+        private final LinkedHashMap<String, RecentResult> mResults;
+
+        RecentResults(final int maxQueries) {
+            mResults = new LinkedHashMap<String, RecentResult>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RecentResult> eldest) {
+                    return size() > maxQueries;
+                }
+            };
+        }
+
+        synchronized RecentResult get(String url) {
+            return mResults.get(GuardianRequest.queryKeyOf(url));
+        }
+
+        synchronized void put(String url, RecentResult result) {
+            mResults.put(GuardianRequest.queryKeyOf(url), result);
+        }
+
+        synchronized int size() {
+            return mResults.size();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.newsapp;
 
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -7,16 +10,25 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Helper methods relating to requesting and receiving news data from the Guardian.
@@ -25,6 +37,107 @@ public class QueryUtils {
 
     public static final String LOG_TAG = QueryUtils.class.getSimpleName();
 
+    /**
+     * Key of the Guardian API sent with every request.
+     */
+    static final String API_KEY = "test";
+
+    /**
+     * Time to look up the host and connect, near zero when a pooled connection is reused.
+     */
+    private static final Metrics.Histogram CONNECT_MICROS =
+            Metrics.histogram("http.connect.us");
+
+    /**
+     * Time from sending the request to receiving the response status.
+     */
+    private static final Metrics.Histogram FIRST_BYTE_MICROS =
+            Metrics.histogram("http.first_byte.us");
+
+    /**
+     * Time to read the response body, which is parsed while it is read.
+     */
+    private static final Metrics.Histogram BODY_MICROS = Metrics.histogram("http.body.us");
+
+    /**
+     * Most time a socket may take to connect, if the deadline of the load leaves that much.
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+
+    /**
+     * Most time a socket read may block, if the deadline of the load leaves that much.
+     */
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Time a load of a query may take, retries included.
+     */
+    private static final long DEADLINE_MILLIS = 30000;
+
+    /**
+     * Maximum number of attempts at a query, the first one included.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Backoff ceiling of the first retry of a query, doubled for each further retry.
+     */
+    private static final long BASE_BACKOFF_MILLIS = 500;
+
+    /**
+     * Maximum backoff ceiling of a query.
+     */
+    private static final long MAX_BACKOFF_MILLIS = 8000;
+
+    /**
+     * Number of failed queries in a row after which the Guardian is considered unhealthy.
+     */
+    private static final int BREAKER_FAILURE_THRESHOLD = 5;
+
+    /**
+     * How long no queries are sent once the Guardian is considered unhealthy.
+     */
+    private static final long BREAKER_OPEN_MILLIS = 30000;
+
+    /**
+     * Deadline, retries and circuit breaker of the queries to the Guardian.
+     */
+    private static final RequestPolicy sPolicy = new RequestPolicy(DEADLINE_MILLIS,
+            MAX_ATTEMPTS, BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS,
+            new CircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MILLIS), new Random());
+
+    /**
+     * Maximum number of topic queries running at once.
+     */
+    private static final int MAX_PARALLEL_QUERIES = 4;
+
+    /**
+     * Maximum number of topic queries to the same host at once.
+     */
+    private static final int MAX_QUERIES_PER_HOST = 3;
+
+    /**
+     * Runs the queries of a multi-topic request in parallel.
+     */
+    private static final NewsFetchEngine sFetchEngine = new NewsFetchEngine(
+            MAX_PARALLEL_QUERIES, MAX_QUERIES_PER_HOST, new NewsFetchEngine.Fetcher() {
+        @Override
+        public List<News> fetch(String requestUrl) throws FetchException {
+            return fetchSingleQuery(requestUrl, null, null, sPolicy).getNewsStories();
+        }
+    });
+
+    /**
+     * Longest time a request waits for the connection warm-up. Looking up the host has no
+     * timeout, so on a bad network the request connects on its own rather than wait for it.
+     */
+    private static final int PREWARM_WAIT_MILLIS = 1000;
+
+    /**
+     * Counted down once the connection warm-up started last is done, or null if none was.
+     */
+    private static volatile CountDownLatch sPrewarm;
+
     /**
      * Create a private constructor so no one creates a {@link QueryUtils} object.
      * This class is only meant to hold static variables and methods, which can be accessed
@@ -33,24 +146,268 @@ public class QueryUtils {
     private QueryUtils() {
     }
 
+    /**
+     * Return the Guardian request URL for the topic and order-by preferences.
+     */
+    public static String buildRequestUrl(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String topic = sharedPrefs.getString(
+                context.getString(R.string.settings_topic_key),
+                context.getString(R.string.settings_topic_default));
+
+        String orderBy = sharedPrefs.getString(
+                context.getString(R.string.settings_order_by_key),
+                context.getString(R.string.settings_order_by_default));
+
+        return buildRequest(topic, orderBy).getUrl();
+    }
+
+    /**
+     * Return the Guardian request URL searching for the given text, best match first.
+     */
+    public static String buildSearchUrl(Context context, String query) {
+        return buildRequest(query,
+                context.getString(R.string.settings_order_by_relevance_value)).getUrl();
+    }
+
+    /**
+     * Return the request for the first page of news stories matching the given query,
+     * projected to the displayed fields and thumbnail.
+     */
+    static GuardianRequest buildRequest(String query, String orderBy) {
+        return new GuardianRequest.Builder()
+                .query(query)
+                .orderBy(orderBy)
+                .pageSize(NewsLoader.PAGE_SIZE)
+                .field(GuardianRequest.Field.THUMBNAIL)
+                .apiKey(API_KEY)
+                .build();
+    }
+
+    /**
+     * Look up the host of the given URL and connect to it in the background, with a request
+     * for its root whose small answer is drained, which leaves the connection in the
+     * keep-alive pool. A HEAD request would be lighter, but HttpURLConnection doesn't always
+     * pool the connection after one. The next request waits for the warm-up, for at most
+     * {@link #PREWARM_WAIT_MILLIS}, rather than opening a connection of its own, so at cold
+     * start the connection is set up while the layout is inflated instead of after.
+     */
+    public static void prewarmConnection(String requestUrl) {
+        final URL url = createUrl(requestUrl);
+        if (url == null) {
+            return;
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        sPrewarm = done;
+        BackgroundExecutor.executeNetwork(new Runnable() {
+            @Override
+            public void run() {
+                HttpURLConnection urlConnection = null;
+                try {
+                    StartupTrace.Section section = StartupTrace.begin("prewarm.dns");
+                    try {
+                        InetAddress.getAllByName(url.getHost());
+                    } finally {
+                        section.end();
+                    }
+
+                    section = StartupTrace.begin("prewarm.connect");
+                    try {
+                        urlConnection = (HttpURLConnection) new URL(url, "/").openConnection();
+                        urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+                        urlConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
+                        urlConnection.setRequestMethod("GET");
+                        InputStream inputStream = urlConnection.getResponseCode() < 400
+                                ? urlConnection.getInputStream()
+                                : urlConnection.getErrorStream();
+                        if (inputStream != null) {
+                            drainAndClose(inputStream);
+                        }
+                    } finally {
+                        section.end();
+                    }
+                } catch (IOException e) {
+                    // The request will connect on its own.
+                    Log.w(LOG_TAG, "Problem warming up the connection", e);
+                    if (urlConnection != null) {
+                        urlConnection.disconnect();
+                    }
+                } finally {
+                    done.countDown();
+                }
+                if (sPrewarm == done) {
+                    sPrewarm = null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait for the connection warm-up in flight, if any, for at most the given time and
+     * {@link #PREWARM_WAIT_MILLIS}.
+     */
+    private static void awaitPrewarm(int timeoutMillis) throws FetchException {
+        CountDownLatch prewarm = sPrewarm;
+        if (prewarm == null) {
+            return;
+        }
+        try {
+            prewarm.await(Math.min(PREWARM_WAIT_MILLIS, timeoutMillis), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FetchException(FetchError.CANCELLED, "Cancelled");
+        }
+    }
+
+    /**
+     * Query the Guardian at the given URL and return the list of news stories.
+     *
+     * @return the news stories, or null if the request failed.
+     */
     public static List<News> fetchNewsData(String requestUrl) {
-        // Create a URL object.
-        URL url = createUrl(requestUrl);
+        try {
+            return fetchNewsStories(requestUrl);
+        } catch (FetchException e) {
+            Log.e(LOG_TAG, "Problem loading the news stories", e);
+            return null;
+        }
+    }
 
-        // Perform HTTP request to the URL and receive a JSON response back.
-        String jsonResponse = null;
+    /**
+     * Query the Guardian at the given URL like
+     * {@link #fetchNewsResponse(String, String, String)}.
+     *
+     * @return the response, or null if the request failed.
+     */
+    public static NewsResponse fetchNewsData(String requestUrl, String eTag,
+                                             String lastModified) {
         try {
-            jsonResponse = makeHttpRequest(url);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Error closing input stream", e);
+            return fetchNewsResponse(requestUrl, eTag, lastModified);
+        } catch (FetchException e) {
+            Log.e(LOG_TAG, "Problem loading the news stories", e);
+            return null;
         }
+    }
 
-        // Extract the relevant fields from the JSON response and create a list of {@link News}
-        // stories
-        List<News> newsStories = extractFeatureFromJson(jsonResponse);
+    /**
+     * Query the Guardian at the given URL and return the list of news stories.
+     *
+     * @throws FetchException if the request failed.
+     */
+    static List<News> fetchNewsStories(String requestUrl) throws FetchException {
+        return fetchNewsResponse(requestUrl, null, null).getNewsStories();
+    }
 
-        // Return the list of {@link News} stories.
-        return newsStories;
+    /**
+     * Query the Guardian at the given URL, sending the validators of the cached news stories
+     * so the server can answer "304 Not Modified" instead of sending them again.
+     * <p>
+     * If the "q" parameter of the URL lists several topics separated by commas, each topic is
+     * queried on its own, in parallel, and the news stories are merged newest first. The
+     * validators only apply to a single topic, so the merged response has none.
+     *
+     * @param requestUrl   is the URL to query.
+     * @param eTag         is the entity tag of the cached news stories, or null.
+     * @param lastModified is the last modified date of the cached news stories, or null.
+     * @return the response.
+     * @throws FetchException if the request failed, after retrying it if that was worth it.
+     */
+    public static NewsResponse fetchNewsResponse(String requestUrl, String eTag,
+                                                 String lastModified) throws FetchException {
+        List<String> topicUrls = splitTopics(requestUrl);
+        if (topicUrls.size() <= 1) {
+            return fetchSingleQuery(requestUrl, eTag, lastModified, sPolicy);
+        }
+
+        try {
+            return new NewsResponse(sFetchEngine.fetchAll(topicUrls), null, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FetchException(FetchError.CANCELLED, "Interrupted", 0, e);
+        }
+    }
+
+    /**
+     * Query the Guardian at the given URL with a single request, sent with the given policy.
+     */
+    static NewsResponse fetchSingleQuery(String requestUrl, final String eTag,
+                                         final String lastModified, RequestPolicy policy)
+            throws FetchException {
+        // Create a URL object.
+        final URL url = createUrl(requestUrl);
+        if (url == null) {
+            throw new FetchException(FetchError.REJECTED, "Malformed URL " + requestUrl);
+        }
+
+        // Perform HTTP request to the URL and parse the JSON response into a list of
+        // {@link News} stories as it streams in, retrying it if it fails.
+        return policy.execute(new RequestPolicy.Attempt<NewsResponse>() {
+            @Override
+            public NewsResponse run(int timeoutMillis) throws IOException {
+                return makeHttpRequest(url, eTag, lastModified, timeoutMillis);
+            }
+        });
+    }
+
+    /**
+     * Return one URL per topic listed in the "q" parameter of the given URL, separated by
+     * commas. A URL with a single topic is returned as it is.
+     */
+    static List<String> splitTopics(String requestUrl) {
+        List<String> topicUrls = new ArrayList<>();
+        int queryStart = requestUrl.indexOf('?');
+        if (queryStart < 0) {
+            topicUrls.add(requestUrl);
+            return topicUrls;
+        }
+
+        String[] parameters = requestUrl.substring(queryStart + 1).split("&");
+        int topicIndex = -1;
+        String[] topics = null;
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].startsWith("q=")) {
+                topicIndex = i;
+                topics = decode(parameters[i].substring(2)).split(",");
+                break;
+            }
+        }
+        if (topics == null || topics.length <= 1) {
+            topicUrls.add(requestUrl);
+            return topicUrls;
+        }
+
+        for (String topic : topics) {
+            topic = topic.trim();
+            if (topic.isEmpty()) {
+                continue;
+            }
+            StringBuilder topicUrl = new StringBuilder(requestUrl.length());
+            topicUrl.append(requestUrl, 0, queryStart + 1);
+            for (int i = 0; i < parameters.length; i++) {
+                if (i > 0) {
+                    topicUrl.append('&');
+                }
+                topicUrl.append(i == topicIndex ? "q=" + encode(topic) : parameters[i]);
+            }
+            topicUrls.add(topicUrl.toString());
+        }
+        return topicUrls;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
     }
 
     /**
@@ -67,54 +424,134 @@ public class QueryUtils {
     }
 
     /**
-     * Make a HTTP request to the given URL and return a String as the response.
+     * Make a conditional, gzip compressed HTTP request to the given URL and return the news
+     * stories parsed from the response.
+     * <p>
+     * The socket timeouts are cut to the given time left before the deadline of the load.
+     * An error response is thrown as a {@link FetchException} carrying the delay of its
+     * Retry-After header.
+     * <p>
+     * The connection is not disconnected afterwards. Its response body is read to the end
+     * and closed instead, so the connection goes back to the keep-alive pool and the next
+     * load can reuse it. Only a cancelled {@link FetchExecutor} fetch disconnects it.
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
-
-        // If the URL is null, then return early.
-        if (url == null) {
-            return jsonResponse;
-        }
-
+    private static NewsResponse makeHttpRequest(URL url, String eTag, String lastModified,
+                                                int timeoutMillis) throws IOException {
+        NewsResponse response;
         HttpURLConnection urlConnection = null;
         InputStream inputStream = null;
         try {
+            awaitPrewarm(timeoutMillis);
             urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000 /* Milliseconds */);
-            urlConnection.setConnectTimeout(15000 /* Milliseconds */);
+            // Reads ignore interrupts, disconnecting is how a cancelled fetch aborts them.
+            if (!FetchExecutor.register(urlConnection)) {
+                throw new FetchException(FetchError.CANCELLED, "Cancelled");
+            }
+            urlConnection.setReadTimeout(
+                    Math.max(1, Math.min(READ_TIMEOUT_MILLIS, timeoutMillis)));
+            urlConnection.setConnectTimeout(
+                    Math.max(1, Math.min(CONNECT_TIMEOUT_MILLIS, timeoutMillis)));
             urlConnection.setRequestMethod("GET");
+            urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+            if (eTag != null) {
+                urlConnection.setRequestProperty("If-None-Match", eTag);
+            }
+            if (lastModified != null) {
+                urlConnection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+            long startNanos = System.nanoTime();
             urlConnection.connect();
+            CONNECT_MICROS.record(Metrics.microsSince(startNanos));
 
-            // If the request was successful (response code 200),
-            // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == 200) {
+            startNanos = System.nanoTime();
+            int responseCode = urlConnection.getResponseCode();
+            FIRST_BYTE_MICROS.record(Metrics.microsSince(startNanos));
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                // If the request was successful (response code 200),
+                // then parse the response straight off the input stream.
+                startNanos = System.nanoTime();
                 inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
+                InputStream bodyStream = new BufferedInputStream(inputStream);
+                if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                    bodyStream = new GZIPInputStream(bodyStream);
+                }
+                List<News> newsStories = NewsJsonParser.parse(bodyStream,
+                        GuardianRequest.fieldsOf(url.toString()));
+                BODY_MICROS.record(Metrics.microsSince(startNanos));
+                response = new NewsResponse(newsStories,
+                        urlConnection.getHeaderField("ETag"),
+                        urlConnection.getHeaderField("Last-Modified"));
+            } else if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                // The cached news stories are still current.
+                response = new NewsResponse(null,
+                        headerOrDefault(urlConnection, "ETag", eTag),
+                        headerOrDefault(urlConnection, "Last-Modified", lastModified));
             } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
+                Log.e(LOG_TAG, "Error response code: " + responseCode);
+                inputStream = urlConnection.getErrorStream();
+                throw new FetchException(errorOf(responseCode),
+                        "Error response code " + responseCode,
+                        RequestPolicy.parseRetryAfter(
+                                urlConnection.getHeaderField("Retry-After"),
+                                System.currentTimeMillis()), null);
             }
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the news JSON results", e);
         } finally {
             if (urlConnection != null) {
-                urlConnection.disconnect();
+                FetchExecutor.unregister(urlConnection);
             }
             if (inputStream != null) {
                 // Closing the input stream could throw an IOException, which is why
                 // the makeHttpRequest(URL url) method signature specifies an IOException
                 // could be thrown.
-                inputStream.close();
+                drainAndClose(inputStream);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Return the error of the given error response code.
+     */
+    private static FetchError errorOf(int responseCode) {
+        if (responseCode == 429) {
+            return FetchError.RATE_LIMITED;
+        }
+        return responseCode >= 500 ? FetchError.SERVER : FetchError.REJECTED;
+    }
+
+    /**
+     * Return the value of the given response header, or the default if there is none.
+     */
+    private static String headerOrDefault(HttpURLConnection urlConnection, String name,
+                                          String defaultValue) {
+        String value = urlConnection.getHeaderField(name);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Read whatever is left of the response body and close it, which lets the connection
+     * be reused for the next request.
+     */
+    private static void drainAndClose(InputStream inputStream) throws IOException {
+        try {
+            byte[] buffer = new byte[1024];
+            while (inputStream.read(buffer) != -1) {
+                // Discard the rest of the body.
             }
+        } catch (IOException e) {
+            // The connection is broken and won't be reused anyway.
+        } finally {
+            inputStream.close();
         }
-        return jsonResponse;
     }
 
     /**
      * Convert the {@link InputStream} into a String which contains the whole
      * JSON response from the server.
+     * <p>
+     * Only used by the DOM parsing path, which is kept as a reference for the parser benchmark.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
+    static String readFromStream(InputStream inputStream) throws IOException {
         StringBuilder output = new StringBuilder();
         if (inputStream != null) {
             InputStreamReader inputStreamReader = new InputStreamReader(inputStream,
@@ -132,8 +569,11 @@ public class QueryUtils {
     /**
      * Return an {@link List<News>} object by parsing the information
      * about the news stories from the input newsJSON.
+     * <p>
+     * This builds the whole JSONObject tree, see {@link NewsJsonParser} for the streaming path
+     * used by {@link #fetchNewsData(String)}.
      */
-    private static List<News> extractFeatureFromJson(String newsJSON) {
+    static List<News> extractFeatureFromJson(String newsJSON) {
         // If the JSON string is empty or null, then return early.
         if (TextUtils.isEmpty(newsJSON)) {
             return null;
@@ -0,0 +1,110 @@
+package com.example.newsapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+/**
+ * Shows a news story saved for offline reading, straight from the {@link ArticleStore}
+ * without touching the network.
+ */
+public class ReaderActivity extends AppCompatActivity {
+
+    private static final String EXTRA_URL = "url";
+    private static final String EXTRA_SECTION = "section";
+    private static final String EXTRA_TITLE = "title";
+    private static final String EXTRA_DATE = "date";
+
+    /**
+     * Time to read and decompress a stored body.
+     */
+    private static final Metrics.Histogram LOAD_MICROS = Metrics.histogram("reader.load.us");
+
+    /**
+     * Web URL of the news story shown.
+     */
+    private String mUrl;
+
+    /**
+     * TextView that shows the body of the news story.
+     */
+    private TextView mBodyTextView;
+
+    /**
+     * Return the intent that shows the given news story in the reader.
+     */
+    public static Intent newIntent(Context context, News news) {
+        return new Intent(context, ReaderActivity.class)
+                .putExtra(EXTRA_URL, news.getUrl())
+                .putExtra(EXTRA_SECTION, news.getNewsSection())
+                .putExtra(EXTRA_TITLE, news.getNewsTitle())
+                .putExtra(EXTRA_DATE, news.getDisplayDate() + " | " + news.getDisplayTime());
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.reader_activity);
+
+        Intent intent = getIntent();
+        mUrl = intent.getStringExtra(EXTRA_URL);
+        ((TextView) findViewById(R.id.news_section)).setText(
+                intent.getStringExtra(EXTRA_SECTION));
+        ((TextView) findViewById(R.id.news_title)).setText(intent.getStringExtra(EXTRA_TITLE));
+        ((TextView) findViewById(R.id.date)).setText(intent.getStringExtra(EXTRA_DATE));
+        mBodyTextView = findViewById(R.id.body);
+
+        // Read the body off the UI thread, decompressing it takes a few milliseconds.
+        final Context context = getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long startNanos = System.nanoTime();
+                final String bodyText = ArticleStore.getInstance(context).get(mUrl);
+                LOAD_MICROS.record(Metrics.microsSince(startNanos));
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isFinishing()) {
+                            return;
+                        }
+                        if (bodyText != null) {
+                            mBodyTextView.setText(bodyText);
+                        } else {
+                            // Evicted since the story was opened, fall back to the website.
+                            openInBrowser();
+                            finish();
+                        }
+                    }
+                });
+            }
+        }, "reader-load").start();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.reader, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_open_in_browser) {
+            openInBrowser();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Send an intent to a web browser to open the website of the news story.
+     */
+    private void openInBrowser() {
+        startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(mUrl)));
+    }
+}
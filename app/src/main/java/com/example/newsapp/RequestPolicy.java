@@ -0,0 +1,201 @@
+package com.example.newsapp;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a request within a deadline, retrying it when it may succeed the next time.
+ * <p>
+ * The whole load, retries and waits included, has a deadline, and each attempt's socket
+ * timeouts are cut to what is left of it. Network failures, timeouts, 5xx errors and "429
+ * Too Many Requests" are retried after an exponential backoff with full jitter, or after the
+ * delay the server asked for in its Retry-After header if that is longer. A retry that can't
+ * finish before the deadline isn't made. Other errors fail right away.
+ * <p>
+ * Every attempt goes through a {@link CircuitBreaker}, so an API that keeps failing isn't
+ * sent more requests until it has had time to recover.
+ */
+class RequestPolicy {
+
+    /**
+     * One attempt at the request.
+     */
+    interface Attempt<T> {
+        /**
+         * @param timeoutMillis is the time left before the deadline, the most the socket
+         *                      timeouts of the attempt should allow.
+         * @return the result of the request.
+         * @throws IOException if the attempt failed, a {@link FetchException} if it is known
+         *                     why.
+         */
+        T run(int timeoutMillis) throws IOException;
+    }
+
+    /**
+     * Number of attempts that were retries of a failed one.
+     */
+    private static final Metrics.Counter RETRIES = Metrics.counter("http.retries");
+
+    /**
+     * Time waited before a retry.
+     */
+    private static final Metrics.Histogram BACKOFF_MILLIS = Metrics.histogram("http.backoff.ms");
+
+    /**
+     * Format of a Retry-After header giving a date rather than seconds.
+     */
+    private static final ThreadLocal<SimpleDateFormat> HTTP_DATE_FORMAT =
+            new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    SimpleDateFormat format =
+                            new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+                    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+                    return format;
+                }
+            };
+
+    private final long mDeadlineMillis;
+
+    private final int mMaxAttempts;
+
+    private final long mBaseBackoffMillis;
+
+    private final long mMaxBackoffMillis;
+
+    private final CircuitBreaker mBreaker;
+
+    private final Random mRandom;
+
+    /**
+     * Constructs a new {@link RequestPolicy}.
+     *
+     * @param deadlineMillis    is the time the whole request may take, retries included.
+     * @param maxAttempts       is the maximum number of attempts, the first one included.
+     * @param baseBackoffMillis is the backoff ceiling of the first retry, doubled for each
+     *                          further retry.
+     * @param maxBackoffMillis  is the maximum backoff ceiling.
+     * @param breaker           is the circuit breaker of the API the request is sent to.
+     * @param random            draws the jittered backoffs.
+     */
+    RequestPolicy(long deadlineMillis, int maxAttempts, long baseBackoffMillis,
+                  long maxBackoffMillis, CircuitBreaker breaker, Random random) {
+        mDeadlineMillis = deadlineMillis;
+        mMaxAttempts = maxAttempts;
+        mBaseBackoffMillis = baseBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+        mBreaker = breaker;
+        mRandom = random;
+    }
+
+    /**
+     * Run the attempts of a request until one succeeds, it isn't worth retrying, or the
+     * deadline is near.
+     *
+     * @return the result of the successful attempt.
+     * @throws FetchException with the failure of the last attempt, or
+     *                        {@link FetchError#UNAVAILABLE} if the circuit breaker refused the
+     *                        first one.
+     */
+    <T> T execute(Attempt<T> attempt) throws FetchException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mDeadlineMillis);
+        FetchException failure = null;
+        for (int attempts = 1; ; attempts++) {
+            if (!mBreaker.tryAcquire()) {
+                throw failure != null ? failure
+                        : new FetchException(FetchError.UNAVAILABLE, "Circuit breaker open");
+            }
+            long remainingMillis = remainingMillis(deadlineNanos);
+            if (remainingMillis <= 0) {
+                mBreaker.onCancel();
+                throw new FetchException(FetchError.TIMEOUT, "Deadline exceeded");
+            }
+
+            try {
+                T result = attempt.run((int) Math.min(remainingMillis, Integer.MAX_VALUE));
+                mBreaker.onSuccess();
+                return result;
+            } catch (IOException e) {
+                failure = FetchException.of(e);
+            } catch (RuntimeException e) {
+                // Report the attempt anyway, or a trial of the half-open breaker would never
+                // end and it would refuse every later request.
+                mBreaker.onFailure();
+                throw e;
+            }
+
+            // A cancelled fetch is interrupted and its connection disconnected, which
+            // surfaces as a network failure that must not be retried.
+            if (failure.getError() == FetchError.CANCELLED
+                    || Thread.currentThread().isInterrupted()) {
+                mBreaker.onCancel();
+                throw new FetchException(FetchError.CANCELLED, "Cancelled", 0, failure);
+            }
+            if (!failure.getError().isRetryable()) {
+                // The API answered, it is healthy even if the request was wrong.
+                mBreaker.onSuccess();
+                throw failure;
+            }
+            mBreaker.onFailure();
+            if (attempts >= mMaxAttempts) {
+                throw failure;
+            }
+
+            long backoffMillis = backoffMillis(attempts, failure.getRetryAfterMillis());
+            if (backoffMillis >= remainingMillis(deadlineNanos)) {
+                throw failure;
+            }
+            BACKOFF_MILLIS.record(backoffMillis);
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FetchException(FetchError.CANCELLED, "Cancelled", 0, failure);
+            }
+            RETRIES.increment();
+        }
+    }
+
+    /**
+     * Return the time to wait before the retry following the given number of attempts: a
+     * random time up to the exponential backoff ceiling, but no less than the server asked.
+     */
+    long backoffMillis(int attempts, long retryAfterMillis) {
+        long ceiling = mBaseBackoffMillis << Math.min(attempts - 1, 30);
+        if (ceiling <= 0 || ceiling > mMaxBackoffMillis) {
+            ceiling = mMaxBackoffMillis;
+        }
+        long jittered = (long) (mRandom.nextDouble() * ceiling);
+        return Math.max(jittered, retryAfterMillis);
+    }
+
+    private static long remainingMillis(long deadlineNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * Return the delay asked for by the given Retry-After header, either a number of seconds
+     * or an HTTP date, or 0 if there is none or it can't be parsed.
+     */
+    static long parseRetryAfter(String retryAfter, long nowMillis) {
+        if (retryAfter == null) {
+            return 0;
+        }
+        retryAfter = retryAfter.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter)));
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, try a date.
+        }
+        try {
+            return Math.max(0, HTTP_DATE_FORMAT.get().parse(retryAfter).getTime() - nowMillis);
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+}
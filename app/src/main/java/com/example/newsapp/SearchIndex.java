@@ -0,0 +1,315 @@
+package com.example.newsapp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory full-text index of the news stories the app has loaded, so they can be searched
+ * without a network round trip.
+ * <p>
+ * The title, section and body text of each story are split into lower case words, and each
+ * word maps to the stories containing it along with a weight: title words count more than
+ * section words, which count more than body words. A search returns the stories containing
+ * every word of the query, the last word also matching as a prefix while it is being typed,
+ * ranked by the weight of the matches times how rare the matched words are.
+ * <p>
+ * Stories are added as they are loaded. Adding a story that is already indexed only reindexes
+ * it if it changed, and the least recently added stories are dropped past
+ * {@link #MAX_DOCUMENTS}, so the index is never rebuilt.
+ */
+public final class SearchIndex {
+
+    /**
+     * Maximum number of indexed news stories.
+     */
+    static final int MAX_DOCUMENTS = 2000;
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int SECTION_WEIGHT = 2;
+    private static final int BODY_WEIGHT = 1;
+
+    /**
+     * Fraction of the score a word gets for only matching as a prefix.
+     */
+    private static final double PREFIX_MATCH_FACTOR = 0.5;
+
+    /**
+     * Time to search the index.
+     */
+    private static final Metrics.Histogram SEARCH_MICROS = Metrics.histogram("search.local.us");
+
+    /**
+     * Orders search results by score, then newest first.
+     */
+    private static final Comparator<Match> BEST_FIRST = new Comparator<Match>() {
+        @Override
+        public int compare(Match a, Match b) {
+            int byScore = Double.compare(b.score, a.score);
+            if (byScore != 0) {
+                return byScore;
+            }
+            long aTime = a.document.news.getTimeInMillis();
+            long bTime = b.document.news.getTimeInMillis();
+            return aTime > bTime ? -1 : (aTime == bTime ? 0 : 1);
+        }
+    };
+
+    private static SearchIndex sInstance;
+
+    /**
+     * Word to the documents containing it and the weight of the word in each, sorted by word
+     * so prefixes can be looked up.
+     */
+    private final TreeMap<String, Map<Document, Integer>> mPostings = new TreeMap<>();
+
+    /**
+     * URL to indexed document, least recently added first.
+     */
+    private final LinkedHashMap<String, Document> mDocuments = new LinkedHashMap<>();
+
+    private final int mMaxDocuments;
+
+    /**
+     * Return the search index of the app.
+     */
+    public static synchronized SearchIndex getInstance() {
+        if (sInstance == null) {
+            sInstance = new SearchIndex(MAX_DOCUMENTS);
+        }
+        return sInstance;
+    }
+
+    SearchIndex(int maxDocuments) {
+        mMaxDocuments = maxDocuments;
+    }
+
+    /**
+     * Index the given news stories, reindexing the ones that changed.
+     */
+    public synchronized void addAll(Collection<News> newsStories) {
+        for (News news : newsStories) {
+            Document document = mDocuments.remove(news.getUrl());
+            String bodyText = null;
+            if (document != null) {
+                bodyText = document.bodyText;
+                if (document.news.equals(news)) {
+                    // Unchanged, only move it to the most recently added end.
+                    mDocuments.put(news.getUrl(), document);
+                    continue;
+                }
+                removePostings(document);
+            }
+            index(new Document(news, bodyText));
+        }
+        trimToSize();
+    }
+
+    /**
+     * Index the body text of the indexed news story with the given URL.
+     *
+     * @return false if the news story is not indexed.
+     */
+    public synchronized boolean setBodyText(String url, String bodyText) {
+        Document document = mDocuments.get(url);
+        if (document == null) {
+            return false;
+        }
+        removePostings(document);
+        mDocuments.remove(url);
+        index(new Document(document.news, bodyText));
+        return true;
+    }
+
+    /**
+     * Return the news stories matching the given query, best match first.
+     *
+     * @param query is the text typed by the user.
+     * @param limit is the maximum number of news stories to return.
+     */
+    public synchronized List<News> search(String query, int limit) {
+        long startNanos = System.nanoTime();
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Unless the query ends with a separator the last word may still be being typed.
+        boolean lastIsPrefix = Character.isLetterOrDigit(query.charAt(query.length() - 1));
+
+        Map<Document, Match> matches = null;
+        for (int i = 0; i < words.size(); i++) {
+            Map<Document, Double> scores =
+                    score(words.get(i), lastIsPrefix && i == words.size() - 1);
+            if (matches == null) {
+                matches = new HashMap<>();
+                for (Map.Entry<Document, Double> score : scores.entrySet()) {
+                    matches.put(score.getKey(), new Match(score.getKey(), score.getValue()));
+                }
+            } else {
+                // Every word has to match.
+                Iterator<Match> iterator = matches.values().iterator();
+                while (iterator.hasNext()) {
+                    Match match = iterator.next();
+                    Double score = scores.get(match.document);
+                    if (score == null) {
+                        iterator.remove();
+                    } else {
+                        match.score += score;
+                    }
+                }
+            }
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+
+        List<Match> ranked = new ArrayList<>(matches.values());
+        Collections.sort(ranked, BEST_FIRST);
+        List<News> newsStories = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            newsStories.add(ranked.get(i).document.news);
+        }
+        SEARCH_MICROS.record(Metrics.microsSince(startNanos));
+        return newsStories;
+    }
+
+    /**
+     * Return the number of indexed news stories.
+     */
+    public synchronized int size() {
+        return mDocuments.size();
+    }
+
+    /**
+     * Return the score of each document containing the given word, or a word it is a prefix
+     * of if prefix is true.
+     */
+    private Map<Document, Double> score(String word, boolean prefix) {
+        Map<Document, Double> scores = new HashMap<>();
+        SortedMap<String, Map<Document, Integer>> terms = prefix
+                ? mPostings.subMap(word, word + Character.MAX_VALUE)
+                : mPostings.subMap(word, true, word, true);
+        for (Map.Entry<String, Map<Document, Integer>> term : terms.entrySet()) {
+            Map<Document, Integer> postings = term.getValue();
+            double idf = Math.log(1 + (double) mDocuments.size() / postings.size());
+            double factor = term.getKey().equals(word) ? 1 : PREFIX_MATCH_FACTOR;
+            for (Map.Entry<Document, Integer> posting : postings.entrySet()) {
+                double score = posting.getValue() * idf * factor;
+                Double best = scores.get(posting.getKey());
+                if (best == null || score > best) {
+                    scores.put(posting.getKey(), score);
+                }
+            }
+        }
+        return scores;
+    }
+
+    private void index(Document document) {
+        mDocuments.put(document.news.getUrl(), document);
+        Map<String, Integer> weights = new HashMap<>();
+        addWeights(weights, document.news.getNewsTitle(), TITLE_WEIGHT);
+        addWeights(weights, document.news.getNewsSection(), SECTION_WEIGHT);
+        addWeights(weights, document.bodyText, BODY_WEIGHT);
+        for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+            Map<Document, Integer> postings = mPostings.get(weight.getKey());
+            if (postings == null) {
+                postings = new HashMap<>();
+                mPostings.put(weight.getKey(), postings);
+            }
+            postings.put(document, weight.getValue());
+        }
+        document.words = weights.keySet().toArray(new String[weights.size()]);
+    }
+
+    private void removePostings(Document document) {
+        for (String word : document.words) {
+            Map<Document, Integer> postings = mPostings.get(word);
+            if (postings != null) {
+                postings.remove(document);
+                if (postings.isEmpty()) {
+                    mPostings.remove(word);
+                }
+            }
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Document> iterator = mDocuments.values().iterator();
+        while (mDocuments.size() > mMaxDocuments && iterator.hasNext()) {
+            removePostings(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private static void addWeights(Map<String, Integer> weights, String text, int weight) {
+        for (String word : tokenize(text)) {
+            Integer current = weights.get(word);
+            weights.put(word, current == null ? weight : current + weight);
+        }
+    }
+
+    /**
+     * Split the given text into lower case words of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * An indexed news story. Compared by identity, so a reindexed story is a new document.
+     */
+    private static final class Document {
+
+        final News news;
+
+        final String bodyText;
+
+        /**
+         * Words the document is indexed under.
+         */
+        String[] words;
+
+        Document(News news, String bodyText) {
+            this.news = news;
+            this.bodyText = bodyText;
+        }
+    }
+
+    /**
+     * A document matching a search, and its score so far.
+     */
+    private static final class Match {
+
+        final Document document;
+
+        double score;
+
+        Match(Document document, double score) {
+            this.document = document;
+            this.score = score;
+        }
+    }
+}
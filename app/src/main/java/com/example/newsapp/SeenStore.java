@@ -0,0 +1,402 @@
+package com.example.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The news stories the user opened, kept across launches so their rows are dimmed and they
+ * don't count as new.
+ * <p>
+ * A story is known by the {@link FeedStore#urlHash(String) hash of its URL}. Stories seen in
+ * the last {@link #RECENT_MILLIS} are kept exactly, up to {@link #MAX_RECENT} of them, in an
+ * open addressing table of their hashes, so checking a row is a few array reads with no
+ * allocation. Older ones move to a Bloom filter of fixed size, which may rarely take an
+ * unseen story for a seen one but never the reverse.
+ * <p>
+ * There are two Bloom filters, of the current and the previous {@link #GENERATION_MILLIS}.
+ * Once the current one is older than that, the previous one is dropped and a new one starts,
+ * so stories are forgotten after one to two generations. Neither the memory nor the file
+ * grow with use: the file is the two filters and the recent stories, about 64 KB at most,
+ * read in one go without parsing any string.
+ */
+public final class SeenStore {
+
+    private static final String LOG_TAG = SeenStore.class.getSimpleName();
+
+    /**
+     * Name of the file of the store, in the app's files directory.
+     */
+    private static final String FILE_NAME = "seen_stories.bin";
+
+    /**
+     * Version of the file format, bumped whenever it changes so old files are ignored.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Maximum number of stories kept exactly.
+     */
+    static final int MAX_RECENT = 2048;
+
+    /**
+     * Time a seen story is kept exactly before it moves to the Bloom filter.
+     */
+    static final long RECENT_MILLIS = TimeUnit.DAYS.toMillis(14);
+
+    /**
+     * Time covered by each Bloom filter.
+     */
+    static final long GENERATION_MILLIS = TimeUnit.DAYS.toMillis(45);
+
+    /**
+     * Number of bits of each Bloom filter, a power of two. With the ten thousand or so
+     * stories a heavy reader opens in a generation, about one unseen story in two hundred
+     * shows as seen.
+     */
+    static final int BLOOM_BITS = 1 << 17;
+
+    /**
+     * Number of bits set for each story in a Bloom filter.
+     */
+    private static final int BLOOM_PROBES = 4;
+
+    /**
+     * Number of slots of the table of recent stories, a power of two at least twice
+     * {@link #MAX_RECENT} so the probes stay short.
+     */
+    private static final int TABLE_SIZE = 4 * MAX_RECENT;
+
+    /**
+     * A free slot of the table. A story hashed to it is stored as {@link #ZERO_KEY}.
+     */
+    private static final long EMPTY = 0;
+    private static final long ZERO_KEY = 1;
+
+    private static SeenStore sInstance;
+
+    /**
+     * File of the store, or null if it is only kept in memory.
+     */
+    private final File mFile;
+
+    /**
+     * Hashes and times of the recent stories, oldest first from {@link #mRecentStart}, in a
+     * ring.
+     */
+    private final long[] mRecentKeys = new long[MAX_RECENT];
+    private final long[] mRecentTimes = new long[MAX_RECENT];
+    private int mRecentStart;
+    private int mRecentCount;
+
+    /**
+     * Open addressing table of the hashes of the recent stories, with linear probing.
+     */
+    private final long[] mTable = new long[TABLE_SIZE];
+
+    private long[] mCurrent = new long[BLOOM_BITS / 64];
+    private long[] mPrevious = new long[BLOOM_BITS / 64];
+
+    /**
+     * Time in milliseconds when the current Bloom filter started, or 0 if nothing was seen.
+     */
+    private long mGenerationStart;
+
+    /**
+     * Whether the store changed since it was last saved.
+     */
+    private boolean mDirty;
+
+    /**
+     * Return the seen store of the app, reading its file the first time, so call it on a
+     * background thread first.
+     */
+    public static synchronized SeenStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SeenStore(
+                    new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+            sInstance.compact(System.currentTimeMillis());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Read the store from the given file, or start empty if there is none or null.
+     */
+    SeenStore(File file) {
+        mFile = file;
+        if (file != null && file.exists()) {
+            try {
+                read(file);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Problem reading the seen stories, starting over", e);
+                clear();
+            }
+        }
+    }
+
+    /**
+     * Remember that the story at the given URL was seen now.
+     */
+    public void markSeen(String url) {
+        markSeen(FeedStore.urlHash(url), System.currentTimeMillis());
+    }
+
+    /**
+     * Remember that the story with the given URL hash was seen at the given time in
+     * milliseconds. A story seen again after it moved to the Bloom filter is kept exactly
+     * again.
+     */
+    synchronized void markSeen(long urlHash, long now) {
+        compact(now);
+        long key = keyOf(urlHash);
+        if (slotOf(key) >= 0) {
+            return;
+        }
+        if (mRecentCount == MAX_RECENT) {
+            retireOldest();
+        }
+        int index = (mRecentStart + mRecentCount) % MAX_RECENT;
+        mRecentKeys[index] = key;
+        mRecentTimes[index] = now;
+        mRecentCount++;
+        insert(key);
+        mDirty = true;
+    }
+
+    /**
+     * Return true if the story with the given URL hash was seen, see
+     * {@link FeedStore#getUrlHash(int)}. Doesn't allocate, so rows can check it as they bind.
+     */
+    public synchronized boolean contains(long urlHash) {
+        long key = keyOf(urlHash);
+        return slotOf(key) >= 0 || mightContain(mCurrent, key) || mightContain(mPrevious, key);
+    }
+
+    /**
+     * @return the number of stories kept exactly.
+     */
+    synchronized int getRecentCount() {
+        return mRecentCount;
+    }
+
+    /**
+     * Move the stories seen too long ago to the Bloom filter, and start a new Bloom filter
+     * once the current one is a generation old, dropping the previous one.
+     */
+    synchronized void compact(long now) {
+        if (mGenerationStart == 0 || now - mGenerationStart >= 2 * GENERATION_MILLIS) {
+            // Nothing seen yet, or not for so long that both filters are out of date.
+            if (mGenerationStart != 0) {
+                Arrays.fill(mCurrent, 0);
+                Arrays.fill(mPrevious, 0);
+                mDirty = true;
+            }
+            mGenerationStart = now;
+        } else if (now - mGenerationStart >= GENERATION_MILLIS) {
+            long[] previous = mPrevious;
+            mPrevious = mCurrent;
+            Arrays.fill(previous, 0);
+            mCurrent = previous;
+            mGenerationStart += GENERATION_MILLIS;
+            mDirty = true;
+        }
+        while (mRecentCount > 0 && now - mRecentTimes[mRecentStart] >= RECENT_MILLIS) {
+            retireOldest();
+        }
+    }
+
+    /**
+     * Save the store to its file, if it changed since it was last saved.
+     * <p>
+     * On a background thread.
+     */
+    public void saveIfChanged() throws IOException {
+        byte[] bytes;
+        synchronized (this) {
+            if (!mDirty || mFile == null) {
+                return;
+            }
+            bytes = encode();
+            mDirty = false;
+        }
+        File temp = new File(mFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            temp.delete();
+            synchronized (this) {
+                mDirty = true;
+            }
+            throw new IOException("Could not commit " + mFile);
+        }
+    }
+
+    private byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                2 * BLOOM_BITS / 8 + mRecentCount * 16 + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(mGenerationStart);
+            for (long bits : mPrevious) {
+                out.writeLong(bits);
+            }
+            for (long bits : mCurrent) {
+                out.writeLong(bits);
+            }
+            out.writeInt(mRecentCount);
+            for (int i = 0; i < mRecentCount; i++) {
+                int index = (mRecentStart + i) % MAX_RECENT;
+                out.writeLong(mRecentKeys[index]);
+                out.writeLong(mRecentTimes[index]);
+            }
+            out.close();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            mGenerationStart = in.readLong();
+            for (int i = 0; i < mPrevious.length; i++) {
+                mPrevious[i] = in.readLong();
+            }
+            for (int i = 0; i < mCurrent.length; i++) {
+                mCurrent[i] = in.readLong();
+            }
+            int count = in.readInt();
+            if (count < 0 || count > MAX_RECENT) {
+                throw new IOException("Corrupt seen store, " + count + " recent stories");
+            }
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                long time = in.readLong();
+                if (key != EMPTY && slotOf(key) < 0) {
+                    mRecentKeys[mRecentCount] = key;
+                    mRecentTimes[mRecentCount] = time;
+                    mRecentCount++;
+                    insert(key);
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void clear() {
+        Arrays.fill(mTable, EMPTY);
+        Arrays.fill(mCurrent, 0);
+        Arrays.fill(mPrevious, 0);
+        mRecentStart = 0;
+        mRecentCount = 0;
+        mGenerationStart = 0;
+    }
+
+    /**
+     * Move the oldest recent story to the current Bloom filter.
+     */
+    private void retireOldest() {
+        long key = mRecentKeys[mRecentStart];
+        remove(key);
+        add(mCurrent, key);
+        mRecentStart = (mRecentStart + 1) % MAX_RECENT;
+        mRecentCount--;
+        mDirty = true;
+    }
+
+    private static long keyOf(long urlHash) {
+        return urlHash != EMPTY ? urlHash : ZERO_KEY;
+    }
+
+    private static int homeSlotOf(long key) {
+        return (int) (key ^ (key >>> 32)) & (TABLE_SIZE - 1);
+    }
+
+    /**
+     * Return the slot of the given key in the table, or -1 if it isn't in it.
+     */
+    private int slotOf(long key) {
+        for (int slot = homeSlotOf(key); ; slot = (slot + 1) & (TABLE_SIZE - 1)) {
+            if (mTable[slot] == key) {
+                return slot;
+            }
+            if (mTable[slot] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private void insert(long key) {
+        int slot = homeSlotOf(key);
+        while (mTable[slot] != EMPTY) {
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        mTable[slot] = key;
+    }
+
+    /**
+     * Remove the given key from the table, shifting back the keys probed past it so every
+     * key stays reachable from its home slot without leaving a tombstone.
+     */
+    private void remove(long key) {
+        int free = slotOf(key);
+        if (free < 0) {
+            return;
+        }
+        for (int slot = (free + 1) & (TABLE_SIZE - 1); mTable[slot] != EMPTY;
+                slot = (slot + 1) & (TABLE_SIZE - 1)) {
+            int home = homeSlotOf(mTable[slot]);
+            boolean reachable = free <= slot
+                    ? free < home && home <= slot
+                    : free < home || home <= slot;
+            if (!reachable) {
+                mTable[free] = mTable[slot];
+                free = slot;
+            }
+        }
+        mTable[free] = EMPTY;
+    }
+
+    private static void add(long[] bloom, long key) {
+        int hash = (int) key;
+        int step = (int) (key >>> 32) | 1;
+        for (int i = 0; i < BLOOM_PROBES; i++) {
+            int bit = (hash + i * step) & (BLOOM_BITS - 1);
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static boolean mightContain(long[] bloom, long key) {
+        int hash = (int) key;
+        int step = (int) (key >>> 32) | 1;
+        for (int i = 0; i < BLOOM_PROBES; i++) {
+            int bit = (hash + i * step) & (BLOOM_BITS - 1);
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.newsapp;
+
+import android.os.Trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Traces the phases of a cold start, from the creation of the first activity to the first
+ * news stories shown.
+ * <p>
+ * Each phase is a systrace section, so it shows up in a system trace, and its time is recorded
+ * in the "startup.&lt;phase&gt;.us" histogram of the {@link Metrics}. The time from the start
+ * to the first news stories shown is recorded in "startup.first_content.us". Phases may run
+ * on any thread, and every phase of the process is kept with its thread and start time, so a
+ * JVM test can check what ran where and in parallel.
+ */
+public final class StartupTrace {
+
+    /**
+     * Time from the start to the first news stories shown.
+     */
+    private static final Metrics.Histogram FIRST_CONTENT_MICROS =
+            Metrics.histogram("startup.first_content.us");
+
+    /**
+     * {@link System#nanoTime()} when the startup began, or 0 if it didn't yet.
+     */
+    private static volatile long sStartNanos;
+
+    private static final AtomicBoolean sFirstContentShown = new AtomicBoolean();
+
+    private static final List<Span> sSpans = new CopyOnWriteArrayList<>();
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Start tracing the startup, first thing when the first activity is created. Only the
+     * first call of the process counts, the activity is created again on a configuration
+     * change.
+     */
+    public static synchronized void start() {
+        if (sStartNanos == 0) {
+            sStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Begin the given phase on the calling thread. The sections of a thread must end in the
+     * reverse order they began.
+     *
+     * @param phase is the name of the phase, like "inflate".
+     */
+    public static Section begin(String phase) {
+        Trace.beginSection("startup." + phase);
+        return new Section(phase);
+    }
+
+    /**
+     * The first news stories were shown, from the given source like "snapshot" or "loader".
+     *
+     * @return true if they were the first ones since the start, false if news stories were
+     * already shown or the startup isn't traced.
+     */
+    public static boolean firstContent(String source) {
+        long startNanos = sStartNanos;
+        if (startNanos == 0 || !sFirstContentShown.compareAndSet(false, true)) {
+            return false;
+        }
+        long micros = Metrics.microsSince(startNanos);
+        FIRST_CONTENT_MICROS.record(micros);
+        sSpans.add(new Span("first_content." + source, Thread.currentThread().getName(),
+                micros, 0));
+        return true;
+    }
+
+    /**
+     * @return the phases traced so far, in the order they ended.
+     */
+    static List<Span> getSpans() {
+        return new ArrayList<>(sSpans);
+    }
+
+    /**
+     * Forget the startup traced, so another one can be.
+     */
+    static synchronized void reset() {
+        sStartNanos = 0;
+        sFirstContentShown.set(false);
+        sSpans.clear();
+    }
+
+    /**
+     * A phase in progress, {@link #end()} it once it is done.
+     */
+    public static final class Section {
+
+        private final String mPhase;
+
+        private final long mStartNanos = System.nanoTime();
+
+        private Section(String phase) {
+            mPhase = phase;
+        }
+
+        public void end() {
+            long micros = Metrics.microsSince(mStartNanos);
+            Trace.endSection();
+            Metrics.histogram("startup." + mPhase + ".us").record(micros);
+            long startNanos = sStartNanos;
+            if (startNanos != 0) {
+                sSpans.add(new Span(mPhase, Thread.currentThread().getName(),
+                        (mStartNanos - startNanos) / 1000, micros));
+            }
+        }
+    }
+
+    /**
+     * A phase that ended.
+     */
+    static final class Span {
+        final String phase;
+        final String threadName;
+        final long startMicros;
+        final long durationMicros;
+
+        Span(String phase, String threadName, long startMicros, long durationMicros) {
+            this.phase = phase;
+            this.threadName = threadName;
+            this.startMicros = startMicros;
+            this.durationMicros = durationMicros;
+        }
+
+        /**
+         * @return the microseconds from the start of the startup to the end of the phase.
+         */
+        long endMicros() {
+            return startMicros + durationMicros;
+        }
+    }
+}
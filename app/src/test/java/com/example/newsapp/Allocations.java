@@ -0,0 +1,26 @@
+package com.example.newsapp;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the heap allocated by the current thread, for the tests checking what a code path
+ * allocates.
+ */
+final class Allocations {
+
+    private Allocations() {
+    }
+
+    /**
+     * Return the bytes allocated so far by this thread, or -1 if the JVM can't tell.
+     */
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
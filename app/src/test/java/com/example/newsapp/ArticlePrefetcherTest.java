@@ -0,0 +1,194 @@
+package com.example.newsapp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link ArticlePrefetcher} saves the bodies of the top news stories with one
+ * request, within its budgets, and that {@link ArticleStore} keeps them compressed.
+ */
+public class ArticlePrefetcherTest {
+
+    private static final String WEB_URL = "https://www.theguardian.com/";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mDirectory;
+
+    private ArticleStore mStore;
+
+    /**
+     * Request URLs the fake fetcher was asked for.
+     */
+    private final List<String> mRequests = new ArrayList<>();
+
+    /**
+     * Length of the bodies the fake fetcher returns.
+     */
+    private int mBodyLength = 2000;
+
+    /**
+     * Whether the fake fetcher fails.
+     */
+    private boolean mFailing;
+
+    /**
+     * Answers a request for story IDs with those stories, each with a body of random words.
+     */
+    private final NewsFetchEngine.Fetcher mFetcher = new NewsFetchEngine.Fetcher() {
+        @Override
+        public List<News> fetch(String requestUrl) {
+            mRequests.add(requestUrl);
+            if (mFailing) {
+                return null;
+            }
+            List<News> articles = new ArrayList<>();
+            for (String id : GuardianRequest.parameterOf(requestUrl, "ids").split(",")) {
+                articles.add(new News("World news", "Story " + id, "2019-05-11T05:00:12Z",
+                        WEB_URL + id, null, bodyText(id)));
+            }
+            return articles;
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = mFolder.newFolder();
+        mStore = new ArticleStore(new DiskLruCache(mDirectory, 1024 * 1024, 50));
+    }
+
+    private String bodyText(String id) {
+        Random random = new Random(id.hashCode());
+        StringBuilder text = new StringBuilder(mBodyLength);
+        while (text.length() < mBodyLength) {
+            text.append(random.nextInt(100000)).append(' ');
+        }
+        return text.substring(0, mBodyLength);
+    }
+
+    private static List<News> newsStories(int count) {
+        List<News> newsStories = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            newsStories.add(new News("World news", "Story " + i, "2019-05-11T05:00:12Z",
+                    WEB_URL + "world/2019/may/11/story-" + i));
+        }
+        return newsStories;
+    }
+
+    @Test
+    public void prefetch_savesTheTopStoriesWithOneRequest() {
+        List<News> newsStories = newsStories(30);
+        ArticlePrefetcher prefetcher = new ArticlePrefetcher(mStore, mFetcher, 5, 1024 * 1024);
+
+        assertEquals(5, prefetcher.prefetch(newsStories));
+
+        assertEquals(1, mRequests.size());
+        assertEquals("bodyText", GuardianRequest.parameterOf(mRequests.get(0), "show-fields"));
+        assertEquals("5", GuardianRequest.parameterOf(mRequests.get(0), "page-size"));
+        for (int i = 0; i < 5; i++) {
+            String url = newsStories.get(i).getUrl();
+            assertEquals(bodyText(GuardianRequest.idOf(url)), mStore.get(url));
+        }
+        assertFalse(mStore.contains(newsStories.get(5).getUrl()));
+    }
+
+    @Test
+    public void prefetch_onlyAsksForStoriesNotSavedYet() {
+        ArticlePrefetcher prefetcher = new ArticlePrefetcher(mStore, mFetcher, 5, 1024 * 1024);
+        List<News> newsStories = newsStories(6);
+        prefetcher.prefetch(newsStories.subList(1, 6));
+
+        assertEquals(0, prefetcher.prefetch(newsStories.subList(1, 6)));
+        assertEquals(1, prefetcher.prefetch(newsStories));
+
+        assertEquals(2, mRequests.size());
+        assertEquals(GuardianRequest.idOf(newsStories.get(0).getUrl()),
+                GuardianRequest.parameterOf(mRequests.get(1), "ids"));
+    }
+
+    @Test
+    public void prefetch_stopsOnceTheByteBudgetIsUsed() throws IOException {
+        // Random numbers barely compress, so every body takes about as many bytes as this
+        // one and the third body crosses the budget and is the last one stored.
+        mBodyLength = 10000;
+        int bodyBytes = new ArticleStore(new DiskLruCache(mFolder.newFolder(), 1024 * 1024))
+                .put(WEB_URL + "sample", bodyText("sample"));
+        List<News> newsStories = newsStories(10);
+        ArticlePrefetcher prefetcher =
+                new ArticlePrefetcher(mStore, mFetcher, 10, bodyBytes * 5 / 2);
+
+        assertEquals(3, prefetcher.prefetch(newsStories));
+        assertTrue(mStore.contains(newsStories.get(2).getUrl()));
+        assertFalse(mStore.contains(newsStories.get(3).getUrl()));
+    }
+
+    @Test
+    public void prefetch_onlyDownloadsTheBodiesTheBudgetHolds() throws IOException {
+        mBodyLength = 10000;
+        int bodyBytes = new ArticleStore(new DiskLruCache(mFolder.newFolder(), 1024 * 1024))
+                .put(WEB_URL + "sample", bodyText("sample"));
+        List<News> newsStories = newsStories(20);
+        ArticlePrefetcher prefetcher =
+                new ArticlePrefetcher(mStore, mFetcher, 20, bodyBytes * 5 / 2);
+
+        prefetcher.prefetch(newsStories);
+
+        // The requests are sized from the budget, not the twenty stories considered.
+        int requested = 0;
+        for (String request : mRequests) {
+            requested += GuardianRequest.parameterOf(request, "ids").split(",").length;
+        }
+        assertTrue(requested + " bodies requested", requested <= 4);
+    }
+
+    @Test
+    public void prefetch_reportsAFailedRequest() {
+        mFailing = true;
+        List<News> newsStories = newsStories(3);
+        ArticlePrefetcher prefetcher = new ArticlePrefetcher(mStore, mFetcher, 5, 1024 * 1024);
+
+        assertEquals(-1, prefetcher.prefetch(newsStories));
+        assertFalse(mStore.contains(newsStories.get(0).getUrl()));
+    }
+
+    @Test
+    public void store_keepsBodiesCompressedAcrossRestarts() {
+        String bodyText = new String(new char[20000]).replace('\0', 'a');
+        mStore.put(WEB_URL + "a", bodyText);
+
+        ArticleStore reopened =
+                new ArticleStore(new DiskLruCache(mDirectory, 1024 * 1024, 50));
+
+        assertTrue(reopened.size() < bodyText.length() / 10);
+        assertEquals(bodyText, reopened.get(WEB_URL + "a"));
+        assertEquals(bodyText, reopened.getAll().get(WEB_URL + "a"));
+        assertNull(reopened.get(WEB_URL + "b"));
+    }
+
+    @Test
+    public void store_evictsTheLeastRecentlyUsedPastItsCount() {
+        ArticleStore store = new ArticleStore(new DiskLruCache(mDirectory, 1024 * 1024, 2));
+        store.put(WEB_URL + "a", "A");
+        store.put(WEB_URL + "b", "B");
+        store.get(WEB_URL + "a");
+        store.put(WEB_URL + "c", "C");
+
+        assertTrue(store.contains(WEB_URL + "a"));
+        assertFalse(store.contains(WEB_URL + "b"));
+        assertTrue(store.contains(WEB_URL + "c"));
+    }
+}
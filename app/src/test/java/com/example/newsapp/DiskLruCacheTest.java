@@ -0,0 +1,83 @@
+package com.example.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link DiskLruCache} evicts its least recently used entries once it goes over
+ * its size or its number of entries.
+ */
+public class DiskLruCacheTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static byte[] bytes(int length) {
+        return new byte[length];
+    }
+
+    @Test
+    public void put_evictsTheLeastRecentlyUsedEntryOverTheSize() throws IOException {
+        DiskLruCache cache = new DiskLruCache(mFolder.newFolder(), 30);
+        cache.put("a", bytes(10));
+        cache.put("b", bytes(10));
+        cache.put("c", bytes(10));
+
+        // Reading "a" makes "b" the least recently used entry.
+        assertArrayEquals(bytes(10), cache.get("a"));
+        cache.put("d", bytes(10));
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertTrue(cache.contains("d"));
+        assertEquals(30, cache.size());
+    }
+
+    @Test
+    public void put_evictsTheLeastRecentlyUsedEntryOverTheEntryCount() throws IOException {
+        File directory = mFolder.newFolder();
+        DiskLruCache cache = new DiskLruCache(directory, 1024, 2);
+        cache.put("a", bytes(1));
+        cache.put("b", bytes(1));
+        cache.put("c", bytes(1));
+
+        assertFalse(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    @Test
+    public void open_trimsTheEntriesToTheNewBounds() throws IOException {
+        File directory = mFolder.newFolder();
+        DiskLruCache cache = new DiskLruCache(directory, 1024);
+        cache.put("a", bytes(10));
+        cache.put("b", bytes(10));
+        cache.put("c", bytes(10));
+
+        DiskLruCache reopened = new DiskLruCache(directory, 1024, 1);
+
+        assertEquals(1, directory.listFiles().length);
+        assertEquals(10, reopened.size());
+    }
+
+    @Test
+    public void put_replacesTheEntryOfTheSameKey() throws IOException {
+        DiskLruCache cache = new DiskLruCache(mFolder.newFolder(), 1024);
+        cache.put("a", bytes(10));
+        cache.put("a", new byte[]{1, 2, 3});
+
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get("a"));
+        assertEquals(3, cache.size());
+    }
+}
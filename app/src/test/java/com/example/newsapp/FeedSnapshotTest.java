@@ -0,0 +1,95 @@
+package com.example.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that a {@link FeedSnapshot} gives back the top of the feed it saved, and nothing
+ * for another request URL or a damaged file.
+ */
+public class FeedSnapshotTest {
+
+    private static final String URL = "http://content.guardianapis.com/search?q=debates";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static FeedStore parse(int resultCount) throws IOException {
+        return FeedStore.of(NewsJsonParser.parse(
+                new ByteArrayInputStream(GuardianFixtures.responseBytes(resultCount))));
+    }
+
+    @Test
+    public void read_returnsTheFirstStoriesSaved() throws IOException {
+        FeedStore newsStories = parse(50);
+        File file = new File(mFolder.getRoot(), "snapshot");
+
+        FeedSnapshot.write(file, URL, newsStories);
+        FeedStore snapshot = FeedSnapshot.read(file, URL);
+
+        List<News> expected = newsStories.toList().subList(0, FeedSnapshot.MAX_STORIES);
+        assertEquals(FeedStore.of(expected), snapshot);
+    }
+
+    @Test
+    public void read_ignoresTheSnapshotOfAnotherUrl() throws IOException {
+        File file = new File(mFolder.getRoot(), "snapshot");
+        FeedSnapshot.write(file, URL, parse(5));
+
+        assertNull(FeedSnapshot.read(file, URL + "&order-by=relevance"));
+    }
+
+    @Test
+    public void read_ignoresAMissingOrDamagedFile() throws IOException {
+        File file = new File(mFolder.getRoot(), "snapshot");
+        assertNull(FeedSnapshot.read(file, URL));
+
+        FeedSnapshot.write(file, URL, parse(5));
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(new byte[]{1, 2, 3});
+        } finally {
+            out.close();
+        }
+        // Only the trailing bytes are extra, the snapshot itself still reads.
+        assertEquals(5, FeedSnapshot.read(file, URL).size());
+
+        out = new FileOutputStream(file);
+        try {
+            out.write(new byte[]{0, 0, 0, 1, 0});
+        } finally {
+            out.close();
+        }
+        assertNull(FeedSnapshot.read(file, URL));
+    }
+
+    @Test
+    public void read_ignoresACorruptLength() throws IOException {
+        File file = new File(mFolder.getRoot(), "snapshot");
+        FeedSnapshot.write(file, URL, parse(5));
+        // The length of the news stories follows the format version and the URL.
+        long lengthOffset = 4 + 2 + URL.length();
+
+        for (int length : new int[]{-1, Integer.MAX_VALUE, (int) file.length()}) {
+            RandomAccessFile out = new RandomAccessFile(file, "rw");
+            try {
+                out.seek(lengthOffset);
+                out.writeInt(length);
+            } finally {
+                out.close();
+            }
+            assertNull(FeedSnapshot.read(file, URL));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that a {@link FeedStore} gives back the news stories it was built from, that
+ * appending leaves earlier snapshots alone, and that it takes much less heap than a list of
+ * {@link News} objects. The heap is only measured with {@code -Pbenchmark}, as it depends on
+ * the garbage collector, while the sizes of the arena and the dictionaries are checked in
+ * every run.
+ */
+public class FeedStoreTest {
+
+    private static final int FEED_SIZE = 5000;
+
+    private static List<News> parse(int resultCount) throws IOException {
+        return NewsJsonParser.parse(
+                new ByteArrayInputStream(GuardianFixtures.responseBytes(resultCount)));
+    }
+
+    private static int utf8Length(String value) {
+        return value != null ? value.getBytes(Charset.forName("UTF-8")).length : 0;
+    }
+
+    private static void assertStory(News expected, FeedStore feed, int position) {
+        assertEquals(expected.getNewsSection(), feed.getNewsSection(position));
+        assertEquals(expected.getNewsTitle(), feed.getNewsTitle(position));
+        char[] title = new char[feed.getTitleMaxLength(position)];
+        assertEquals(expected.getNewsTitle(),
+                new String(title, 0, feed.getNewsTitle(position, title)));
+        assertEquals(expected.getTimeInMillis(), feed.getTimeInMillis(position));
+        assertEquals(expected.getDisplayDate(), feed.getDisplayDate(position));
+        assertEquals(expected.getDisplayTime(), feed.getDisplayTime(position));
+        assertEquals(expected.getUrl(), feed.getUrl(position));
+        assertEquals(expected.getThumbnailUrl(), feed.getThumbnailUrl(position));
+        if (expected.getTimeInMillis() != 0) {
+            assertEquals(expected, feed.get(position));
+        }
+    }
+
+    @Test
+    public void of_keepsTheStories() {
+        List<News> newsStories = Arrays.asList(
+                new News("World news", "Storm hits the coast", "2019-05-11T05:00:12Z",
+                        "https://www.theguardian.com/world/storm",
+                        "https://media.guim.co.uk/storm.jpg"),
+                new News("Politics",
+                        "\ud83d\udcf0 D\u00e9bat \u00e0 l'Assembl\u00e9e \u2013 \u65e5\u672c\u8a9e",
+                        "2019-05-10T23:59:59Z",
+                        "https://www.theguardian.com/politics/d\u00e9bat"),
+                new News("Politics", "Undated", "not a date",
+                        "https://www.theguardian.com/politics/undated"));
+
+        FeedStore feed = FeedStore.of(newsStories);
+
+        assertEquals(3, feed.size());
+        for (int i = 0; i < newsStories.size(); i++) {
+            assertStory(newsStories.get(i), feed, i);
+        }
+        assertNull(feed.getThumbnailUrl(1));
+        assertEquals(newsStories.subList(0, 2), feed.toList().subList(0, 2));
+        assertSame(feed.getNewsSection(1), feed.getNewsSection(2));
+        assertTrue(FeedStore.of(null).isEmpty());
+    }
+
+    @Test
+    public void newBuilder_appendsWithoutChangingTheSnapshot() throws IOException {
+        List<News> parsed = parse(60);
+        FeedStore firstPage = FeedStore.of(parsed.subList(0, 20));
+        FeedStore secondPage = FeedStore.of(parsed.subList(20, 40));
+        FeedStore otherPage = FeedStore.of(parsed.subList(40, 60));
+
+        FeedStore twoPages =
+                firstPage.newBuilder().addAllNew(secondPage, Integer.MAX_VALUE).build();
+        // The first page no longer is the latest snapshot of its arena, so appending to it
+        // again copies it instead of overwriting the second page.
+        FeedStore otherPages =
+                firstPage.newBuilder().addAllNew(otherPage, Integer.MAX_VALUE).build();
+
+        assertEquals(20, firstPage.size());
+        assertEquals(40, twoPages.size());
+        assertEquals(40, otherPages.size());
+        for (int i = 0; i < 20; i++) {
+            assertStory(parsed.get(i), firstPage, i);
+            assertStory(parsed.get(i), twoPages, i);
+            assertStory(parsed.get(i), otherPages, i);
+            assertStory(parsed.get(20 + i), twoPages, 20 + i);
+            assertStory(parsed.get(40 + i), otherPages, 20 + i);
+        }
+        assertEquals(FeedStore.of(parsed.subList(0, 40)), twoPages);
+        assertNotEquals(twoPages, otherPages);
+    }
+
+    @Test
+    public void addAllNew_skipsKnownStoriesUpToTheMaximum() throws IOException {
+        List<News> parsed = parse(30);
+        FeedStore head = FeedStore.of(parsed.subList(0, 20));
+        FeedStore tail = FeedStore.of(parsed.subList(10, 30));
+
+        FeedStore merged = head.newBuilder().addAllNew(tail, 25).build();
+
+        assertEquals(25, merged.size());
+        for (int i = 0; i < 25; i++) {
+            assertStory(parsed.get(i), merged, i);
+        }
+        assertTrue(head.isSameStory(10, tail, 0));
+        assertTrue(head.hasSameContents(10, tail, 0));
+        assertFalse(head.isSameStory(0, tail, 0));
+    }
+
+    @Test
+    public void getUrlHash_isTheHashOfTheUrl() throws IOException {
+        List<News> newsStories = new ArrayList<>(parse(20));
+        newsStories.add(new News("Politics", "D\u00e9bat", "2019-05-10T23:59:59Z",
+                "https://www.theguardian.com/politics/d\u00e9bat-\u65e5\u672c-\ud83d\udcf0"));
+        FeedStore feed = FeedStore.of(newsStories);
+
+        for (int i = 0; i < feed.size(); i++) {
+            assertEquals(FeedStore.urlHash(newsStories.get(i).getUrl()), feed.getUrlHash(i));
+        }
+        assertNotEquals(feed.getUrlHash(0), feed.getUrlHash(1));
+        assertEquals(FeedStore.urlHash("\ud83d?"), FeedStore.urlHash("??"));
+    }
+
+    @Test
+    public void arenaAndDictionaries_holdEachStringOnce() throws IOException {
+        List<News> newsStories = parse(FEED_SIZE);
+        long arenaStrings = 0;
+        long dictionaryStrings = 0;
+        for (News news : newsStories) {
+            arenaStrings += utf8Length(news.getNewsTitle()) + utf8Length(news.getUrl())
+                    + utf8Length(news.getThumbnailUrl());
+            dictionaryStrings += news.getNewsSection().length()
+                    + news.getDisplayDate().length() + news.getDisplayTime().length();
+        }
+
+        FeedStore feed = FeedStore.of(newsStories);
+
+        // The titles and URLs are stored back to back, without a header or padding each.
+        assertEquals(arenaStrings, feed.arenaLength());
+        // The fixture repeats 50 stories, so their sections, dates and times repeat too.
+        assertTrue("dictionaries " + feed.dictionaryLength() + " chars, strings "
+                        + dictionaryStrings + " chars",
+                feed.dictionaryLength() * 20L < dictionaryStrings);
+    }
+
+    @Test
+    public void heap_isAFractionOfTheListOfNews() throws IOException {
+        assumeTrue("Heap measurements only run with -Pbenchmark",
+                Boolean.getBoolean("benchmark"));
+        long startBytes = usedHeapBytes();
+        List<News> newsStories = parse(FEED_SIZE);
+        long listBytes = usedHeapBytes() - startBytes;
+
+        FeedStore feed = FeedStore.of(newsStories);
+        newsStories = null;
+        long feedBytes = usedHeapBytes() - startBytes;
+
+        assertEquals(FEED_SIZE, feed.size());
+        assertTrue("list " + listBytes + " B, store " + feedBytes + " B",
+                feedBytes * 2 < listBytes);
+    }
+
+    /**
+     * Return the heap used once the garbage is collected.
+     */
+    private static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the coalescing, cancellation and priorities of {@link FetchExecutor} against a local
+ * Guardian stub server.
+ */
+public class FetchExecutorTest {
+
+    /**
+     * Runs the callbacks right away on the fetch thread.
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private GuardianStubServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new GuardianStubServer(GuardianFixtures.responseBytes(20));
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    private static FetchExecutor.Task<List<News>> fetchTask(final String url) {
+        return new FetchExecutor.Task<List<News>>() {
+            @Override
+            public List<News> run() {
+                return QueryUtils.fetchNewsData(url);
+            }
+        };
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mServer.requests().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, mServer.requests().size());
+    }
+
+    @Test
+    public void execute_refreshingRepeatedlyMakesOneRequest() throws InterruptedException {
+        FetchExecutor executor = new FetchExecutor(3, DIRECT);
+        mServer.setDelayMillis(300);
+        String url = mServer.url("q=debates");
+
+        List<FetchExecutor.Call<List<News>>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(executor.execute(url, FetchExecutor.Priority.FOREGROUND, fetchTask(url),
+                    null));
+        }
+
+        List<News> first = calls.get(0).await();
+        assertEquals(20, first.size());
+        for (FetchExecutor.Call<List<News>> call : calls) {
+            assertSame(first, call.await());
+        }
+        assertEquals(1, mServer.requests().size());
+    }
+
+    @Test
+    public void cancel_abortsTheSocketRead() throws InterruptedException {
+        FetchExecutor executor = new FetchExecutor(3, DIRECT);
+        // Far longer than the test waits, the read only ends if the socket is closed.
+        mServer.setDelayMillis(5000);
+        final String url = mServer.url("q=debates");
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        FetchExecutor.Call<List<News>> call = executor.execute(url,
+                FetchExecutor.Priority.FOREGROUND, new FetchExecutor.Task<List<News>>() {
+                    @Override
+                    public List<News> run() {
+                        try {
+                            return QueryUtils.fetchNewsData(url);
+                        } finally {
+                            finished.countDown();
+                        }
+                    }
+                }, null);
+        awaitRequests(1);
+        long start = System.nanoTime();
+        call.cancel();
+
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertNull(call.await());
+    }
+
+    @Test
+    public void cancel_keepsTheFetchForOtherCalls() throws InterruptedException {
+        FetchExecutor executor = new FetchExecutor(3, DIRECT);
+        mServer.setDelayMillis(300);
+        String url = mServer.url("q=debates");
+        final List<List<News>> delivered = new CopyOnWriteArrayList<>();
+        FetchExecutor.Callback<List<News>> callback = new FetchExecutor.Callback<List<News>>() {
+            @Override
+            public void onResult(List<News> result) {
+                delivered.add(result);
+            }
+        };
+
+        FetchExecutor.Call<List<News>> replaced = executor.execute(url,
+                FetchExecutor.Priority.FOREGROUND, fetchTask(url), callback);
+        FetchExecutor.Call<List<News>> current = executor.execute(url,
+                FetchExecutor.Priority.FOREGROUND, fetchTask(url), callback);
+        replaced.cancel();
+
+        assertEquals(20, current.await().size());
+        assertEquals(1, delivered.size());
+        assertEquals(1, mServer.requests().size());
+    }
+
+    @Test
+    public void execute_runsQueuedFetchesByPriority() throws InterruptedException {
+        FetchExecutor executor = new FetchExecutor(1, DIRECT);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> order = new CopyOnWriteArrayList<>();
+
+        FetchExecutor.Call<String> blocker = executor.execute("blocker",
+                FetchExecutor.Priority.FOREGROUND, new FetchExecutor.Task<String>() {
+                    @Override
+                    public String run() {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return "blocker";
+                    }
+                }, null);
+        List<FetchExecutor.Call<String>> calls = new ArrayList<>();
+        String[] keys = {"prefetch", "page", "cancelled", "refresh"};
+        FetchExecutor.Priority[] priorities = {FetchExecutor.Priority.BACKGROUND,
+                FetchExecutor.Priority.NEXT_PAGE, FetchExecutor.Priority.FOREGROUND,
+                FetchExecutor.Priority.FOREGROUND};
+        for (int i = 0; i < keys.length; i++) {
+            final String key = keys[i];
+            calls.add(executor.execute(key, priorities[i], new FetchExecutor.Task<String>() {
+                @Override
+                public String run() {
+                    order.add(key);
+                    return key;
+                }
+            }, null));
+        }
+        calls.get(2).cancel();
+        release.countDown();
+
+        blocker.await();
+        calls.get(0).await();
+        assertEquals("[refresh, page, prefetch]", order.toString());
+    }
+}
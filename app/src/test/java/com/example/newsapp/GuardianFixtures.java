@@ -0,0 +1,77 @@
+package com.example.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Recorded Guardian search responses used by the JVM tests and benchmarks.
+ */
+final class GuardianFixtures {
+
+    private static final String RECORDED_RESPONSE = "/guardian_search_50.json";
+
+    private GuardianFixtures() {
+    }
+
+    /**
+     * Return the recorded 50 result response.
+     */
+    static String recordedResponse() {
+        InputStream in = GuardianFixtures.class.getResourceAsStream(RECORDED_RESPONSE);
+        if (in == null) {
+            throw new IllegalStateException("Missing fixture " + RECORDED_RESPONSE);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            in.close();
+            return new String(out.toByteArray(), Charset.forName("UTF-8"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Return a response with the given number of results, built by repeating the recorded
+     * results. Repeated results get a unique webUrl so they stay distinct stories.
+     */
+    static String response(int resultCount) {
+        try {
+            JSONObject recorded = new JSONObject(recordedResponse());
+            JSONObject response = recorded.getJSONObject("response");
+            JSONArray recordedResults = response.getJSONArray("results");
+
+            JSONArray results = new JSONArray();
+            for (int i = 0; i < resultCount; i++) {
+                JSONObject result = new JSONObject(
+                        recordedResults.getJSONObject(i % recordedResults.length()).toString());
+                if (i >= recordedResults.length()) {
+                    result.put("webUrl", result.getString("webUrl") + "-" + i);
+                }
+                results.put(result);
+            }
+            response.put("pageSize", resultCount);
+            response.put("results", results);
+            return recorded.toString(2);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Return the UTF-8 bytes of a response with the given number of results.
+     */
+    static byte[] responseBytes(int resultCount) {
+        return response(resultCount).getBytes(Charset.forName("UTF-8"));
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class GuardianRequestTest {
+
+    @Test
+    public void build_sendsOnlyTheParametersThatAreSet() {
+        GuardianRequest request = new GuardianRequest.Builder()
+                .query("uk politics")
+                .orderBy("newest")
+                .pageSize(20)
+                .apiKey("test")
+                .build();
+
+        assertEquals("http://content.guardianapis.com/search?q=uk+politics&order-by=newest"
+                + "&page-size=20&api-key=test", request.getUrl());
+        assertEquals(GuardianRequest.DISPLAYED_FIELDS, request.getFields());
+    }
+
+    @Test
+    public void build_joinsSectionsAndTags() {
+        GuardianRequest request = new GuardianRequest.Builder()
+                .section("politics")
+                .section("world")
+                .fromDate(0)
+                .page(3)
+                .tag("contributor")
+                .tag("keyword")
+                .build();
+
+        assertEquals("http://content.guardianapis.com/search?section=politics%7Cworld"
+                + "&from-date=1970-01-01T00%3A00%3A00Z&page=3"
+                + "&show-tags=contributor%2Ckeyword", request.getUrl());
+    }
+
+    @Test
+    public void fieldsOf_returnsTheDisplayedFields() {
+        GuardianRequest request = new GuardianRequest.Builder().query("debates").build();
+
+        assertEquals(request.getFields(), GuardianRequest.fieldsOf(request.getUrl()));
+    }
+
+    @Test
+    public void parse_skipsFieldsThatWereNotRequested() throws IOException {
+        String json = "{\"response\": {\"results\": [{"
+                + "\"sectionName\": \"Politics\","
+                + "\"webPublicationDate\": \"2019-05-11T05:00:12Z\","
+                + "\"fields\": {\"webTitle\": \"Not requested\", \"bodyText\": \"Long body\"},"
+                + "\"tags\": [{\"id\": \"profile/someone\"}],"
+                + "\"webTitle\": \"Requested\","
+                + "\"webUrl\": \"http://a\"}]}}";
+
+        List<News> newsStories = NewsJsonParser.parse(
+                new ByteArrayInputStream(json.getBytes("UTF-8")),
+                GuardianRequest.DISPLAYED_FIELDS);
+
+        assertEquals(1, newsStories.size());
+        assertEquals("Requested", newsStories.get(0).getNewsTitle());
+    }
+
+    @Test
+    public void build_asksForTheBodiesOfSeveralStoriesById() throws IOException {
+        GuardianRequest request = new GuardianRequest.Builder()
+                .ids(Arrays.asList(
+                        GuardianRequest.idOf("https://www.theguardian.com/politics/2019/may/11/a"),
+                        GuardianRequest.idOf("https://www.theguardian.com/world/2019/may/12/b")))
+                .field(GuardianRequest.Field.BODY_TEXT)
+                .build();
+        String json = "{\"response\": {\"results\": [{"
+                + "\"sectionName\": \"Politics\","
+                + "\"webPublicationDate\": \"2019-05-11T05:00:12Z\","
+                + "\"webTitle\": \"A\","
+                + "\"webUrl\": \"https://www.theguardian.com/politics/2019/may/11/a\","
+                + "\"fields\": {\"bodyText\": \"Long body\"}}]}}";
+
+        List<News> newsStories = NewsJsonParser.parse(
+                new ByteArrayInputStream(json.getBytes("UTF-8")),
+                GuardianRequest.fieldsOf(request.getUrl()));
+
+        assertEquals("http://content.guardianapis.com/search"
+                + "?ids=politics%2F2019%2Fmay%2F11%2Fa%2Cworld%2F2019%2Fmay%2F12%2Fb"
+                + "&show-fields=bodyText", request.getUrl());
+        assertEquals("Long body", newsStories.get(0).getBodyText());
+    }
+
+    @Test
+    public void idOf_returnsThePathOfTheWebUrl() {
+        assertEquals("politics/2019/may/11/a",
+                GuardianRequest.idOf("https://www.theguardian.com/politics/2019/may/11/a"));
+        assertEquals("world/live",
+                GuardianRequest.idOf("https://www.theguardian.com/world/live?page=2"));
+        assertNull(GuardianRequest.idOf("https://www.theguardian.com/"));
+        assertNull(GuardianRequest.idOf("https://www.theguardian.com"));
+    }
+
+    @Test
+    public void queryKeyOf_ignoresTheOrderCasePageAndApiKey() {
+        String url = new GuardianRequest.Builder()
+                .query("UK Politics ")
+                .orderBy("newest")
+                .pageSize(20)
+                .apiKey("test")
+                .build().getUrl();
+        String reordered = "http://content.guardianapis.com/search?page-size=20"
+                + "&order-by=newest&page=2&q=uk+politics&api-key=other";
+
+        assertEquals("http://content.guardianapis.com/search?order-by=newest&page-size=20"
+                + "&q=uk+politics", GuardianRequest.queryKeyOf(url));
+        assertEquals(GuardianRequest.queryKeyOf(url), GuardianRequest.queryKeyOf(reordered));
+        assertNotEquals(GuardianRequest.queryKeyOf(url),
+                GuardianRequest.queryKeyOf(url.replace("newest", "oldest")));
+    }
+
+    @Test
+    public void withPage_replacesThePageOfTheUrl() {
+        String url = new GuardianRequest.Builder()
+                .query("debates")
+                .pageSize(20)
+                .apiKey("test")
+                .build().getUrl();
+
+        assertEquals(GuardianRequest.SEARCH_URL + "?q=debates&page-size=20&api-key=test&page=2",
+                GuardianRequest.withPage(url, 2));
+        assertEquals(GuardianRequest.withPage(url, 3),
+                GuardianRequest.withPage(GuardianRequest.withPage(url, 2), 3));
+        assertEquals(GuardianRequest.SEARCH_URL + "?page=2",
+                GuardianRequest.withPage(GuardianRequest.SEARCH_URL, 2));
+    }
+}
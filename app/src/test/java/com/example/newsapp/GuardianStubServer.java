@@ -0,0 +1,313 @@
+package com.example.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for the Guardian search endpoint, serving a fixed response body.
+ * <p>
+ * It honours gzip and conditional requests like the real API, and records each request it
+ * sees so tests can check what the client sent. Requests to other paths, like the connection
+ * warm-up, are recorded and answered with an empty JSON object. Faults can be queued to
+ * answer the next requests with an error status or a dropped connection instead.
+ * <p>
+ * For load tests, the latency can vary, the body can trickle in at a given bandwidth, and a
+ * fraction of the requests can fail at random with a server error, a malformed body or a
+ * dropped connection.
+ */
+class GuardianStubServer {
+
+    static final String SEARCH_PATH = "/search";
+
+    private final HttpServer mServer;
+
+    private final List<RecordedRequest> mRequests = new CopyOnWriteArrayList<>();
+
+    /**
+     * Faults to answer the next requests with, in order.
+     */
+    private final Queue<Fault> mFaults = new ConcurrentLinkedQueue<>();
+
+    private volatile byte[] mBody;
+
+    private volatile String mETag;
+
+    private volatile long mDelayMillis;
+
+    private volatile long mDelayJitterMillis;
+
+    /**
+     * Rate the body is sent at, or 0 to send it at once.
+     */
+    private volatile int mBytesPerSecond;
+
+    private volatile double mServerErrorRate;
+
+    private volatile double mMalformedRate;
+
+    private volatile double mDisconnectRate;
+
+    private volatile boolean mRecording = true;
+
+    private final Random mRandom = new Random(1);
+
+    /**
+     * Start a server on a free local port serving the given response body.
+     */
+    GuardianStubServer(byte[] body) throws IOException {
+        mBody = body;
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext(SEARCH_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                record(exchange);
+                byte[] body = "{}".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+    }
+
+    /**
+     * Return the URL of the search endpoint with the given query string.
+     */
+    String url(String query) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + SEARCH_PATH
+                + (query.isEmpty() ? "" : "?" + query);
+    }
+
+    /**
+     * Serve the given body from now on, with the given ETag or none if null.
+     */
+    void setBody(byte[] body, String eTag) {
+        mBody = body;
+        mETag = eTag;
+    }
+
+    /**
+     * Wait the given time before answering each request, like a slow server.
+     */
+    void setDelayMillis(long delayMillis) {
+        mDelayMillis = delayMillis;
+    }
+
+    /**
+     * Wait up to the given time more, drawn at random, before answering each request.
+     */
+    void setDelayJitterMillis(long jitterMillis) {
+        mDelayJitterMillis = jitterMillis;
+    }
+
+    /**
+     * Send the body at the given number of bytes per second, in small chunks like a slow
+     * network, or at once if 0.
+     */
+    void setBytesPerSecond(int bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Answer the given fractions of the requests, drawn at random, with a 503 error, a body
+     * cut short and garbled, or a dropped connection.
+     */
+    void setFaultRates(double serverErrorRate, double malformedRate, double disconnectRate) {
+        mServerErrorRate = serverErrorRate;
+        mMalformedRate = malformedRate;
+        mDisconnectRate = disconnectRate;
+    }
+
+    /**
+     * Whether to record the requests, which a long run should stop so they don't pile up.
+     */
+    void setRecording(boolean recording) {
+        mRecording = recording;
+    }
+
+    /**
+     * Answer the next request not yet answered by a fault with the given error status, and
+     * the given Retry-After header or none if null.
+     */
+    void enqueueError(int status, String retryAfter) {
+        mFaults.add(new Fault(status, retryAfter));
+    }
+
+    /**
+     * Drop the connection of the next request not yet answered by a fault, without answering.
+     */
+    void enqueueDisconnect() {
+        mFaults.add(new Fault(0, null));
+    }
+
+    List<RecordedRequest> requests() {
+        return mRequests;
+    }
+
+    void stop() {
+        mServer.stop(0);
+    }
+
+    private void record(HttpExchange exchange) {
+        if (!mRecording) {
+            return;
+        }
+        mRequests.add(new RecordedRequest(exchange.getRequestMethod(),
+                exchange.getRequestURI().toString(), exchange.getRemoteAddress().getPort(),
+                exchange.getRequestHeaders().getFirst("Accept-Encoding"),
+                exchange.getRequestHeaders().getFirst("If-None-Match")));
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        record(exchange);
+
+        long delayMillis = mDelayMillis;
+        if (mDelayJitterMillis > 0) {
+            delayMillis += (long) (nextRandom() * mDelayJitterMillis);
+        }
+        sleep(delayMillis);
+
+        Fault fault = mFaults.poll();
+        boolean malformed = false;
+        if (fault == null) {
+            double draw = nextRandom();
+            if (draw < mServerErrorRate) {
+                fault = new Fault(503, null);
+            } else if (draw < mServerErrorRate + mDisconnectRate) {
+                fault = new Fault(0, null);
+            } else {
+                malformed = draw < mServerErrorRate + mDisconnectRate + mMalformedRate;
+            }
+        }
+        if (fault != null) {
+            if (fault.status == 0) {
+                // The server closes the socket of a failed exchange without a response,
+                // like a connection reset.
+                throw new IOException("Dropped connection");
+            }
+            if (fault.retryAfter != null) {
+                exchange.getResponseHeaders().set("Retry-After", fault.retryAfter);
+            }
+            exchange.sendResponseHeaders(fault.status, -1);
+            exchange.close();
+            return;
+        }
+
+        String eTag = mETag;
+        if (eTag != null) {
+            exchange.getResponseHeaders().set("ETag", eTag);
+            if (eTag.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+
+        byte[] body = mBody;
+        if (malformed) {
+            // Cut the body in the middle of a result and close it with a stray token.
+            ByteArrayOutputStream garbled = new ByteArrayOutputStream();
+            garbled.write(body, 0, body.length / 2);
+            garbled.write("\": : ]}".getBytes("UTF-8"));
+            body = garbled.toByteArray();
+        }
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(body);
+            gzip.close();
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        int bytesPerSecond = mBytesPerSecond;
+        if (bytesPerSecond <= 0) {
+            out.write(body);
+        } else {
+            // Send a chunk every 20 ms.
+            int chunkSize = Math.max(1, bytesPerSecond / 50);
+            for (int offset = 0; offset < body.length; offset += chunkSize) {
+                out.write(body, offset, Math.min(chunkSize, body.length - offset));
+                out.flush();
+                sleep(20);
+            }
+        }
+        out.close();
+    }
+
+    private double nextRandom() {
+        synchronized (mRandom) {
+            return mRandom.nextDouble();
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An error answer to a request, or a dropped connection if the status is 0.
+     */
+    private static final class Fault {
+        final int status;
+        final String retryAfter;
+
+        Fault(int status, String retryAfter) {
+            this.status = status;
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    /**
+     * What the client sent with one request.
+     */
+    static final class RecordedRequest {
+        final String method;
+        final String uri;
+        final int clientPort;
+        final String acceptEncoding;
+        final String ifNoneMatch;
+
+        RecordedRequest(String method, String uri, int clientPort, String acceptEncoding,
+                        String ifNoneMatch) {
+            this.method = method;
+            this.uri = uri;
+            this.clientPort = clientPort;
+            this.acceptEncoding = acceptEncoding;
+            this.ifNoneMatch = ifNoneMatch;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the caching, cancellation and prefetching of {@link ImagePipeline} against a local
+ * image server, with a decoder that only records the size it decoded for.
+ */
+public class ImagePipelineTest {
+
+    private static final int IMAGE_BYTES = 4096;
+
+    /**
+     * A decoded image, the size of the bytes it was decoded from.
+     */
+    private static final class FakeImage {
+        final int width;
+        final int height;
+        final int size;
+
+        FakeImage(int width, int height, int size) {
+            this.width = width;
+            this.height = height;
+            this.size = size;
+        }
+    }
+
+    private static final ImagePipeline.Decoder<FakeImage> DECODER =
+            new ImagePipeline.Decoder<FakeImage>() {
+                @Override
+                public FakeImage decode(byte[] bytes, int width, int height) {
+                    return new FakeImage(width, height, bytes.length);
+                }
+
+                @Override
+                public int sizeOf(FakeImage image) {
+                    return image.size;
+                }
+            };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private ImageStubServer mServer;
+
+    private DiskLruCache mDiskCache;
+
+    /**
+     * Callbacks posted to the "main thread", run by the test with {@link #nextDelivery()}.
+     */
+    private final BlockingQueue<Runnable> mMainThread = new LinkedBlockingQueue<>();
+
+    private final BlockingQueue<Object> mDelivered = new LinkedBlockingQueue<>();
+
+    private final ImagePipeline.Target<FakeImage> mTarget = new ImagePipeline.Target<FakeImage>() {
+        @Override
+        public void onImageLoaded(FakeImage image) {
+            mDelivered.add(image != null ? image : "failed");
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new ImageStubServer(new byte[IMAGE_BYTES]);
+        mDiskCache = new DiskLruCache(mFolder.newFolder(), 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    private ImagePipeline<FakeImage> newPipeline(long maxMemoryBytes) {
+        return new ImagePipeline<>(DECODER, mDiskCache, maxMemoryBytes, new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                mMainThread.add(runnable);
+            }
+        });
+    }
+
+    /**
+     * Run the next callback posted to the main thread and return what it delivered.
+     */
+    private Object nextDelivery() throws InterruptedException {
+        Runnable callback = mMainThread.poll(5, TimeUnit.SECONDS);
+        assertNotNull("Nothing was delivered", callback);
+        callback.run();
+        return mDelivered.poll();
+    }
+
+    @Test
+    public void load_decodesForTheTargetSizeAndKeepsItInMemory() throws InterruptedException {
+        ImagePipeline<FakeImage> pipeline = newPipeline(1024 * 1024);
+
+        pipeline.load(mServer.url("a.jpg"), 300, 180, mTarget);
+        FakeImage image = (FakeImage) nextDelivery();
+
+        assertEquals(300, image.width);
+        assertEquals(180, image.height);
+        assertSame(image, pipeline.getCached(mServer.url("a.jpg"), 300, 180));
+        assertNull(pipeline.getCached(mServer.url("a.jpg"), 600, 360));
+        assertEquals(IMAGE_BYTES, pipeline.getMemoryBytes());
+    }
+
+    @Test
+    public void load_decodesAgainFromDiskAfterMemoryEviction() throws InterruptedException {
+        // Too small to hold a single image.
+        ImagePipeline<FakeImage> pipeline = newPipeline(IMAGE_BYTES - 1);
+
+        pipeline.load(mServer.url("a.jpg"), 300, 180, mTarget);
+        assertNotNull(nextDelivery());
+        assertNull(pipeline.getCached(mServer.url("a.jpg"), 300, 180));
+        pipeline.load(mServer.url("a.jpg"), 300, 180, mTarget);
+        assertNotNull(nextDelivery());
+
+        assertEquals(1, mServer.requests().size());
+    }
+
+    @Test
+    public void memoryCache_evictsLeastRecentlyUsedPastItsSize() throws InterruptedException {
+        ImagePipeline<FakeImage> pipeline = newPipeline(2 * IMAGE_BYTES + IMAGE_BYTES / 2);
+
+        for (String name : new String[]{"a.jpg", "b.jpg"}) {
+            pipeline.load(mServer.url(name), 300, 180, mTarget);
+            nextDelivery();
+        }
+        // Using "a" makes "b" the least recently used.
+        assertNotNull(pipeline.getCached(mServer.url("a.jpg"), 300, 180));
+        pipeline.load(mServer.url("c.jpg"), 300, 180, mTarget);
+        nextDelivery();
+
+        assertEquals(2 * IMAGE_BYTES, pipeline.getMemoryBytes());
+        assertNotNull(pipeline.getCached(mServer.url("a.jpg"), 300, 180));
+        assertNull(pipeline.getCached(mServer.url("b.jpg"), 300, 180));
+        assertNotNull(pipeline.getCached(mServer.url("c.jpg"), 300, 180));
+    }
+
+    @Test
+    public void cancel_skipsLoadsThatHaveNotStarted() throws InterruptedException {
+        ImagePipeline<FakeImage> pipeline = newPipeline(1024 * 1024);
+        mServer.setDelayMillis(200);
+
+        // Keep every load thread busy, then queue a load and cancel it, like a row that
+        // scrolled past before its thumbnail started loading.
+        for (int i = 0; i < 3; i++) {
+            pipeline.load(mServer.url("busy" + i + ".jpg"), 300, 180, mTarget);
+        }
+        ImagePipeline.Request recycled =
+                pipeline.load(mServer.url("recycled.jpg"), 300, 180, mTarget);
+        recycled.cancel();
+        pipeline.load(mServer.url("visible.jpg"), 300, 180, mTarget);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(nextDelivery() instanceof FakeImage);
+        }
+        assertNull(mMainThread.poll(300, TimeUnit.MILLISECONDS));
+        assertFalse(mServer.requests().contains(ImageStubServer.IMAGES_PATH + "recycled.jpg"));
+        assertEquals(4, mServer.requests().size());
+    }
+
+    @Test
+    public void cancel_dropsLoadsThatAlreadyFinished() throws InterruptedException {
+        ImagePipeline<FakeImage> pipeline = newPipeline(1024 * 1024);
+
+        ImagePipeline.Request request = pipeline.load(mServer.url("a.jpg"), 300, 180, mTarget);
+        Runnable callback = mMainThread.poll(5, TimeUnit.SECONDS);
+        request.cancel();
+        callback.run();
+
+        assertNull(mDelivered.poll());
+    }
+
+    @Test
+    public void prefetch_makesTheLoadAMemoryHit() throws InterruptedException {
+        ImagePipeline<FakeImage> pipeline = newPipeline(1024 * 1024);
+
+        pipeline.prefetch(mServer.url("a.jpg"), 300, 180);
+        // Prefetching the same image again while it loads doesn't download it twice.
+        pipeline.prefetch(mServer.url("a.jpg"), 300, 180);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getCached(mServer.url("a.jpg"), 300, 180) == null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertNotNull(pipeline.getCached(mServer.url("a.jpg"), 300, 180));
+        assertEquals(1, mServer.requests().size());
+    }
+
+    @Test
+    public void load_joinsAPrefetchOfTheSameImage() throws InterruptedException {
+        ImagePipeline<FakeImage> pipeline = newPipeline(1024 * 1024);
+        mServer.setDelayMillis(200);
+
+        // "a" is being prefetched, "b" waits behind it on the prefetch thread.
+        pipeline.prefetch(mServer.url("a.jpg"), 300, 180);
+        pipeline.prefetch(mServer.url("b.jpg"), 300, 180);
+        pipeline.load(mServer.url("a.jpg"), 300, 180, mTarget);
+        pipeline.load(mServer.url("b.jpg"), 300, 180, mTarget);
+
+        assertTrue(nextDelivery() instanceof FakeImage);
+        assertTrue(nextDelivery() instanceof FakeImage);
+        assertEquals(2, mServer.requests().size());
+        assertTrue(mServer.requests().contains(ImageStubServer.IMAGES_PATH + "a.jpg"));
+        assertTrue(mServer.requests().contains(ImageStubServer.IMAGES_PATH + "b.jpg"));
+    }
+
+    @Test
+    public void prefetch_runsBelowThePriorityOfTheLoads() throws InterruptedException {
+        final BlockingQueue<Integer> priorities = new LinkedBlockingQueue<>();
+        ImagePipeline<FakeImage> pipeline = new ImagePipeline<>(
+                new ImagePipeline.Decoder<FakeImage>() {
+                    @Override
+                    public FakeImage decode(byte[] bytes, int width, int height) {
+                        priorities.add(Thread.currentThread().getPriority());
+                        return DECODER.decode(bytes, width, height);
+                    }
+
+                    @Override
+                    public int sizeOf(FakeImage image) {
+                        return DECODER.sizeOf(image);
+                    }
+                }, mDiskCache, 1024 * 1024, new Executor() {
+                    @Override
+                    public void execute(Runnable runnable) {
+                        mMainThread.add(runnable);
+                    }
+                });
+
+        pipeline.load(mServer.url("a.jpg"), 300, 180, mTarget);
+        nextDelivery();
+        int loadPriority = priorities.poll(5, TimeUnit.SECONDS);
+        pipeline.prefetch(mServer.url("b.jpg"), 300, 180);
+        int prefetchPriority = priorities.poll(5, TimeUnit.SECONDS);
+
+        assertTrue(loadPriority < Thread.NORM_PRIORITY);
+        assertEquals(Thread.MIN_PRIORITY, prefetchPriority);
+    }
+
+    @Test
+    public void load_deliversNullWhenTheDownloadFails() throws InterruptedException {
+        ImagePipeline<FakeImage> pipeline = newPipeline(1024 * 1024);
+
+        pipeline.load(mServer.url("missing.jpg"), 300, 180, mTarget);
+
+        assertEquals("failed", nextDelivery());
+    }
+
+    @Test
+    public void sampleSize_keepsImageAtLeastAsLargeAsRequested() {
+        assertEquals(1, ImagePipeline.sampleSize(500, 300, 300, 180));
+        assertEquals(2, ImagePipeline.sampleSize(1000, 600, 300, 180));
+        assertEquals(4, ImagePipeline.sampleSize(2000, 1200, 300, 180));
+        assertEquals(2, ImagePipeline.sampleSize(2000, 400, 300, 180));
+        assertEquals(1, ImagePipeline.sampleSize(500, 300, 0, 0));
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+/**
+ * A local stand-in for the Guardian image server. Every image path serves the same bytes,
+ * and the requested paths are recorded so tests can count the downloads.
+ */
+class ImageStubServer {
+
+    static final String IMAGES_PATH = "/images/";
+
+    private final HttpServer mServer;
+
+    private final List<String> mRequests = new CopyOnWriteArrayList<>();
+
+    private final byte[] mBody;
+
+    private volatile long mDelayMillis;
+
+    /**
+     * Start a server on a free local port serving the given image bytes.
+     */
+    ImageStubServer(byte[] body) throws IOException {
+        mBody = body;
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext(IMAGES_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+    }
+
+    /**
+     * Return the URL of the image with the given name. Names starting with "missing" are
+     * answered with "404 Not Found".
+     */
+    String url(String name) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + IMAGES_PATH + name;
+    }
+
+    /**
+     * Wait the given time before answering each request, like a slow server.
+     */
+    void setDelayMillis(long delayMillis) {
+        mDelayMillis = delayMillis;
+    }
+
+    /**
+     * @return the paths of the requests received so far.
+     */
+    List<String> requests() {
+        return mRequests;
+    }
+
+    void stop() {
+        mServer.stop(0);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        mRequests.add(path);
+
+        if (mDelayMillis > 0) {
+            try {
+                Thread.sleep(mDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (path.startsWith(IMAGES_PATH + "missing")) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+        exchange.sendResponseHeaders(200, mBody.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(mBody);
+        out.close();
+    }
+}
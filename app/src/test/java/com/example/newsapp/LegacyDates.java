@@ -0,0 +1,28 @@
+package com.example.newsapp;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+/**
+ * The date formatting the adapter used to do while binding each row, kept as the reference
+ * the benchmarks measure {@link NewsDates} against.
+ */
+final class LegacyDates {
+
+    private LegacyDates() {
+    }
+
+    /**
+     * Reformat the given date or time string from the input format to the output format.
+     *
+     * @return the reformatted string, or null if it can't be parsed.
+     */
+    static String reformat(String input, SimpleDateFormat inputFormat,
+                           SimpleDateFormat outputFormat) {
+        try {
+            return outputFormat.format(inputFormat.parse(input));
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.newsapp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    @Test
+    public void histogram_reportsBucketUpperBounds() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        assertEquals(100, histogram.getMax());
+        // 50 falls in the bucket of 32..63, 99 in the bucket of 64..127 capped at the max.
+        assertEquals(63, histogram.getPercentile(0.5));
+        assertEquals(100, histogram.getPercentile(0.99));
+    }
+
+    @Test
+    public void dump_listsEveryMetric() throws IOException {
+        Metrics.counter("test.counter").increment();
+        Metrics.histogram("test.histogram.us").record(0);
+
+        StringWriter snapshot = new StringWriter();
+        Metrics.dump(snapshot);
+
+        assertTrue(snapshot.toString().contains("test.counter 1\n"));
+        assertTrue(snapshot.toString().contains("test.histogram.us count=1 "));
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the {@link NewStoriesPoller} only asks the stub Guardian for the stories newer
+ * than the head of the list, keeps them pending until they are taken, and backs off while the
+ * feed is quiet or the user idle.
+ */
+public class NewStoriesPollerTest {
+
+    private GuardianStubServer mServer;
+
+    private String mUrl;
+
+    private FeedStore mNewsStories;
+
+    private NewStoriesPoller mPoller;
+
+    private final List<Integer> mPendingCounts = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException, FetchException {
+        mServer = new GuardianStubServer(GuardianFixtures.responseBytes(50));
+        mUrl = mServer.url("q=debates&order-by=newest&page-size=20");
+        mNewsStories = FeedStore.of(QueryUtils.fetchNewsStories(mUrl));
+        mPoller = new NewStoriesPoller(null, null, new NewStoriesPoller.Listener() {
+            @Override
+            public void onPendingChanged(int pendingCount) {
+                mPendingCounts.add(pendingCount);
+            }
+        });
+        mPoller.setHead(mUrl, mNewsStories);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    /**
+     * Return a response holding the given number of stories published in 2030, newest first,
+     * plus the head of the list, which the inclusive from-date cursor returns again.
+     */
+    private byte[] newerResponse(int count) throws JSONException {
+        News head = mNewsStories.get(newestPosition());
+        JSONArray results = new JSONArray();
+        for (int i = count - 1; i >= 0; i--) {
+            results.put(new JSONObject()
+                    .put("sectionName", "World news")
+                    .put("webPublicationDate", String.format("2030-01-01T00:%02d:00Z", i))
+                    .put("webTitle", "Newer story " + i)
+                    .put("webUrl", "https://www.theguardian.com/newer-" + i));
+        }
+        results.put(new JSONObject()
+                .put("sectionName", head.getNewsSection())
+                .put("webPublicationDate", head.getTime())
+                .put("webTitle", head.getNewsTitle())
+                .put("webUrl", head.getUrl()));
+        JSONObject response = new JSONObject()
+                .put("response", new JSONObject().put("status", "ok").put("results", results));
+        return response.toString().getBytes();
+    }
+
+    private int newestPosition() {
+        int newest = 0;
+        for (int i = 1; i < mNewsStories.size(); i++) {
+            if (mNewsStories.getTimeInMillis(i) > mNewsStories.getTimeInMillis(newest)) {
+                newest = i;
+            }
+        }
+        return newest;
+    }
+
+    @Test
+    public void pollNow_keepsTheNewerStoriesPending() throws JSONException {
+        long headTime = mNewsStories.getTimeInMillis(newestPosition());
+        mServer.setBody(newerResponse(3), null);
+
+        mPoller.pollNow();
+
+        String pollUri = mServer.requests().get(1).uri;
+        assertTrue(pollUri, pollUri.contains("from-date="
+                + NewsDates.formatIsoTime(headTime).replace(":", "%3A")));
+        assertEquals(3, mPoller.getPendingCount());
+        assertEquals(1, mPendingCounts.size());
+
+        // The next poll starts after the newest pending story, and only adds the new ones.
+        mServer.setBody(newerResponse(5), null);
+        mPoller.pollNow();
+
+        String nextPollUri = mServer.requests().get(2).uri;
+        assertTrue(nextPollUri, nextPollUri.contains("from-date=2030-01-01T00%3A02%3A00Z"));
+        assertEquals(5, mPoller.getPendingCount());
+        FeedStore pending = mPoller.takePending();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("Newer story " + (4 - i), pending.getNewsTitle(i));
+        }
+        assertEquals(0, mPoller.getPendingCount());
+        assertEquals(3, mPendingCounts.size());
+    }
+
+    @Test
+    public void setHead_dropsThePendingStoriesTheListShows() throws JSONException {
+        mServer.setBody(newerResponse(3), null);
+        mPoller.pollNow();
+
+        // The list shows the first of them after a reload.
+        FeedStore reloaded = FeedStore.of(mPoller.takePending().toList().subList(0, 1))
+                .newBuilder().addAllNew(mNewsStories, NewsLoader.MAX_STORIES).build();
+        mPoller.pollNow();
+        assertEquals(0, mPoller.getPendingCount());
+        mServer.setBody(newerResponse(4), null);
+        mPoller.pollNow();
+        assertEquals(1, mPoller.getPendingCount());
+
+        mPoller.setHead(mUrl, reloaded);
+        assertEquals(1, mPoller.getPendingCount());
+        assertEquals("Newer story 3", mPoller.takePending().getNewsTitle(0));
+
+        // Another query starts over, and other orders aren't polled at all.
+        mServer.setBody(newerResponse(1), null);
+        mPoller.pollNow();
+        mPoller.setHead(mServer.url("q=debates&order-by=relevance"), mNewsStories);
+        assertEquals(0, mPoller.getPendingCount());
+        int requestCount = mServer.requests().size();
+        mPoller.pollNow();
+        assertEquals(requestCount, mServer.requests().size());
+    }
+
+    @Test
+    public void pollNow_skipsTheStoriesAlreadySeen() throws JSONException {
+        SeenStore seenStore = new SeenStore(null);
+        seenStore.markSeen("https://www.theguardian.com/newer-1");
+        mPoller.setSeenStore(seenStore);
+        mServer.setBody(newerResponse(3), null);
+
+        mPoller.pollNow();
+
+        FeedStore pending = mPoller.takePending();
+        assertEquals(2, pending.size());
+        assertEquals("Newer story 2", pending.getNewsTitle(0));
+        assertEquals("Newer story 0", pending.getNewsTitle(1));
+    }
+
+    @Test
+    public void intervalMillis_backsOffWhileQuietOrIdle() {
+        assertEquals(NewStoriesPoller.MIN_INTERVAL_MILLIS,
+                NewStoriesPoller.intervalMillis(0, 0));
+        assertEquals(2 * NewStoriesPoller.MIN_INTERVAL_MILLIS,
+                NewStoriesPoller.intervalMillis(1, 0));
+        assertEquals(8 * NewStoriesPoller.MIN_INTERVAL_MILLIS,
+                NewStoriesPoller.intervalMillis(3, 0));
+        assertEquals(NewStoriesPoller.MAX_INTERVAL_MILLIS,
+                NewStoriesPoller.intervalMillis(100, 0));
+        assertEquals(NewStoriesPoller.MAX_INTERVAL_MILLIS,
+                NewStoriesPoller.intervalMillis(0, NewStoriesPoller.IDLE_AFTER_MILLIS));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the work of binding a news row before and after the display fields were
+ * precomputed: formatting the date and time of a {@link News} on every bind, as the adapter
+ * used to, against reading the row from a {@link FeedStore} the way
+ * {@link NewsAdapter#onBindViewHolder} does.
+ */
+public class NewsBindBenchmarkTest {
+
+    private static final int WARMUP_BINDS = 20000;
+    private static final int MEASURED_BINDS = 20000;
+
+    /**
+     * Sink for the bound text so the JIT can't drop the work.
+     */
+    private long mBound;
+
+    /**
+     * Title chars reused across binds, like a view holder's.
+     */
+    private char[] mTitleChars = new char[128];
+
+    @Test
+    public void news_precomputesTimestamp() {
+        News news = new News("Politics", "Title", "2019-05-11T05:00:12Z", "https://example.com");
+        assertEquals(1557550812000L, news.getTimeInMillis());
+        assertTrue(news.getDisplayDate().contains("2019"));
+        assertTrue(news.getDisplayTime().length() > 0);
+    }
+
+    @Test
+    public void storeBind_allocatesNothingUnlikeFormattingOnBind() throws IOException {
+        List<News> newsStories = NewsJsonParser.parse(
+                new ByteArrayInputStream(GuardianFixtures.responseBytes(50)));
+        FeedStore feed = FeedStore.of(newsStories);
+
+        long formatOnBind = measure(newsStories, feed, true);
+        long storeBind = measure(newsStories, feed, false);
+
+        if (formatOnBind >= 0) {
+            assertEquals(0, storeBind);
+            assertTrue(formatOnBind > 0);
+        }
+    }
+
+    /**
+     * Bind every story repeatedly and return the bytes allocated per bind, or -1 if the JVM
+     * can't tell.
+     */
+    private long measure(List<News> newsStories, FeedStore feed, boolean formatOnBind) {
+        for (int i = 0; i < WARMUP_BINDS; i++) {
+            bind(newsStories, feed, i % feed.size(), formatOnBind);
+        }
+        long startBytes = Allocations.allocatedBytes();
+        for (int i = 0; i < MEASURED_BINDS; i++) {
+            bind(newsStories, feed, i % feed.size(), formatOnBind);
+        }
+        long endBytes = Allocations.allocatedBytes();
+        return startBytes < 0 ? -1 : (endBytes - startBytes) / MEASURED_BINDS;
+    }
+
+    private void bind(List<News> newsStories, FeedStore feed, int position,
+                      boolean formatOnBind) {
+        if (formatOnBind) {
+            // What NewsAdapter.getView used to do for every row.
+            News news = newsStories.get(position);
+            String[] parts = news.getTime().split("(T)|(Z)");
+            String date = LegacyDates.reformat(parts[0], new SimpleDateFormat("yyyy-MM-dd"),
+                    new SimpleDateFormat("LLL dd, yyyy"));
+            String time = LegacyDates.reformat(parts[1], new SimpleDateFormat("hh:mm:ss"),
+                    new SimpleDateFormat("h:mm a"));
+            mBound += news.getNewsSection().length() + news.getNewsTitle().length()
+                    + date.length() + time.length();
+        } else {
+            // What NewsAdapter.onBindViewHolder reads, but the thumbnail.
+            int titleMaxLength = feed.getTitleMaxLength(position);
+            if (mTitleChars.length < titleMaxLength) {
+                mTitleChars = new char[titleMaxLength];
+            }
+            mBound += feed.getNewsSection(position).length()
+                    + feed.getNewsTitle(position, mTitleChars)
+                    + feed.getDisplayDate(position).length()
+                    + feed.getDisplayTime(position).length()
+                    + feed.getUrlHash(position);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that revalidating a cached newest-first query only loads the newer news stories.
+ */
+public class NewsCacheDeltaSyncTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private GuardianStubServer mServer;
+
+    private DiskLruCache mDiskCache;
+
+    private NewsCache mCache;
+
+    private String mUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new GuardianStubServer(GuardianFixtures.responseBytes(50));
+        mDiskCache = new DiskLruCache(mFolder.newFolder(), 1024 * 1024);
+        mCache = new NewsCache(mDiskCache);
+        mUrl = mServer.url("q=debates&order-by=newest&page-size=20");
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    /**
+     * Return a response holding the given number of stories published in 2030, plus the
+     * given cached story, which the inclusive from-date cursor returns again.
+     */
+    private static byte[] newerResponse(int count, News cursorStory) throws JSONException {
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            results.put(new JSONObject()
+                    .put("sectionName", "World news")
+                    .put("webPublicationDate", String.format("2030-01-01T00:%02d:00Z", 59 - i))
+                    .put("webTitle", "Newer story " + i)
+                    .put("webUrl", "https://www.theguardian.com/newer-" + i));
+        }
+        results.put(new JSONObject()
+                .put("sectionName", cursorStory.getNewsSection())
+                .put("webPublicationDate", cursorStory.getTime())
+                .put("webTitle", cursorStory.getNewsTitle())
+                .put("webUrl", cursorStory.getUrl()));
+        JSONObject response = new JSONObject()
+                .put("response", new JSONObject().put("status", "ok").put("results", results));
+        return response.toString().getBytes();
+    }
+
+    private static News newest(List<News> newsStories) {
+        News newest = newsStories.get(0);
+        for (News news : newsStories) {
+            if (news.getTimeInMillis() > newest.getTimeInMillis()) {
+                newest = news;
+            }
+        }
+        return newest;
+    }
+
+    @Test
+    public void revalidate_onlyLoadsNewerStories() throws JSONException, IOException {
+        NewsCache.Entry first = mCache.revalidate(mUrl, null);
+        News cursorStory = newest(first.getNewsStories());
+        mServer.setBody(newerResponse(2, cursorStory), null);
+
+        NewsCache.Entry second = mCache.revalidate(mUrl, first);
+
+        String deltaUri = mServer.requests().get(1).uri;
+        assertFalse(mServer.requests().get(0).uri.contains("from-date"));
+        assertTrue(deltaUri, deltaUri.contains("from-date="
+                + NewsDates.formatIsoTime(cursorStory.getTimeInMillis()).replace(":", "%3A")));
+        assertEquals(52, second.getNewsStories().size());
+        assertEquals("Newer story 0", second.getNewsStories().get(0).getNewsTitle());
+        assertEquals("Newer story 1", second.getNewsStories().get(1).getNewsTitle());
+        assertEquals(first.getNewsStories(), second.getNewsStories().subList(2, 52));
+        assertEquals(second.getNewsStories(), mCache.get(mUrl).getNewsStories());
+    }
+
+    @Test
+    public void revalidate_dropsOldestStoriesPastRetentionCap()
+            throws JSONException, IOException {
+        mServer.setBody(GuardianFixtures.responseBytes(NewsCache.MAX_RETAINED_STORIES), null);
+        NewsCache.Entry first = mCache.revalidate(mUrl, null);
+        mServer.setBody(newerResponse(5, newest(first.getNewsStories())), null);
+
+        List<News> newsStories = mCache.revalidate(mUrl, first).getNewsStories();
+
+        assertEquals(NewsCache.MAX_RETAINED_STORIES, newsStories.size());
+        assertEquals("Newer story 0", newsStories.get(0).getNewsTitle());
+        assertEquals(first.getNewsStories().get(NewsCache.MAX_RETAINED_STORIES - 6),
+                newsStories.get(NewsCache.MAX_RETAINED_STORIES - 1));
+    }
+
+    @Test
+    public void revalidate_startsOverAfterAFullPageOfNewerStories()
+            throws JSONException, IOException {
+        NewsCache.Entry first = mCache.revalidate(mUrl, null);
+        mServer.setBody(newerResponse(NewsLoader.PAGE_SIZE, newest(first.getNewsStories())),
+                null);
+
+        List<News> newsStories = mCache.revalidate(mUrl, first).getNewsStories();
+
+        assertEquals(NewsLoader.PAGE_SIZE + 1, newsStories.size());
+    }
+
+    @Test
+    public void revalidate_keepsTheCachedStoriesBehindLessThanAPageOfNewOnes()
+            throws JSONException, IOException {
+        NewsCache.Entry first = mCache.revalidate(mUrl, null);
+        mServer.setBody(newerResponse(NewsLoader.PAGE_SIZE - 1, newest(first.getNewsStories())),
+                null);
+
+        List<News> newsStories = mCache.revalidate(mUrl, first).getNewsStories();
+
+        // The cursor story comes again but isn't new, so the page isn't full of new stories.
+        assertEquals(50 + NewsLoader.PAGE_SIZE - 1, newsStories.size());
+        assertEquals(first.getNewsStories(),
+                newsStories.subList(NewsLoader.PAGE_SIZE - 1, newsStories.size()));
+    }
+
+    @Test
+    public void revalidate_comparesWithThePageSizeOfTheRequest()
+            throws JSONException, IOException {
+        String url = mServer.url("q=debates&order-by=newest&page-size=10");
+        NewsCache.Entry first = mCache.revalidate(url, null);
+        mServer.setBody(newerResponse(10, newest(first.getNewsStories())), null);
+
+        List<News> newsStories = mCache.revalidate(url, first).getNewsStories();
+
+        assertEquals(11, newsStories.size());
+    }
+
+    @Test
+    public void revalidate_keepsTheStoriesAndValidatorsWhenNothingIsNew()
+            throws JSONException, IOException {
+        NewsCache.Entry loaded = mCache.revalidate(mUrl, null);
+        NewsCache.Entry first = mCache.put(mUrl, loaded.getNewsStories(), "\"v1\"", null);
+        mServer.setBody(newerResponse(0, newest(first.getNewsStories())), null);
+
+        NewsCache.Entry second = mCache.revalidate(mUrl, first);
+
+        assertEquals(first.getNewsStories(), second.getNewsStories());
+        assertEquals("\"v1\"", mCache.get(mUrl).getETag());
+        assertTrue(mCache.get(mUrl).getSavedAt() >= first.getSavedAt());
+    }
+
+    @Test
+    public void revalidate_renewsTheTimeToLiveWhenNothingIsNew()
+            throws JSONException, IOException {
+        List<News> loaded = mCache.revalidate(mUrl, null).getNewsStories();
+        mDiskCache.put(mUrl, NewsCache.writeEntry(new NewsCache.Entry(loaded,
+                System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25), "\"v1\"", null)));
+        NewsCache.Entry stale = mCache.get(mUrl, true);
+        assertNull(mCache.get(mUrl));
+        mServer.setBody(newerResponse(0, newest(loaded)), null);
+
+        mCache.revalidate(mUrl, stale);
+
+        NewsCache.Entry entry = mCache.get(mUrl);
+        assertNotNull(entry);
+        assertEquals(loaded, entry.getNewsStories());
+        assertEquals("\"v1\"", entry.getETag());
+    }
+
+    @Test
+    public void revalidate_keepsTheValidatorsOfTheMergedStories()
+            throws JSONException, IOException {
+        NewsCache.Entry loaded = mCache.revalidate(mUrl, null);
+        NewsCache.Entry first = mCache.put(mUrl, loaded.getNewsStories(), "\"v1\"", "Sat");
+        mServer.setBody(newerResponse(2, newest(first.getNewsStories())), null);
+
+        NewsCache.Entry second = mCache.revalidate(mUrl, first);
+
+        assertEquals(52, second.getNewsStories().size());
+        assertEquals("\"v1\"", mCache.get(mUrl).getETag());
+        assertEquals("Sat", mCache.get(mUrl).getLastModified());
+    }
+
+    @Test
+    public void revalidate_loadsEverythingForOtherOrders() throws IOException {
+        String url = mServer.url("q=debates&order-by=relevance");
+        NewsCache.Entry first = mCache.revalidate(url, null);
+
+        mCache.revalidate(url, first);
+
+        assertFalse(mServer.requests().get(1).uri.contains("from-date"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.newsapp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that {@link NewsCache} only returns entries older than its time to live when stale
+ * ones are allowed.
+ */
+public class NewsCacheTest {
+
+    private static final String URL = "https://content.guardianapis.com/search?q=debates";
+
+    private static final List<News> NEWS_STORIES = Collections.singletonList(
+            new News("World news", "Storm hits the coast", "2019-05-11T05:00:12Z",
+                    "https://www.theguardian.com/world/storm"));
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private DiskLruCache mDiskCache;
+
+    private NewsCache mCache;
+
+    @Before
+    public void setUp() throws IOException {
+        mDiskCache = new DiskLruCache(mFolder.newFolder(), 1024 * 1024);
+        mCache = new NewsCache(mDiskCache);
+    }
+
+    /**
+     * Store the news stories as if they were saved the given time ago.
+     */
+    private void putSavedAgo(long millis) throws IOException {
+        mDiskCache.put(URL, NewsCache.writeEntry(new NewsCache.Entry(NEWS_STORIES,
+                System.currentTimeMillis() - millis, "\"v1\"", null)));
+    }
+
+    @Test
+    public void get_returnsAFreshEntry() throws IOException {
+        putSavedAgo(TimeUnit.HOURS.toMillis(23));
+
+        NewsCache.Entry entry = mCache.get(URL);
+
+        assertNotNull(entry);
+        assertEquals(NEWS_STORIES, entry.getNewsStories());
+        assertEquals("\"v1\"", entry.getETag());
+    }
+
+    @Test
+    public void get_skipsAnEntryPastItsTimeToLive() throws IOException {
+        putSavedAgo(TimeUnit.HOURS.toMillis(25));
+
+        assertNull(mCache.get(URL));
+        // Still kept to show when the Guardian can't be reached.
+        NewsCache.Entry stale = mCache.get(URL, true);
+        assertNotNull(stale);
+        assertEquals(NEWS_STORIES, stale.getNewsStories());
+    }
+
+    @Test
+    public void put_storesAFreshEntry() {
+        mCache.put(URL, NEWS_STORIES, null, "Sat, 11 May 2019 05:00:12 GMT");
+
+        NewsCache.Entry entry = mCache.get(URL);
+
+        assertNotNull(entry);
+        assertEquals(NEWS_STORIES, entry.getNewsStories());
+        assertEquals("Sat, 11 May 2019 05:00:12 GMT", entry.getLastModified());
+    }
+}
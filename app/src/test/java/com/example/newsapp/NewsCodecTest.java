@@ -0,0 +1,201 @@
+package com.example.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that {@link NewsCodec} gives back the news stories it encoded, and that decoding a
+ * cached list is cheaper than parsing the response again. The timing only runs with
+ * {@code -Pbenchmark}, like the other benchmarks.
+ */
+public class NewsCodecTest {
+
+    private static final int WARMUP_ITERATIONS = 30;
+    private static final int MEASURED_ITERATIONS = 30;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void decode_returnsTheEncodedStories() throws IOException {
+        List<News> newsStories = Arrays.asList(
+                new News("World news", "Storm hits the coast", "2019-05-11T05:00:12Z",
+                        "https://www.theguardian.com/world/storm",
+                        "https://media.guim.co.uk/storm.jpg"),
+                new News("Politics",
+                        "D\u00e9bat \u00e0 l'Assembl\u00e9e \u2013 \u65e5\u672c\u8a9e",
+                        "2019-05-10T23:59:59Z",
+                        "https://www.theguardian.com/politics/debat"),
+                new News("Politics", "Undated", "not a date",
+                        "https://www.theguardian.com/politics/undated"));
+
+        List<News> decoded = NewsCodec.decode(NewsCodec.encode(newsStories));
+
+        assertEquals(newsStories, decoded);
+        for (int i = 0; i < newsStories.size(); i++) {
+            assertEquals(newsStories.get(i).getTime(), decoded.get(i).getTime());
+            assertEquals(newsStories.get(i).getTimeInMillis(), decoded.get(i).getTimeInMillis());
+            assertEquals(newsStories.get(i).getDisplayDate(), decoded.get(i).getDisplayDate());
+        }
+        assertEquals("https://media.guim.co.uk/storm.jpg", decoded.get(0).getThumbnailUrl());
+        assertNull(decoded.get(1).getThumbnailUrl());
+        assertEquals(0, decoded.get(2).getTimeInMillis());
+    }
+
+    @Test
+    public void decode_returnsAnEmptyList() throws IOException {
+        assertEquals(Collections.<News>emptyList(),
+                NewsCodec.decode(NewsCodec.encode(Collections.<News>emptyList())));
+    }
+
+    @Test
+    public void decode_returnsTheParsedResponse() throws IOException {
+        List<News> parsed = NewsJsonParser.parse(
+                new ByteArrayInputStream(GuardianFixtures.responseBytes(200)));
+        byte[] encoded = NewsCodec.encode(parsed);
+
+        List<News> decoded = NewsCodec.decode(encoded);
+
+        assertEquals(parsed, decoded);
+        assertTrue("encoded " + encoded.length + " B", encoded.length
+                < GuardianFixtures.response(200).getBytes("UTF-8").length / 2);
+        // One String per section name, shared by every story of the section.
+        for (News news : decoded) {
+            if (news.getNewsSection().equals(decoded.get(0).getNewsSection())) {
+                assertSame(decoded.get(0).getNewsSection(), news.getNewsSection());
+            }
+        }
+    }
+
+    @Test
+    public void decode_readsAMappedFile() throws IOException {
+        List<News> parsed = NewsJsonParser.parse(
+                new ByteArrayInputStream(GuardianFixtures.responseBytes(50)));
+        byte[] encoded = NewsCodec.encode(parsed);
+        RandomAccessFile file = new RandomAccessFile(mFolder.newFile(), "rw");
+        try {
+            file.write(encoded);
+            ByteBuffer mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                    encoded.length);
+
+            assertEquals(parsed, NewsCodec.decode(mapped));
+            assertEquals(0, mapped.position());
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void decode_readsADirectBufferFromItsPosition() throws IOException {
+        List<News> parsed = NewsJsonParser.parse(
+                new ByteArrayInputStream(GuardianFixtures.responseBytes(5)));
+        byte[] encoded = NewsCodec.encode(parsed);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length + 3);
+        buffer.put(new byte[3]).put(encoded);
+        buffer.position(3);
+
+        assertEquals(parsed, NewsCodec.decode(buffer));
+        assertEquals(3, buffer.position());
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsAnotherVersion() throws IOException {
+        byte[] encoded = NewsCodec.encode(Collections.<News>emptyList());
+        encoded[4]++;
+        NewsCodec.decode(encoded);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsTruncatedBytes() throws IOException {
+        byte[] encoded = NewsCodec.encode(Arrays.asList(new News("World news", "Storm",
+                "2019-05-11T05:00:12Z", "https://www.theguardian.com/world/storm")));
+        NewsCodec.decode(Arrays.copyOf(encoded, encoded.length - 3));
+    }
+
+    @Test
+    public void decode_rejectsCountsLargerThanTheBytes() {
+        byte[] header = Arrays.copyOf(NewsCodec.encode(Collections.<News>emptyList()), 5);
+        byte[] maxVarint = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x7F};
+        byte[][] damaged = {
+                concat(header, maxVarint, new byte[]{0}),
+                concat(header, new byte[]{0}, maxVarint),
+        };
+        for (byte[] bytes : damaged) {
+            try {
+                NewsCodec.decode(bytes);
+                fail("Decoded damaged counts");
+            } catch (IOException expected) {
+                // Rejected before allocating for the counts.
+            }
+        }
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            bytes.write(part, 0, part.length);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void decode_isCheaperThanParsingTheResponse() throws IOException {
+        assumeTrue("Timings only run with -Pbenchmark", Boolean.getBoolean("benchmark"));
+        byte[] response = GuardianFixtures.responseBytes(1000);
+        byte[] encoded = NewsCodec.encode(
+                NewsJsonParser.parse(new ByteArrayInputStream(response)));
+
+        long[] decode = measure(encoded, true);
+        long[] parse = measure(response, false);
+
+        if (decode[1] >= 0 && parse[1] >= 0) {
+            assertTrue("decode allocated " + decode[1] + " B, parse " + parse[1] + " B",
+                    decode[1] < parse[1]);
+        }
+        assertTrue("decode took " + decode[0] + " ns, parse " + parse[0] + " ns",
+                decode[0] < parse[0]);
+    }
+
+    /**
+     * Return the nanoseconds and bytes allocated, or -1 bytes if the JVM can't tell, of one
+     * decode or parse of the given bytes.
+     */
+    private static long[] measure(byte[] bytes, boolean decode) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            run(bytes, decode);
+        }
+        long startBytes = Allocations.allocatedBytes();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            run(bytes, decode);
+        }
+        long nanos = (System.nanoTime() - startNanos) / MEASURED_ITERATIONS;
+        long endBytes = Allocations.allocatedBytes();
+        long allocated = startBytes < 0 ? -1 : (endBytes - startBytes) / MEASURED_ITERATIONS;
+        return new long[]{nanos, allocated};
+    }
+
+    private static List<News> run(byte[] bytes, boolean decode) throws IOException {
+        return decode
+                ? NewsCodec.decode(bytes)
+                : NewsJsonParser.parse(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks multi-topic fan-out in {@link QueryUtils} against a local Guardian stub server.
+ */
+public class NewsFetchEngineTest {
+
+    private static final long SERVER_DELAY_MILLIS = 300;
+
+    private GuardianStubServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new GuardianStubServer(GuardianFixtures.responseBytes(50));
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void splitTopics_buildsOneUrlPerTopic() {
+        List<String> urls = QueryUtils.splitTopics(
+                "http://host/search?q=uk%20politics%2C+brexit,&orderby=newest&page=2");
+
+        assertEquals(Arrays.asList(
+                "http://host/search?q=uk+politics&orderby=newest&page=2",
+                "http://host/search?q=brexit&orderby=newest&page=2"), urls);
+    }
+
+    @Test
+    public void splitTopics_keepsSingleTopicUrl() {
+        String url = "http://host/search?q=debates&orderby=newest";
+        assertEquals(Arrays.asList(url), QueryUtils.splitTopics(url));
+    }
+
+    @Test
+    public void fetch_queriesTopicsInParallelAndMergesFeed() {
+        mServer.setDelayMillis(SERVER_DELAY_MILLIS);
+
+        // Warm up the client and server so the timing below only measures the queries.
+        QueryUtils.fetchNewsData(mServer.url("q=warmup,warmup2"));
+        int warmupRequests = mServer.requests().size();
+
+        long start = System.nanoTime();
+        List<News> newsStories = QueryUtils.fetchNewsData(mServer.url("q=politics,sport,world"));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(3, mServer.requests().size() - warmupRequests);
+        assertTrue("three topics took " + elapsedMillis + " ms",
+                elapsedMillis < 2 * SERVER_DELAY_MILLIS);
+
+        // Every topic returned the same stories, so each should be in the feed once.
+        assertEquals(50, newsStories.size());
+        Set<String> urls = new HashSet<>();
+        for (int i = 0; i < newsStories.size(); i++) {
+            assertTrue(urls.add(newsStories.get(i).getUrl()));
+            if (i > 0) {
+                assertTrue(newsStories.get(i - 1).getTimeInMillis()
+                        >= newsStories.get(i).getTimeInMillis());
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the streaming {@link NewsJsonParser} with the DOM path in {@link QueryUtils}
+ * on recorded Guardian responses, by the bytes allocated per parse. Their parse times are
+ * compared by {@link QueryUtilsPipelineBenchmarkTest} with {@code -Pbenchmark}, as timings
+ * need JMH's warmup and depend on the machine.
+ */
+public class NewsJsonParserBenchmarkTest {
+
+    private static final int[] RESULT_COUNTS = {50, 200, 1000};
+    private static final int WARMUP_ITERATIONS = 30;
+    private static final int MEASURED_ITERATIONS = 30;
+
+    private interface ParsePath {
+        List<News> parse(byte[] response) throws IOException;
+    }
+
+    private static final ParsePath STREAMING = new ParsePath() {
+        @Override
+        public List<News> parse(byte[] response) throws IOException {
+            return NewsJsonParser.parse(new ByteArrayInputStream(response));
+        }
+    };
+
+    private static final ParsePath DOM = new ParsePath() {
+        @Override
+        public List<News> parse(byte[] response) throws IOException {
+            String json = QueryUtils.readFromStream(new ByteArrayInputStream(response));
+            return QueryUtils.extractFeatureFromJson(json);
+        }
+    };
+
+    @Test
+    public void streamingParse_matchesDomParse() throws IOException {
+        byte[] response = GuardianFixtures.responseBytes(50);
+        List<News> streamed = STREAMING.parse(response);
+        List<News> dom = DOM.parse(response);
+
+        assertEquals(50, streamed.size());
+        assertEquals(dom.size(), streamed.size());
+        for (int i = 0; i < dom.size(); i++) {
+            assertEquals(dom.get(i).getNewsSection(), streamed.get(i).getNewsSection());
+            assertEquals(dom.get(i).getNewsTitle(), streamed.get(i).getNewsTitle());
+            assertEquals(dom.get(i).getTime(), streamed.get(i).getTime());
+            assertEquals(dom.get(i).getUrl(), streamed.get(i).getUrl());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void streamingParse_rejectsMalformedJson() throws IOException {
+        STREAMING.parse("{\"response\": {\"results\": [{\"webTitle\": ".getBytes("UTF-8"));
+    }
+
+    @Test
+    public void streamingParse_allocatesLessThanDomParse() throws IOException {
+        for (int resultCount : RESULT_COUNTS) {
+            byte[] response = GuardianFixtures.responseBytes(resultCount);
+            long streamingBytes = measure(STREAMING, response);
+            long domBytes = measure(DOM, response);
+
+            if (streamingBytes >= 0 && domBytes >= 0) {
+                assertTrue("streaming parse of " + resultCount + " results allocated "
+                                + streamingBytes + " B, dom parse " + domBytes + " B",
+                        streamingBytes < domBytes);
+            }
+        }
+    }
+
+    /**
+     * Return the bytes allocated per parse of the given response, or -1 if the JVM can't
+     * tell.
+     */
+    private static long measure(ParsePath path, byte[] response) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            path.parse(response);
+        }
+        long startBytes = Allocations.allocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            path.parse(response);
+        }
+        long endBytes = Allocations.allocatedBytes();
+        return startBytes < 0 ? -1 : (endBytes - startBytes) / MEASURED_ITERATIONS;
+    }
+}
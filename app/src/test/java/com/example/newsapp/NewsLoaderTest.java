@@ -0,0 +1,94 @@
+package com.example.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which results the {@link NewsLoader} delivers: changed news stories and errors
+ * always, unchanged news stories only when they end a refresh, so the refresh indicator is
+ * always cleared. Also checks how loaded pages are merged into the feed.
+ */
+public class NewsLoaderTest {
+
+    private static FeedStore stories(String title) {
+        return FeedStore.of(Collections.singletonList(new News("World news", title,
+                "2019-05-11T05:00:12Z", "https://www.theguardian.com/" + title)));
+    }
+
+    @Test
+    public void shouldDeliver_skipsUnchangedStories() {
+        FeedStore delivered = stories("politics");
+
+        assertFalse(NewsLoader.shouldDeliver(
+                new NewsResult(stories("politics"), null), delivered, false));
+        assertTrue(NewsLoader.shouldDeliver(
+                new NewsResult(stories("sport"), null), delivered, false));
+        assertTrue(NewsLoader.shouldDeliver(
+                new NewsResult(stories("politics"), null), null, false));
+    }
+
+    @Test
+    public void shouldDeliver_endsARefreshThatFoundNothingNew() {
+        FeedStore delivered = stories("politics");
+
+        assertTrue(NewsLoader.shouldDeliver(
+                new NewsResult(stories("politics"), null), delivered, true));
+        assertTrue(NewsLoader.shouldDeliver(new NewsResult(delivered, null), delivered, true));
+    }
+
+    @Test
+    public void shouldDeliver_alwaysDeliversErrors() {
+        FeedStore delivered = stories("politics");
+
+        assertTrue(NewsLoader.shouldDeliver(
+                new NewsResult(delivered, FetchError.NETWORK), delivered, false));
+        assertTrue(NewsLoader.shouldDeliver(
+                new NewsResult(null, FetchError.TIMEOUT), delivered, false));
+    }
+
+    private static FeedStore page(int first, int count) {
+        List<News> newsStories = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) {
+            newsStories.add(new News("World news", "Story " + i, "2019-05-11T05:00:12Z",
+                    "https://www.theguardian.com/story-" + i));
+        }
+        return FeedStore.of(newsStories);
+    }
+
+    @Test
+    public void withFirstPage_keepsTheFurtherPagesLoaded() {
+        FeedStore firstPage = page(0, NewsLoader.PAGE_SIZE);
+
+        assertSame(firstPage, NewsLoader.withFirstPage(null, firstPage));
+        assertSame(firstPage, NewsLoader.withFirstPage(page(5, NewsLoader.PAGE_SIZE), firstPage));
+
+        // Two new stories on top of two pages, the first page overlapping the old one.
+        FeedStore feed = NewsLoader.withFirstPage(page(2, 2 * NewsLoader.PAGE_SIZE), firstPage);
+        assertEquals(2 * NewsLoader.PAGE_SIZE + 2, feed.size());
+        assertEquals("Story 0", feed.get(0).getNewsTitle());
+        assertEquals("Story " + (2 * NewsLoader.PAGE_SIZE + 1),
+                feed.get(feed.size() - 1).getNewsTitle());
+    }
+
+    @Test
+    public void withNextPage_dropsTheOldestStoriesPastTheMaximum() {
+        FeedStore feed = page(0, NewsLoader.MAX_STORIES - 5);
+
+        FeedStore appended = NewsLoader.withNextPage(feed, page(NewsLoader.MAX_STORIES - 5,
+                NewsLoader.PAGE_SIZE));
+
+        assertEquals(NewsLoader.MAX_STORIES, appended.size());
+        assertEquals("Story " + (NewsLoader.PAGE_SIZE - 5), appended.get(0).getNewsTitle());
+        assertEquals("Story " + (NewsLoader.MAX_STORIES + NewsLoader.PAGE_SIZE - 6),
+                appended.get(appended.size() - 1).getNewsTitle());
+        assertEquals(NewsLoader.MAX_STORIES - 5, feed.size());
+    }
+}
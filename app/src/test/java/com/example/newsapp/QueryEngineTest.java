@@ -0,0 +1,70 @@
+package com.example.newsapp;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that the recent results of the {@link QueryEngine} are found again by query, and that
+ * the least recently used query is dropped past the maximum.
+ */
+public class QueryEngineTest {
+
+    private static String topicUrl(String topic) {
+        return QueryUtils.buildRequest(topic, "newest").getUrl();
+    }
+
+    private static QueryEngine.RecentResult result(String title, long loadedAt) {
+        FeedStore newsStories = FeedStore.of(Collections.singletonList(new News("World news",
+                title, "2019-05-11T05:00:12Z", "https://www.theguardian.com/" + title)));
+        return new QueryEngine.RecentResult(newsStories, loadedAt, 2, false);
+    }
+
+    @Test
+    public void get_findsTheResultOfTheSameQuery() {
+        QueryEngine.RecentResults results = new QueryEngine.RecentResults(3);
+        QueryEngine.RecentResult politics = result("politics", 1000);
+
+        results.put(topicUrl("politics"), politics);
+
+        assertSame(politics, results.get(topicUrl("Politics")));
+        assertSame(politics, results.get(topicUrl("politics") + "&page=3"));
+        assertNull(results.get(topicUrl("sport")));
+        assertNull(results.get(QueryUtils.buildRequest("politics", "oldest").getUrl()));
+    }
+
+    @Test
+    public void put_dropsTheLeastRecentlyUsedQuery() {
+        QueryEngine.RecentResults results = new QueryEngine.RecentResults(3);
+        results.put(topicUrl("politics"), result("politics", 1000));
+        results.put(topicUrl("sport"), result("sport", 2000));
+        results.put(topicUrl("culture"), result("culture", 3000));
+
+        // Switching back to politics makes sport the least recently used query.
+        assertEquals(1000, results.get(topicUrl("politics")).loadedAt);
+        results.put(topicUrl("science"), result("science", 4000));
+
+        assertEquals(3, results.size());
+        assertNull(results.get(topicUrl("sport")));
+        assertEquals(1000, results.get(topicUrl("politics")).loadedAt);
+        assertEquals(3000, results.get(topicUrl("culture")).loadedAt);
+        assertEquals(4000, results.get(topicUrl("science")).loadedAt);
+    }
+
+    @Test
+    public void putRecentResult_replacesTheResultOfTheQuery() {
+        String url = topicUrl("query-engine-test");
+        QueryEngine.putRecentResult(url, result("first", 1000));
+        QueryEngine.putRecentResult(url + "&page=2", result("second", 2000));
+
+        QueryEngine.RecentResult recent = QueryEngine.getRecentResult(url);
+
+        assertEquals(2000, recent.loadedAt);
+        assertEquals("second", recent.newsStories.getNewsTitle(0));
+        assertNull(QueryEngine.getRecentResult(null));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the HTTP behaviour of {@link QueryUtils} against a local Guardian stub server.
+ */
+public class QueryUtilsHttpTest {
+
+    private GuardianStubServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new GuardianStubServer(GuardianFixtures.responseBytes(50));
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void fetch_negotiatesGzip() {
+        NewsResponse response = QueryUtils.fetchNewsData(mServer.url("q=debates"), null, null);
+
+        assertEquals(50, response.getNewsStories().size());
+        assertEquals("gzip", mServer.requests().get(0).acceptEncoding);
+    }
+
+    @Test
+    public void fetch_sendsStoredETagAndReusesParseOnNotModified() {
+        mServer.setBody(GuardianFixtures.responseBytes(50), "\"v1\"");
+
+        NewsResponse first = QueryUtils.fetchNewsData(mServer.url("q=debates"), null, null);
+        assertFalse(first.isNotModified());
+        assertEquals("\"v1\"", first.getETag());
+
+        NewsResponse second = QueryUtils.fetchNewsData(mServer.url("q=debates"),
+                first.getETag(), first.getLastModified());
+        assertTrue(second.isNotModified());
+        assertNull(second.getNewsStories());
+        assertEquals("\"v1\"", second.getETag());
+        assertEquals("\"v1\"", mServer.requests().get(1).ifNoneMatch);
+    }
+
+    @Test
+    public void fetch_reusesPooledConnection() {
+        for (int i = 0; i < 3; i++) {
+            QueryUtils.fetchNewsData(mServer.url("q=debates"), null, null);
+        }
+
+        int port = mServer.requests().get(0).clientPort;
+        assertEquals(port, mServer.requests().get(1).clientPort);
+        assertEquals(port, mServer.requests().get(2).clientPort);
+    }
+
+    @Test
+    public void fetch_reusesTheConnectionWarmedUpAtStartup() {
+        QueryUtils.prewarmConnection(mServer.url(""));
+        NewsResponse response = QueryUtils.fetchNewsData(mServer.url("q=debates"), null, null);
+
+        assertEquals(50, response.getNewsStories().size());
+        assertEquals(2, mServer.requests().size());
+        assertEquals("GET", mServer.requests().get(0).method);
+        assertEquals("/", mServer.requests().get(0).uri);
+        assertEquals(mServer.requests().get(0).clientPort, mServer.requests().get(1).clientPort);
+    }
+
+    @Test
+    public void fetch_onlyWaitsBrieflyForAStalledWarmUp() throws IOException {
+        // A host that takes the connection but never answers, like a captive portal.
+        ServerSocket stalled = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        try {
+            QueryUtils.prewarmConnection("http://127.0.0.1:" + stalled.getLocalPort() + "/");
+            long start = System.nanoTime();
+            NewsResponse response =
+                    QueryUtils.fetchNewsData(mServer.url("q=debates"), null, null);
+            long waitedMillis = (System.nanoTime() - start) / 1000000;
+
+            assertEquals(50, response.getNewsStories().size());
+            assertTrue("Waited " + waitedMillis + " ms", waitedMillis < 5000);
+        } finally {
+            stalled.close();
+        }
+    }
+}
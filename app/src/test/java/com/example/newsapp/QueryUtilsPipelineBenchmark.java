@@ -0,0 +1,149 @@
+package com.example.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of each stage of turning a Guardian search response into displayed news
+ * stories: reading the response, parsing it, constructing the {@link News} objects and
+ * formatting their dates, and against those the compact binary form the parsed stories are
+ * cached in. Each stage runs on recorded responses of 10, 50, 200 and 1000 results.
+ * <p>
+ * Run by {@link QueryUtilsPipelineBenchmarkTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class QueryUtilsPipelineBenchmark {
+
+    @Param({"10", "50", "200", "1000"})
+    public int resultCount;
+
+    private byte[] mResponse;
+
+    private String mResponseJson;
+
+    /**
+     * The section, title, time and URL of each story in the response.
+     */
+    private String[][] mFields;
+
+    private List<News> mNewsStories;
+
+    private byte[] mEncoded;
+
+    private SimpleDateFormat mIsoFormat;
+
+    private SimpleDateFormat mDateFormat;
+
+    private SimpleDateFormat mTimeFormat;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mResponse = GuardianFixtures.responseBytes(resultCount);
+        mResponseJson = QueryUtils.readFromStream(new ByteArrayInputStream(mResponse));
+
+        List<News> newsStories = NewsJsonParser.parse(new ByteArrayInputStream(mResponse));
+        mNewsStories = newsStories;
+        mEncoded = NewsCodec.encode(newsStories);
+        mFields = new String[newsStories.size()][];
+        for (int i = 0; i < mFields.length; i++) {
+            News news = newsStories.get(i);
+            mFields[i] = new String[]{
+                    news.getNewsSection(), news.getNewsTitle(), news.getTime(), news.getUrl()};
+        }
+
+        // The formats the adapter used to create while binding each story.
+        mIsoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        mDateFormat = new SimpleDateFormat("LLL dd, yyyy", Locale.getDefault());
+        mTimeFormat = new SimpleDateFormat("h:mm a", Locale.getDefault());
+    }
+
+    /**
+     * Read the response into a String, as the DOM path does.
+     */
+    @Benchmark
+    public String readFromStream() throws IOException {
+        return QueryUtils.readFromStream(new ByteArrayInputStream(mResponse));
+    }
+
+    /**
+     * Parse the response String into a JSONObject tree and the news stories.
+     */
+    @Benchmark
+    public List<News> extractFeatureFromJson() {
+        return QueryUtils.extractFeatureFromJson(mResponseJson);
+    }
+
+    /**
+     * Parse the response straight off the stream.
+     */
+    @Benchmark
+    public List<News> streamingParse() throws IOException {
+        return NewsJsonParser.parse(new ByteArrayInputStream(mResponse));
+    }
+
+    /**
+     * Construct the news stories of the response, including their display strings.
+     */
+    @Benchmark
+    public void newsConstruction(Blackhole blackhole) {
+        for (String[] fields : mFields) {
+            blackhole.consume(new News(fields[0], fields[1], fields[2], fields[3]));
+        }
+    }
+
+    /**
+     * Format the date and time of every story with {@link LegacyDates}.
+     */
+    @Benchmark
+    public void parseDate(Blackhole blackhole) {
+        for (String[] fields : mFields) {
+            blackhole.consume(LegacyDates.reformat(fields[2], mIsoFormat, mDateFormat));
+            blackhole.consume(LegacyDates.reformat(fields[2], mIsoFormat, mTimeFormat));
+        }
+    }
+
+    /**
+     * Format the date and time of every story with {@link NewsDates}.
+     */
+    @Benchmark
+    public void newsDates(Blackhole blackhole) {
+        for (String[] fields : mFields) {
+            long timeInMillis = NewsDates.parseIsoTime(fields[2]);
+            blackhole.consume(NewsDates.formatDate(timeInMillis));
+            blackhole.consume(NewsDates.formatTime(timeInMillis));
+        }
+    }
+
+    /**
+     * Decode the stories of the response from their cached binary form.
+     */
+    @Benchmark
+    public List<News> binaryDecode() throws IOException {
+        return NewsCodec.decode(mEncoded);
+    }
+
+    /**
+     * Encode the stories of the response into their cached binary form.
+     */
+    @Benchmark
+    public byte[] binaryEncode() {
+        return NewsCodec.encode(mNewsStories);
+    }
+}
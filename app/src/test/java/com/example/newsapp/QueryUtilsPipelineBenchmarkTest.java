@@ -0,0 +1,250 @@
+package com.example.newsapp;
+
+import org.junit.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs {@link QueryUtilsPipelineBenchmark} and fails if it got slower, or allocates more,
+ * than the recorded baseline.
+ * <p>
+ * Throughput isn't compared as such, since it depends on the machine, but as the speedup of
+ * each benchmark over the DOM parse of the same response measured in the same run, which
+ * mostly doesn't. The bytes allocated per operation only depend on the JVM. Both may be off
+ * the baseline by {@code -Pbenchmark.maxRegression}, 20% by default. A machine or JVM that
+ * still doesn't match the committed baseline, like a CI runner, can record its own with
+ * {@code -Pbenchmark.updateBaseline} and point {@code benchmark.baseline} at it.
+ * Whatever the baseline, the streaming parse has to take less time than reading and parsing
+ * the response with the DOM path in the same run.
+ * <p>
+ * Skipped unless the build is run with {@code -Pbenchmark}, for example
+ * {@code ./gradlew testDebugUnitTest -Pbenchmark --tests '*PipelineBenchmarkTest'}.
+ * The JMH report is written to {@code build/reports/benchmarks/pipeline.json} and the scores
+ * compared against the baseline to {@code pipeline.properties} next to it. The baseline is
+ * committed as {@code app/benchmark-baseline.properties}, and the test fails without it. A run
+ * with {@code -Pbenchmark.updateBaseline} doesn't compare but records the scores as a new
+ * baseline in the reports directory, to be copied over the committed one.
+ */
+public class QueryUtilsPipelineBenchmarkTest {
+
+    /**
+     * Allocation below this many bytes per operation is noise, never a regression.
+     */
+    private static final double ALLOCATION_SLACK_BYTES = 64;
+
+    /**
+     * The benchmark the throughput of the others is compared to, see {@link #SPEEDUP_SUFFIX}.
+     */
+    private static final String REFERENCE_BENCHMARK = "extractFeatureFromJson";
+
+    /**
+     * Throughput on this machine, only reported.
+     */
+    private static final String THROUGHPUT_SUFFIX = ".ops_per_s";
+
+    /**
+     * Throughput divided by the throughput of {@link #REFERENCE_BENCHMARK} for the same result
+     * count.
+     */
+    private static final String SPEEDUP_SUFFIX = ".speedup";
+
+    private static final String ALLOCATION_SUFFIX = ".bytes_per_op";
+
+    @Test
+    public void pipeline_doesNotRegress() throws RunnerException, IOException {
+        assumeTrue("Benchmarks only run with -Pbenchmark", Boolean.getBoolean("benchmark"));
+
+        File reportDir = new File(System.getProperty("benchmark.reportDir",
+                "build/reports/benchmarks"));
+        File baselineFile = new File(System.getProperty("benchmark.baseline",
+                "benchmark-baseline.properties"));
+        double maxRegression = Double.parseDouble(System.getProperty("benchmark.maxRegression",
+                "0.2"));
+        if (!reportDir.isDirectory() && !reportDir.mkdirs()) {
+            throw new IOException("Can't create " + reportDir);
+        }
+
+        Options options = new OptionsBuilder()
+                .include(QueryUtilsPipelineBenchmark.class.getName())
+                // The test worker's classes are not on the java.class.path a forked JVM
+                // would get, so the benchmarks run in this JVM.
+                .forks(0)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(reportDir, "pipeline.json").getPath())
+                .build();
+        Properties scores = scores(new Runner(options).run());
+        store(scores, new File(reportDir, "pipeline.properties"));
+
+        if (Boolean.getBoolean("benchmark.updateBaseline")) {
+            File recorded = new File(reportDir, baselineFile.getName());
+            Properties baseline = new Properties();
+            for (String key : scores.stringPropertyNames()) {
+                if (!key.endsWith(THROUGHPUT_SUFFIX)) {
+                    baseline.setProperty(key, scores.getProperty(key));
+                }
+            }
+            store(baseline, recorded);
+            System.out.println("Recorded a new benchmark baseline in " + recorded
+                    + ", copy it to " + baselineFile + " to use it");
+            return;
+        }
+        assertTrue("No benchmark baseline at " + baselineFile
+                + ", record one with -Pbenchmark.updateBaseline", baselineFile.isFile());
+
+        Properties baseline = load(baselineFile);
+        List<String> regressions = new ArrayList<>();
+        for (String key : baseline.stringPropertyNames()) {
+            String current = scores.getProperty(key);
+            if (current == null || key.endsWith(THROUGHPUT_SUFFIX)) {
+                continue;
+            }
+            double expected = Double.parseDouble(baseline.getProperty(key));
+            double actual = Double.parseDouble(current);
+            boolean regressed = key.endsWith(SPEEDUP_SUFFIX)
+                    ? actual < expected * (1 - maxRegression)
+                    : actual > expected * (1 + maxRegression) + ALLOCATION_SLACK_BYTES;
+            if (regressed) {
+                regressions.add(String.format(Locale.US, "%s: %.3f, baseline %.3f",
+                        key, actual, expected));
+            }
+        }
+        assertTrue("Regressed by more than " + (int) (maxRegression * 100) + "%:\n"
+                + join(regressions), regressions.isEmpty());
+
+        List<String> slower = new ArrayList<>();
+        for (String key : scores.stringPropertyNames()) {
+            if (!key.startsWith("streamingParse[") || !key.endsWith(THROUGHPUT_SUFFIX)) {
+                continue;
+            }
+            String resultCount = key.substring(key.indexOf('['), key.indexOf(']') + 1);
+            double streaming = Double.parseDouble(scores.getProperty(key));
+            double dom = domThroughput(scores, resultCount);
+            if (streaming <= dom) {
+                slower.add(String.format(Locale.US, "%s: %.1f ops/s, DOM path %.1f ops/s",
+                        key, streaming, dom));
+            }
+        }
+        assertTrue("Streaming parse not faster than the DOM path:\n" + join(slower),
+                slower.isEmpty());
+    }
+
+    /**
+     * Return the throughput of reading the response into a String and parsing it with the DOM
+     * path, from the times of the two benchmarks for the given result count.
+     */
+    private static double domThroughput(Properties scores, String resultCount) {
+        double read = Double.parseDouble(
+                scores.getProperty("readFromStream" + resultCount + THROUGHPUT_SUFFIX));
+        double extract = Double.parseDouble(
+                scores.getProperty(REFERENCE_BENCHMARK + resultCount + THROUGHPUT_SUFFIX));
+        return 1 / (1 / read + 1 / extract);
+    }
+
+    /**
+     * Return the throughput, speedup and allocation of each benchmark and result count, keyed
+     * like {@code streamingParse[200].speedup}.
+     */
+    private static Properties scores(Collection<RunResult> results) {
+        Properties scores = new Properties();
+        Map<String, Double> referenceThroughput = new TreeMap<>();
+        for (RunResult result : results) {
+            String resultCount = result.getParams().getParam("resultCount");
+            String key = benchmarkName(result) + "[" + resultCount + "]";
+            double throughput = result.getPrimaryResult().getScore();
+            scores.setProperty(key + THROUGHPUT_SUFFIX, String.valueOf(throughput));
+            if (benchmarkName(result).equals(REFERENCE_BENCHMARK)) {
+                referenceThroughput.put(resultCount, throughput);
+            }
+            // JMH declares the secondary results with the raw Result type, so they're only
+            // looked up by name.
+            for (String name : result.getSecondaryResults().keySet()) {
+                if (name.endsWith("gc.alloc.rate.norm")) {
+                    Result<?> allocation = result.getSecondaryResults().get(name);
+                    scores.setProperty(key + ALLOCATION_SUFFIX,
+                            String.valueOf(allocation.getScore()));
+                }
+            }
+        }
+        for (RunResult result : results) {
+            String resultCount = result.getParams().getParam("resultCount");
+            Double reference = referenceThroughput.get(resultCount);
+            if (reference != null && !benchmarkName(result).equals(REFERENCE_BENCHMARK)) {
+                scores.setProperty(benchmarkName(result) + "[" + resultCount + "]"
+                                + SPEEDUP_SUFFIX,
+                        String.valueOf(result.getPrimaryResult().getScore() / reference));
+            }
+        }
+        return scores;
+    }
+
+    private static String benchmarkName(RunResult result) {
+        String benchmark = result.getParams().getBenchmark();
+        return benchmark.substring(benchmark.lastIndexOf('.') + 1);
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    private static void store(Properties properties, File file) throws IOException {
+        // Sorted, so baselines diff cleanly.
+        Map<String, String> sorted = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            sorted.put(key, properties.getProperty(key));
+        }
+        StringBuilder text = new StringBuilder("# QueryUtilsPipelineBenchmark scores\n");
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            text.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.toString().getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String join(List<String> lines) {
+        StringBuilder joined = new StringBuilder();
+        for (String line : lines) {
+            joined.append(line).append('\n');
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,346 @@
+package com.example.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Soak and load tests of the news fetch pipeline against the {@link GuardianStubServer}:
+ * thousands of requests through {@link QueryUtils}, each parsed and merged into the feed the
+ * way {@link NewsLoader} does, under steady reloads, huge responses, slow bodies and a faulty
+ * server.
+ * <p>
+ * Each scenario reports its throughput, p50 and p99 latency and heap growth, and fails if a
+ * request fails in an unexpected way or the heap isn't reclaimed between cycles. By default
+ * the scenarios only run a short smoke of their cycles. The build run with {@code -Psoak}
+ * runs the full soak, for example
+ * {@code ./gradlew testDebugUnitTest -Psoak --tests '*SoakTest'}, with
+ * {@code -Psoak.cycles=N} to change its length, and writes the reports to
+ * {@code build/reports/soak}.
+ */
+public class QueryUtilsSoakTest {
+
+    private static final boolean SOAK = Boolean.getBoolean("soak");
+
+    /**
+     * Number of cycles of the full soak of the steady scenarios, the slower ones run a
+     * fraction of them.
+     */
+    private static final int SOAK_CYCLES = Integer.getInteger("soak.cycles", 5000);
+
+    /**
+     * Heap the pipeline may keep between cycles once warmed up, like the keep-alive
+     * connections and the metrics. Anything more is a leak.
+     */
+    private static final long MAX_HEAP_GROWTH_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Number of times the heap is measured during a scenario.
+     */
+    private static final int HEAP_CHECKPOINTS = 5;
+
+    private GuardianStubServer mServer;
+
+    private String mUrl;
+
+    /**
+     * The policy of the requests. The circuit breaker never opens, so the faulty server is
+     * hit by every request.
+     */
+    private final RequestPolicy mPolicy = new RequestPolicy(10000, 3, 5, 50,
+            new CircuitBreaker(Integer.MAX_VALUE, 1), new Random(1));
+
+    /**
+     * The feed the news stories of each cycle are merged into, null until the first reload.
+     */
+    private FeedStore mFeed;
+
+    private String mETag;
+
+    private FeedStore mCachedPage;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new GuardianStubServer(GuardianFixtures.responseBytes(NewsLoader.PAGE_SIZE));
+        mServer.setRecording(false);
+        mUrl = mServer.url("q=debates&order-by=newest&page-size=20&api-key=test");
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    /**
+     * Return the number of cycles of a scenario: the given smoke cycles, or the given
+     * fraction of the soak cycles in a soak run.
+     */
+    private static int cycles(int smokeCycles, double soakFraction) {
+        return SOAK ? Math.max(smokeCycles, (int) (SOAK_CYCLES * soakFraction)) : smokeCycles;
+    }
+
+    @Test
+    public void reloads_reclaimTheirMemory() throws IOException {
+        Report report = run("reloads", cycles(300, 1), new Cycle() {
+            @Override
+            public int run(int cycle) throws FetchException {
+                // The feed changes every ten reloads, the others are answered from the cache.
+                if (cycle % 10 == 0) {
+                    mServer.setBody(GuardianFixtures.responseBytes(NewsLoader.PAGE_SIZE),
+                            "\"v" + cycle + "\"");
+                }
+                // Every third cycle loads the next page instead, like scrolling down.
+                return cycle % 3 == 2 ? loadNextPage(cycle) : reload();
+            }
+        });
+
+        assertEquals(report.toString(), report.cycles, report.successes);
+    }
+
+    @Test
+    public void hugeResponses_reclaimTheirMemory() throws IOException {
+        mServer.setBody(GuardianFixtures.responseBytes(2000), null);
+
+        Report report = run("huge", cycles(10, 0.02), new Cycle() {
+            @Override
+            public int run(int cycle) throws FetchException {
+                return reload();
+            }
+        });
+
+        assertEquals(report.toString(), report.cycles, report.successes);
+        assertEquals(report.toString(), 2000, report.lastStoryCount);
+    }
+
+    @Test
+    public void slowDripBodies_areReadToTheEnd() throws IOException {
+        mServer.setDelayMillis(5);
+        mServer.setDelayJitterMillis(10);
+        mServer.setBytesPerSecond(64 * 1024);
+
+        Report report = run("slow-drip", cycles(10, 0.01), new Cycle() {
+            @Override
+            public int run(int cycle) throws FetchException {
+                return reload();
+            }
+        });
+
+        assertEquals(report.toString(), report.cycles, report.successes);
+        assertEquals(report.toString(), NewsLoader.PAGE_SIZE, report.lastStoryCount);
+        // The body takes at least a chunk interval to trickle in.
+        assertTrue(report.toString(), report.percentileMicros(0.5) >= 20000);
+    }
+
+    @Test
+    public void faultyServer_onlyFailsWithFetchErrors() throws IOException {
+        mServer.setFaultRates(0.1, 0.05, 0.05);
+
+        Report report = run("faulty", cycles(200, 1), new Cycle() {
+            @Override
+            public int run(int cycle) throws FetchException {
+                return reload();
+            }
+        });
+
+        Set<FetchError> expected =
+                EnumSet.of(FetchError.SERVER, FetchError.NETWORK, FetchError.MALFORMED);
+        assertTrue(report.toString(), expected.containsAll(report.failures.keySet()));
+        assertTrue(report.toString(), report.failures.containsKey(FetchError.MALFORMED));
+        // Server errors and dropped connections are retried, only a malformed body fails for
+        // good.
+        assertTrue(report.toString(), report.successes >= report.cycles * 0.8);
+    }
+
+    /**
+     * Reload the first page, revalidating it with its ETag, and merge it into the feed the way
+     * {@link NewsLoader} does.
+     */
+    private int reload() throws FetchException {
+        NewsResponse response = QueryUtils.fetchSingleQuery(mUrl, mETag, null, mPolicy);
+        FeedStore page = response.isNotModified()
+                ? mCachedPage
+                : FeedStore.of(response.getNewsStories());
+        mETag = response.getETag();
+        mCachedPage = page;
+        mFeed = NewsLoader.withFirstPage(mFeed, page);
+        return page.size();
+    }
+
+    /**
+     * Load a further page and append it to the feed the way {@link NewsLoader} does, keeping
+     * the latest news stories.
+     */
+    private int loadNextPage(int cycle) throws FetchException {
+        FeedStore page = FeedStore.of(QueryUtils.fetchSingleQuery(
+                GuardianRequest.withPage(mUrl, cycle % 25 + 2), null, null, mPolicy)
+                .getNewsStories());
+        mFeed = NewsLoader.withNextPage(mFeed, page);
+        return page.size();
+    }
+
+    /**
+     * Run the given number of cycles after a warm-up, measuring each one and the heap at a
+     * few checkpoints, then report them and check the heap was reclaimed.
+     */
+    private Report run(String name, int cycles, Cycle cycle) throws IOException {
+        Report report = new Report(name, cycles);
+        int warmUpCycles = Math.max(1, Math.min(cycles / 10, 20));
+        for (int i = 0; i < warmUpCycles; i++) {
+            runCycle(cycle, i, null);
+        }
+
+        long baselineBytes = usedHeapBytes();
+        int checkpointEvery = Math.max(1, cycles / HEAP_CHECKPOINTS);
+        for (int i = 0; i < cycles; i++) {
+            runCycle(cycle, warmUpCycles + i, report);
+            if ((i + 1) % checkpointEvery == 0 || i == cycles - 1) {
+                report.maxHeapGrowthBytes =
+                        Math.max(report.maxHeapGrowthBytes, usedHeapBytes() - baselineBytes);
+            }
+        }
+
+        if (SOAK) {
+            System.out.println(report);
+        }
+        writeReport(report);
+        assertEquals(report.toString(), null, report.unexpected);
+        assertTrue("Heap not reclaimed: " + report,
+                report.maxHeapGrowthBytes < MAX_HEAP_GROWTH_BYTES);
+        return report;
+    }
+
+    private static void runCycle(Cycle cycle, int index, Report report) {
+        long startNanos = System.nanoTime();
+        FetchError error = null;
+        int storyCount = -1;
+        RuntimeException unexpected = null;
+        try {
+            storyCount = cycle.run(index);
+        } catch (FetchException e) {
+            error = e.getError();
+        } catch (RuntimeException e) {
+            unexpected = e;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        if (report != null) {
+            report.add(nanos, storyCount, error, unexpected);
+        }
+    }
+
+    private static void writeReport(Report report) throws IOException {
+        String reportDir = System.getProperty("soak.reportDir");
+        if (reportDir == null) {
+            return;
+        }
+        File directory = new File(reportDir);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(directory, report.name + ".txt")), "UTF-8");
+        try {
+            writer.write(report + "\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Return the heap used once the garbage is collected.
+     */
+    private static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * One fetch and merge of a scenario.
+     */
+    private interface Cycle {
+        /**
+         * @return the number of news stories loaded.
+         */
+        int run(int cycle) throws FetchException;
+    }
+
+    /**
+     * What the cycles of a scenario measured.
+     */
+    private static final class Report {
+        final String name;
+        final int cycles;
+        final long[] latencyNanos;
+        final Map<FetchError, Integer> failures = new EnumMap<>(FetchError.class);
+        int count;
+        int successes;
+        int lastStoryCount;
+        long totalNanos;
+        long maxHeapGrowthBytes;
+        RuntimeException unexpected;
+
+        Report(String name, int cycles) {
+            this.name = name;
+            this.cycles = cycles;
+            latencyNanos = new long[cycles];
+        }
+
+        void add(long nanos, int storyCount, FetchError error, RuntimeException exception) {
+            latencyNanos[count++] = nanos;
+            totalNanos += nanos;
+            if (exception != null) {
+                if (unexpected == null) {
+                    unexpected = exception;
+                }
+            } else if (error != null) {
+                Integer failed = failures.get(error);
+                failures.put(error, failed == null ? 1 : failed + 1);
+            } else {
+                successes++;
+                lastStoryCount = storyCount;
+            }
+        }
+
+        long percentileMicros(double fraction) {
+            long[] sorted = Arrays.copyOf(latencyNanos, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, rank)] / 1000;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "soak %-9s %5d cycles | %8.1f cycles/s"
+                            + " | p50 %7.2f ms | p99 %7.2f ms | heap %+7.2f MB"
+                            + " | %d ok, failed %s",
+                    name, count, count * 1e9 / Math.max(1, totalNanos),
+                    percentileMicros(0.5) / 1000.0, percentileMicros(0.99) / 1000.0,
+                    maxHeapGrowthBytes / (1024.0 * 1024.0), successes, failures);
+        }
+    }
+}
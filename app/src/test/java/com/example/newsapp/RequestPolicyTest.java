@@ -0,0 +1,220 @@
+package com.example.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the deadline, retries and circuit breaker of {@link RequestPolicy} against a local
+ * Guardian stub server injecting faults.
+ */
+public class RequestPolicyTest {
+
+    private GuardianStubServer mServer;
+
+    private String mUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new GuardianStubServer(GuardianFixtures.responseBytes(20));
+        mUrl = mServer.url("q=debates");
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    private static RequestPolicy policy(long deadlineMillis, int maxAttempts,
+                                        CircuitBreaker breaker) {
+        return new RequestPolicy(deadlineMillis, maxAttempts, 10, 100, breaker, new Random(1));
+    }
+
+    private static RequestPolicy policy(long deadlineMillis, int maxAttempts) {
+        return policy(deadlineMillis, maxAttempts, new CircuitBreaker(100, 60000));
+    }
+
+    private FetchError fetchError(RequestPolicy policy) {
+        try {
+            QueryUtils.fetchSingleQuery(mUrl, null, null, policy);
+        } catch (FetchException e) {
+            return e.getError();
+        }
+        fail("The fetch succeeded");
+        return null;
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Test
+    public void execute_retriesServerErrors() throws FetchException {
+        mServer.enqueueError(503, null);
+        mServer.enqueueError(500, null);
+
+        NewsResponse response = QueryUtils.fetchSingleQuery(mUrl, null, null, policy(5000, 3));
+
+        assertEquals(20, response.getNewsStories().size());
+        assertEquals(3, mServer.requests().size());
+    }
+
+    @Test
+    public void execute_retriesADroppedConnection() throws FetchException {
+        mServer.enqueueDisconnect();
+
+        NewsResponse response = QueryUtils.fetchSingleQuery(mUrl, null, null, policy(5000, 3));
+
+        assertEquals(20, response.getNewsStories().size());
+    }
+
+    @Test
+    public void execute_waitsAsLongAsRetryAfterAsks() throws FetchException {
+        mServer.enqueueError(429, "1");
+        long startNanos = System.nanoTime();
+
+        NewsResponse response = QueryUtils.fetchSingleQuery(mUrl, null, null, policy(5000, 3));
+
+        assertEquals(20, response.getNewsStories().size());
+        assertTrue(millisSince(startNanos) >= 1000);
+        assertEquals(2, mServer.requests().size());
+    }
+
+    @Test
+    public void execute_failsRightAwayIfRetryAfterIsPastTheDeadline() {
+        mServer.enqueueError(503, "60");
+        long startNanos = System.nanoTime();
+
+        assertEquals(FetchError.SERVER, fetchError(policy(5000, 3)));
+        assertTrue(millisSince(startNanos) < 1000);
+        assertEquals(1, mServer.requests().size());
+    }
+
+    @Test
+    public void execute_doesNotRetryRejectedRequests() {
+        mServer.enqueueError(403, null);
+
+        assertEquals(FetchError.REJECTED, fetchError(policy(5000, 3)));
+        assertEquals(1, mServer.requests().size());
+    }
+
+    @Test
+    public void execute_givesUpAtTheDeadline() {
+        mServer.setDelayMillis(2000);
+        long startNanos = System.nanoTime();
+
+        assertEquals(FetchError.TIMEOUT, fetchError(policy(300, 3)));
+        assertTrue(millisSince(startNanos) < 1000);
+    }
+
+    @Test
+    public void execute_reportsTheLastErrorOnceAttemptsRunOut() {
+        for (int i = 0; i < 3; i++) {
+            mServer.enqueueError(502, null);
+        }
+
+        assertEquals(FetchError.SERVER, fetchError(policy(5000, 3)));
+        assertEquals(3, mServer.requests().size());
+    }
+
+    @Test
+    public void breaker_failsFastWhileOpenThenLetsATrialThrough() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(2, 200);
+        RequestPolicy policy = policy(5000, 1, breaker);
+        mServer.enqueueError(500, null);
+        mServer.enqueueError(500, null);
+
+        assertEquals(FetchError.SERVER, fetchError(policy));
+        assertEquals(FetchError.SERVER, fetchError(policy));
+        assertTrue(breaker.isOpen());
+        assertEquals(FetchError.UNAVAILABLE, fetchError(policy));
+        assertEquals(2, mServer.requests().size());
+
+        Thread.sleep(250);
+        assertEquals(20,
+                QueryUtils.fetchSingleQuery(mUrl, null, null, policy).getNewsStories().size());
+        assertFalse(breaker.isOpen());
+        assertEquals(3, mServer.requests().size());
+    }
+
+    @Test
+    public void breaker_opensAgainIfTheTrialFails() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 100);
+        RequestPolicy policy = policy(5000, 1, breaker);
+        mServer.enqueueError(500, null);
+        mServer.enqueueError(503, null);
+
+        assertEquals(FetchError.SERVER, fetchError(policy));
+        Thread.sleep(150);
+        assertEquals(FetchError.SERVER, fetchError(policy));
+        assertEquals(FetchError.UNAVAILABLE, fetchError(policy));
+        assertEquals(2, mServer.requests().size());
+    }
+
+    @Test
+    public void breaker_endsATrialThatThrows() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 100);
+        RequestPolicy policy = policy(5000, 1, breaker);
+        mServer.enqueueError(500, null);
+
+        assertEquals(FetchError.SERVER, fetchError(policy));
+        Thread.sleep(150);
+        try {
+            policy.execute(new RequestPolicy.Attempt<Object>() {
+                @Override
+                public Object run(int timeoutMillis) {
+                    throw new IllegalStateException("Parser bug");
+                }
+            });
+            fail("The trial didn't throw");
+        } catch (IllegalStateException expected) {
+            // The breaker must still hear about the trial.
+        }
+
+        Thread.sleep(150);
+        assertEquals(20,
+                QueryUtils.fetchSingleQuery(mUrl, null, null, policy).getNewsStories().size());
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void backoff_isJitteredUnderAnExponentialCeiling() {
+        RequestPolicy policy = new RequestPolicy(5000, 10, 100, 1000,
+                new CircuitBreaker(5, 1000), new Random(7));
+        for (int attempts = 1; attempts <= 6; attempts++) {
+            long ceiling = Math.min(1000, 100L << (attempts - 1));
+            for (int i = 0; i < 50; i++) {
+                long backoff = policy.backoffMillis(attempts, 0);
+                assertTrue(backoff >= 0 && backoff < ceiling);
+            }
+        }
+        assertEquals(3000, policy.backoffMillis(1, 3000));
+    }
+
+    @Test
+    public void parseRetryAfter_readsSecondsAndDates() {
+        long now = 1557550812000L;
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz",
+                Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+        assertEquals(120000, RequestPolicy.parseRetryAfter("120", now));
+        assertEquals(30000,
+                RequestPolicy.parseRetryAfter(format.format(new Date(now + 30000)), now));
+        assertEquals(0, RequestPolicy.parseRetryAfter("soon", now));
+        assertEquals(0, RequestPolicy.parseRetryAfter(null, now));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTest {
+
+    private static News news(String section, String title, String url) {
+        return new News(section, title, "2019-05-11T05:00:12Z", url);
+    }
+
+    @Test
+    public void search_ranksTitleMatchesAboveSectionMatches() {
+        SearchIndex index = new SearchIndex(100);
+        News sectionMatch = news("Politics", "Budget vote delayed", "http://a");
+        News titleMatch = news("World news", "Politics of the budget", "http://b");
+        index.addAll(Arrays.asList(sectionMatch, titleMatch));
+
+        assertEquals(Arrays.asList(titleMatch, sectionMatch), index.search("politics ", 10));
+    }
+
+    @Test
+    public void search_requiresEveryWord() {
+        SearchIndex index = new SearchIndex(100);
+        News both = news("Sport", "Football final tonight", "http://a");
+        News one = news("Sport", "Tennis final", "http://b");
+        index.addAll(Arrays.asList(both, one));
+
+        assertEquals(Collections.singletonList(both), index.search("final football", 10));
+        assertEquals(2, index.search("FINAL", 10).size());
+    }
+
+    @Test
+    public void search_matchesLastWordAsPrefix() {
+        SearchIndex index = new SearchIndex(100);
+        News news = news("Science", "Climate report published", "http://a");
+        index.addAll(Collections.singletonList(news));
+
+        assertEquals(Collections.singletonList(news), index.search("clim", 10));
+        assertTrue(index.search("clim ", 10).isEmpty());
+    }
+
+    @Test
+    public void addAll_reindexesChangedStories() {
+        SearchIndex index = new SearchIndex(100);
+        index.addAll(Collections.singletonList(news("Sport", "Early title", "http://a")));
+        News updated = news("Sport", "Corrected title", "http://a");
+        index.addAll(Collections.singletonList(updated));
+
+        assertEquals(1, index.size());
+        assertTrue(index.search("early", 10).isEmpty());
+        assertEquals(Collections.singletonList(updated), index.search("corrected", 10));
+    }
+
+    @Test
+    public void addAll_dropsLeastRecentlyAddedStories() {
+        SearchIndex index = new SearchIndex(2);
+        News first = news("Sport", "First story", "http://a");
+        News second = news("Sport", "Second story", "http://b");
+        News third = news("Sport", "Third story", "http://c");
+        index.addAll(Arrays.asList(first, second));
+        // Adding the first story again makes it the most recently added.
+        index.addAll(Arrays.asList(first, third));
+
+        assertEquals(2, index.size());
+        assertTrue(index.search("second", 10).isEmpty());
+        assertEquals(2, index.search("story", 10).size());
+    }
+
+    @Test
+    public void setBodyText_makesBodyWordsSearchable() {
+        SearchIndex index = new SearchIndex(100);
+        News news = news("Business", "Markets close", "http://a");
+        index.addAll(Collections.singletonList(news));
+
+        assertTrue(index.setBodyText("http://a", "Shares in the retailer fell sharply"));
+        assertFalse(index.setBodyText("http://missing", "text"));
+        assertEquals(Collections.singletonList(news), index.search("retailer", 10));
+        // The body survives the story being loaded again.
+        index.addAll(Collections.singletonList(news("Business", "Markets close", "http://a")));
+        assertEquals(1, index.search("retailer", 10).size());
+    }
+
+    @Test
+    public void search_findsAPrefixOnALargeIndex() throws IOException {
+        List<News> newsStories = NewsJsonParser.parse(
+                new ByteArrayInputStream(GuardianFixtures.responseBytes(1000)));
+        SearchIndex index = new SearchIndex(SearchIndex.MAX_DOCUMENTS);
+        index.addAll(newsStories);
+        String query = newsStories.get(0).getNewsTitle().substring(0, 3);
+
+        List<News> results = index.search(query, 100);
+
+        assertFalse(results.isEmpty());
+        assertTrue(results.size() <= 100);
+    }
+}
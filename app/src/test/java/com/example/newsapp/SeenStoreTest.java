@@ -0,0 +1,147 @@
+package com.example.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the {@link SeenStore} remembers the opened news stories across launches, that
+ * checking a row doesn't allocate, and that compaction keeps it bounded after months of use.
+ */
+public class SeenStoreTest {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * A time in 2019, in milliseconds.
+     */
+    private static final long START_MILLIS = 1557550812000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static String url(int i) {
+        return "https://www.theguardian.com/world/2019/may/11/story-" + i;
+    }
+
+    private static long hash(int i) {
+        return FeedStore.urlHash(url(i));
+    }
+
+    @Test
+    public void contains_theStoriesMarkedSeenAcrossLaunches() throws IOException {
+        File file = new File(mFolder.getRoot(), "seen.bin");
+        SeenStore store = new SeenStore(file);
+        store.markSeen(hash(1), START_MILLIS);
+        store.markSeen(hash(2), START_MILLIS);
+        store.markSeen(hash(1), START_MILLIS + 1);
+        store.saveIfChanged();
+
+        SeenStore reopened = new SeenStore(file);
+
+        assertEquals(2, reopened.getRecentCount());
+        assertTrue(reopened.contains(hash(1)));
+        assertTrue(reopened.contains(hash(2)));
+        assertFalse(reopened.contains(hash(3)));
+        assertTrue(reopened.contains(
+                FeedStore.of(Collections.singletonList(new News("World news",
+                        "Story 2", "2019-05-11T05:00:12Z", url(2)))).getUrlHash(0)));
+    }
+
+    @Test
+    public void contains_movesOldStoriesToTheBloomFilterThenForgetsThem() {
+        SeenStore store = new SeenStore(null);
+        int count = SeenStore.MAX_RECENT + 500;
+        for (int i = 0; i < count; i++) {
+            store.markSeen(hash(i), START_MILLIS + i);
+        }
+
+        // The oldest stories no longer fit the table, but the Bloom filter still has them.
+        assertEquals(SeenStore.MAX_RECENT, store.getRecentCount());
+        for (int i = 0; i < count; i++) {
+            assertTrue(store.contains(hash(i)));
+        }
+
+        // Two weeks later every story left the table, a generation later they are in the
+        // previous filter, and another generation later they are forgotten.
+        store.compact(START_MILLIS + SeenStore.RECENT_MILLIS + DAY_MILLIS);
+        assertEquals(0, store.getRecentCount());
+        assertTrue(store.contains(hash(0)));
+        store.compact(START_MILLIS + SeenStore.GENERATION_MILLIS + DAY_MILLIS);
+        assertTrue(store.contains(hash(0)));
+        store.compact(START_MILLIS + 2 * SeenStore.GENERATION_MILLIS + DAY_MILLIS);
+        assertFalse(store.contains(hash(0)));
+    }
+
+    @Test
+    public void file_staysBoundedAfterMonthsOfUse() throws IOException {
+        File file = new File(mFolder.getRoot(), "seen.bin");
+        SeenStore store = new SeenStore(file);
+        // A year of a heavy reader opening a hundred stories a day.
+        int story = 0;
+        for (int day = 0; day < 365; day++) {
+            for (int i = 0; i < 100; i++) {
+                store.markSeen(hash(story++), START_MILLIS + day * DAY_MILLIS + i);
+            }
+        }
+        store.saveIfChanged();
+
+        long maxBytes = 2 * SeenStore.BLOOM_BITS / 8 + SeenStore.MAX_RECENT * 16 + 32;
+        assertTrue(file.length() + " B", file.length() <= maxBytes);
+        for (int i = story - 100; i < story; i++) {
+            assertTrue(store.contains(hash(i)));
+        }
+
+        // Unseen stories are rarely taken for seen ones.
+        int falsePositives = 0;
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            if (store.contains(random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives + " false positives", falsePositives < 200);
+        assertFalse(store.contains(hash(0)));
+    }
+
+    @Test
+    public void contains_doesNotAllocate() {
+        SeenStore store = new SeenStore(null);
+        for (int i = 0; i < 1000; i++) {
+            store.markSeen(hash(i), START_MILLIS);
+        }
+        long[] hashes = new long[2000];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = hash(i);
+        }
+
+        int seen = 0;
+        for (int round = 0; round < 20; round++) {
+            for (long urlHash : hashes) {
+                seen += store.contains(urlHash) ? 1 : 0;
+            }
+        }
+        long startBytes = Allocations.allocatedBytes();
+        for (int round = 0; round < 100; round++) {
+            for (long urlHash : hashes) {
+                seen += store.contains(urlHash) ? 1 : 0;
+            }
+        }
+        long allocated = Allocations.allocatedBytes() - startBytes;
+
+        assertTrue(seen >= 120 * 1000);
+        if (startBytes >= 0) {
+            assertTrue(allocated + " B allocated", allocated < 1024);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the phases {@link StartupTrace} records, and traces a cold start on the JVM: the
+ * connection warm-up and the snapshot read run in the background, and the snapshot is shown
+ * before the network answers.
+ */
+public class StartupTraceTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        StartupTrace.reset();
+        Metrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        StartupTrace.reset();
+    }
+
+    private static Map<String, StartupTrace.Span> spansByPhase() {
+        Map<String, StartupTrace.Span> spans = new HashMap<>();
+        for (StartupTrace.Span span : StartupTrace.getSpans()) {
+            spans.put(span.phase, span);
+        }
+        return spans;
+    }
+
+    @Test
+    public void sections_areRecordedWithTheirThread() throws InterruptedException {
+        StartupTrace.start();
+        StartupTrace.Section inflate = StartupTrace.begin("inflate");
+        StartupTrace.Section adapter = StartupTrace.begin("adapter");
+        adapter.end();
+        inflate.end();
+        Thread startup = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                StartupTrace.begin("preferences").end();
+            }
+        }, "startup");
+        startup.start();
+        startup.join();
+
+        List<StartupTrace.Span> spans = StartupTrace.getSpans();
+        assertEquals(3, spans.size());
+        assertEquals("adapter", spans.get(0).phase);
+        assertEquals("inflate", spans.get(1).phase);
+        assertEquals("preferences", spans.get(2).phase);
+        assertEquals("startup", spans.get(2).threadName);
+        assertTrue(spans.get(1).startMicros <= spans.get(0).startMicros);
+        assertTrue(spans.get(1).endMicros() >= spans.get(0).endMicros());
+        assertEquals(1, Metrics.histogram("startup.inflate.us").getCount());
+    }
+
+    @Test
+    public void firstContent_isOnlyRecordedOnce() {
+        assertFalse(StartupTrace.firstContent("snapshot"));
+
+        StartupTrace.start();
+        assertTrue(StartupTrace.firstContent("snapshot"));
+        assertFalse(StartupTrace.firstContent("loader"));
+
+        assertEquals(1, Metrics.histogram("startup.first_content.us").getCount());
+        assertNotNull(spansByPhase().get("first_content.snapshot"));
+    }
+
+    @Test
+    public void coldStart_showsTheSnapshotBeforeTheNetworkAnswers() throws Exception {
+        GuardianStubServer server = new GuardianStubServer(GuardianFixtures.responseBytes(20));
+        try {
+            server.setDelayMillis(300);
+            final String url = server.url("q=debates");
+            final File file = new File(mFolder.getRoot(), "snapshot");
+            FeedSnapshot.write(file, url, FeedStore.of(NewsJsonParser.parse(
+                    new ByteArrayInputStream(GuardianFixtures.responseBytes(20)))));
+
+            // What NewsActivity does at cold start: warm up the connection and read the
+            // snapshot in the background, then load the feed.
+            StartupTrace.start();
+            QueryUtils.prewarmConnection(server.url(""));
+            final AtomicReference<FeedStore> snapshot = new AtomicReference<>();
+            Thread startup = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    StartupTrace.Section section = StartupTrace.begin("snapshot");
+                    snapshot.set(FeedSnapshot.read(file, url));
+                    section.end();
+                    StartupTrace.firstContent("snapshot");
+                }
+            }, "io");
+            startup.start();
+
+            StartupTrace.Section section = StartupTrace.begin("network");
+            List<News> newsStories = QueryUtils.fetchNewsStories(url);
+            section.end();
+            startup.join();
+
+            assertEquals(20, newsStories.size());
+            assertEquals(20, snapshot.get().size());
+            Map<String, StartupTrace.Span> spans = spansByPhase();
+            assertEquals("io", spans.get("snapshot").threadName);
+            assertEquals("net", spans.get("prewarm.connect").threadName);
+            assertTrue(spans.get("first_content.snapshot").endMicros()
+                    < spans.get("network").endMicros());
+            // The fetch reused the warmed up connection.
+            assertEquals(server.requests().get(0).clientPort,
+                    server.requests().get(1).clientPort);
+        } finally {
+            server.stop();
+        }
+    }
+}